@@ -9,6 +9,13 @@ repositories {
     mavenCentral()
 }
 
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[jmh.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+
 dependencies {
     implementation("org.projectlombok:lombok:1.18.30")
     annotationProcessor("org.projectlombok:lombok:1.18.30")
@@ -17,6 +24,9 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter")
     testImplementation("org.projectlombok:lombok:1.18.30")
     testAnnotationProcessor("org.projectlombok:lombok:1.18.30")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 tasks.test {
@@ -27,4 +37,29 @@ tasks.jar {
     manifest {
         attributes["Main-Class"] = "az.arvilo.crudapp.Main"
     }
-}
\ No newline at end of file
+}
+
+/*
+ * Benchmarks: "gradle jmh" runs all of them, "gradle jmhAlloc" adds the GC
+ * profiler to report the allocation rate. A subset is picked with
+ * -Pjmh.include=<regex>, e.g. -Pjmh.include=renderTable.
+ */
+fun JavaExec.configureJmh(vararg profilerArgs: String) {
+    group = "benchmark"
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    val include = project.findProperty("jmh.include")?.toString() ?: ".*"
+    val results = layout.buildDirectory.file("reports/jmh/$name.json").get().asFile
+    doFirst { results.parentFile.mkdirs() }
+    args(listOf(include, "-rf", "json", "-rff", results.path) + profilerArgs)
+}
+
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks."
+    configureJmh()
+}
+
+tasks.register<JavaExec>("jmhAlloc") {
+    description = "Runs the JMH benchmarks with the GC profiler to report allocation rates."
+    configureJmh("-prof", "gc")
+}
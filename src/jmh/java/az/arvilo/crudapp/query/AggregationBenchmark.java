@@ -0,0 +1,85 @@
+package az.arvilo.crudapp.query;
+
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.storage.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Group-by over "rows" rows into "groups" groups. Run with "gradle jmhAlloc"
+ * to see the allocation per operation, which should not grow with "rows".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class AggregationBenchmark {
+
+    @Param({"1000000"})
+    int rows;
+
+    @Param({"10", "10000"})
+    int groups;
+
+    Table table;
+    Query singleColumn;
+    Query twoColumns;
+
+    @Setup
+    public void createTable() {
+        String[] keys = new String[groups];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "Key" + i;
+        }
+        String[] amounts = new String[100];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = i + ".5";
+        }
+        table = new Table();
+        table.addColumn("Key");
+        table.addColumn("Flag");
+        table.addColumn("Amount");
+        for (int i = 0; i < rows; i++) {
+            table.addRow();
+            table.setCell(i, 0, keys[i % keys.length]);
+            table.setCell(i, 1, i % 2 == 0 ? "even" : "odd");
+            table.setCell(i, 2, amounts[i % amounts.length]);
+        }
+        singleColumn = new Query("Benchmark")
+                .select("Key")
+                .aggregate(AggregateFunction.COUNT, AggregateFunction.ALL_ROWS)
+                .aggregate(AggregateFunction.SUM, "Amount")
+                .groupBy("Key");
+        twoColumns = new Query("Benchmark")
+                .select("Key", "Flag")
+                .aggregate(AggregateFunction.AVG, "Amount")
+                .aggregate(AggregateFunction.COUNT_DISTINCT, "Amount")
+                .groupBy("Key", "Flag");
+    }
+
+    @Benchmark
+    public QueryResult groupBySingleColumn() throws InvalidInputException {
+
+        return QueryPipeline.execute(singleColumn, table);
+    }
+
+    @Benchmark
+    public QueryResult groupByTwoColumns() throws InvalidInputException {
+
+        return QueryPipeline.execute(twoColumns, table);
+    }
+
+}
@@ -0,0 +1,81 @@
+package az.arvilo.crudapp.query;
+
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.storage.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Filter and count scans over one table, on a pool of "parallelism" workers.
+ * Parallelism 1 is the baseline for the scaling of the others; a pool larger
+ * than the machine's core count shows the forking overhead only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class ParallelScanBenchmark {
+
+    @Param({"1000000", "4000000"})
+    int rows;
+
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    Table table;
+    ForkJoinPool pool;
+    Query filter;
+
+    @Setup
+    public void createTable() {
+        String[] values = new String[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "Value" + i;
+        }
+        table = new Table();
+        table.addColumn("Name");
+        table.addColumn("Group");
+        for (int i = 0; i < rows; i++) {
+            table.addRow();
+            table.setCell(i, 0, values[i % values.length]);
+            table.setCell(i, 1, values[i * 7 % values.length]);
+        }
+        pool = new ForkJoinPool(parallelism);
+        filter = new Query("Benchmark")
+                .where("Name", Comparison.PREFIX, "Value12")
+                .where("Group", Comparison.GREATER, "Value5");
+    }
+
+    @TearDown
+    public void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public QueryResult filter() throws InvalidInputException {
+
+        return QueryPipeline.execute(filter, table, pool);
+    }
+
+    @Benchmark
+    public long count() throws InvalidInputException {
+
+        return QueryPipeline.count(filter, table, pool);
+    }
+
+}
@@ -0,0 +1,149 @@
+package az.arvilo.crudapp.service;
+
+import az.arvilo.crudapp.Data;
+import az.arvilo.crudapp.exception.DataBaseCorruptException;
+import az.arvilo.crudapp.exception.InvalidInputException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Every benchmark runs against a table of "rows" x "columns" cells of
+ * "cellLength" characters. Operations that change the shape of the table are
+ * measured together with their inverse, so the table keeps its size across
+ * invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceBenchmark {
+
+    private static final String TABLE_NAME = "Benchmark";
+
+    @Param({"100", "10000"})
+    int rows;
+
+    @Param({"4", "32"})
+    int columns;
+
+    @Param({"8", "64"})
+    int cellLength;
+
+    Service service;
+    String lastColumnName;
+    String middleRowNumber;
+    String lastRowNumber;
+    String[] cellValues;
+    List<Integer> everyTenthRow;
+    List<List<String>> filledRows;
+    int nextRow;
+
+    @Setup
+    public void createTable() throws InvalidInputException, DataBaseCorruptException {
+        Data.TABLES.clear();
+        service = new Service();
+        service.createTable(TABLE_NAME);
+        for (int i = 0; i < columns; i++) {
+            service.addNewColumn(TABLE_NAME, "Column" + i);
+        }
+        cellValues = new String[]{"a".repeat(cellLength), "b".repeat(cellLength)};
+        for (int i = 0; i < rows; i++) {
+            service.addNewRow(TABLE_NAME);
+            for (int j = 0; j < columns; j++) {
+                service.updateCell(TABLE_NAME, String.valueOf(i + 1), "Column" + j, cellValues[0]);
+            }
+        }
+        lastColumnName = "Column" + (columns - 1);
+        middleRowNumber = String.valueOf(rows / 2 + 1);
+        lastRowNumber = String.valueOf(rows + 1);
+        everyTenthRow = new ArrayList<>();
+        for (int i = 1; i <= rows; i += 10) {
+            everyTenthRow.add(i);
+        }
+        filledRows = new ArrayList<>();
+        for (int i = 0; i < everyTenthRow.size(); i++) {
+            filledRows.add(new ArrayList<>());
+            for (int j = 0; j < columns; j++) {
+                filledRows.get(i).add(cellValues[0]);
+            }
+        }
+        nextRow = 0;
+    }
+
+    @Benchmark
+    public void createAndDropTable() throws InvalidInputException {
+        service.createTable("Scratch");
+        service.dropTable("Scratch");
+    }
+
+    @Benchmark
+    public void addNewRow() throws InvalidInputException, DataBaseCorruptException {
+        service.addNewRow(TABLE_NAME);
+        service.deleteRow(TABLE_NAME, lastRowNumber);
+    }
+
+    @Benchmark
+    public void updateCell() throws InvalidInputException, DataBaseCorruptException {
+        int row = nextRow;
+        nextRow = (nextRow + 1) % rows;
+        service.updateCell(TABLE_NAME, String.valueOf(row + 1), lastColumnName, cellValues[row & 1]);
+    }
+
+    @Benchmark
+    public void deleteRow() throws InvalidInputException, DataBaseCorruptException {
+        service.deleteRow(TABLE_NAME, middleRowNumber);
+        service.addNewRow(TABLE_NAME);
+    }
+
+    @Benchmark
+    public void deleteRows() throws InvalidInputException, DataBaseCorruptException {
+        service.deleteRows(TABLE_NAME, everyTenthRow);
+        service.addRows(TABLE_NAME, filledRows);
+    }
+
+    @Benchmark
+    public void addNewColumn() throws InvalidInputException, DataBaseCorruptException {
+        service.addNewColumn(TABLE_NAME, "Scratch");
+        service.deleteColumn(TABLE_NAME, "Scratch");
+    }
+
+    @Benchmark
+    public void deleteColumn() throws InvalidInputException, DataBaseCorruptException {
+        service.deleteColumn(TABLE_NAME, lastColumnName);
+        service.addNewColumn(TABLE_NAME, lastColumnName);
+    }
+
+    @Benchmark
+    public String renderTable() throws InvalidInputException, DataBaseCorruptException {
+
+        return service.renderTable(TABLE_NAME, true);
+    }
+
+    @Benchmark
+    public String renderRow() throws InvalidInputException, DataBaseCorruptException {
+
+        return service.renderRow(TABLE_NAME, middleRowNumber);
+    }
+
+    @Benchmark
+    public boolean doesColumnOfTableExist() {
+
+        return service.doesColumnOfTableExist(lastColumnName, TABLE_NAME);
+    }
+
+}
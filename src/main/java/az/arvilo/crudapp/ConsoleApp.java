@@ -2,28 +2,80 @@ package az.arvilo.crudapp;
 
 import az.arvilo.crudapp.exception.DataBaseCorruptException;
 import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.io.ExportFormat;
+import az.arvilo.crudapp.io.TableImporter;
+import az.arvilo.crudapp.query.QueryResult;
 import az.arvilo.crudapp.service.Service;
 import lombok.NonNull;
 
 import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.IntStream;
 
 public class ConsoleApp implements AutoCloseable {
 
+    private static final int PAGE_ROWS = 20;
+    private static final int PAGE_COLUMNS = 8;
+
     private final Service service;
     private final Scanner scanner;
+    private final Terminal terminal;
+    private int rowOffset;
+    private int columnOffset;
 
     public ConsoleApp(Service service) {
         scanner = new Scanner(System.in);
+        terminal = Terminal.open(System.out);
         this.service = service;
     }
 
     public String getInput(String menu) {
         clearConsole();
-        System.out.print(menu);
-        return scanner.nextLine();
+        return readInput(menu);
+    }
+
+    public String readInput(String menu) {
+        terminal.append(menu).flush();
+        String input = scanner.nextLine();
+        terminal.recordInput(input);
+        return input;
+    }
+
+    public void printTable(@NonNull String tableName, boolean verticalRuler)
+            throws InvalidInputException, DataBaseCorruptException {
+        int rowCount = service.getRowCount(tableName);
+        int columnCount = service.getColumnCount(tableName);
+        rowOffset = Math.max(0, Math.min(rowOffset, rowCount - 1));
+        columnOffset = Math.max(0, Math.min(columnOffset, columnCount - 1));
+        terminal.append(String.format("Table: %s\n", tableName));
+        try {
+            service.renderViewport(
+                    tableName,
+                    rowOffset,
+                    PAGE_ROWS,
+                    columnOffset,
+                    PAGE_COLUMNS,
+                    verticalRuler,
+                    terminal
+            );
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (rowCount > PAGE_ROWS || columnCount > PAGE_COLUMNS) {
+            terminal.append(String.format(
+                    "\nRows %d-%d of %d, columns %d-%d of %d",
+                    Math.min(rowOffset + 1, rowCount),
+                    Math.min(rowOffset + PAGE_ROWS, rowCount),
+                    rowCount,
+                    columnOffset + 1,
+                    Math.min(columnOffset + PAGE_COLUMNS, columnCount),
+                    columnCount
+            ));
+        }
     }
 
     public void showWelcomeMessage(int seconds) {
@@ -39,7 +91,7 @@ public class ConsoleApp implements AutoCloseable {
                                         The app will start in %d %s.""",
                                 i,
                                 i == 1 ? "second" : "seconds");
-                        System.out.print(message);
+                        terminal.append(message).flush();
                         Thread.sleep(1000);
                     } catch (InterruptedException e) {
                         throw new RuntimeException(e);
@@ -54,7 +106,7 @@ public class ConsoleApp implements AutoCloseable {
     public void showAlert(int seconds, @NonNull String message) {
         try {
             clearConsole();
-            System.out.print(message);
+            terminal.append(message).flush();
             Thread.sleep(seconds * 1000L);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
@@ -67,6 +119,8 @@ public class ConsoleApp implements AutoCloseable {
                 1)Select table
                 2)New table
                 3)Drop table
+                4)Run query
+                5)Import CSV/TSV file
                 Enter your choice:\s""");
         input = input.trim();
         switch (input) {
@@ -79,6 +133,12 @@ public class ConsoleApp implements AutoCloseable {
             case "3":
                 dropTableMenu();
                 break;
+            case "4":
+                queryMenu();
+                break;
+            case "5":
+                importMenu();
+                break;
             case "0":
                 clearConsole();
                 break;
@@ -122,6 +182,8 @@ public class ConsoleApp implements AutoCloseable {
             return;
         }
         try {
+            rowOffset = 0;
+            columnOffset = 0;
             tableMenu(tableNames.get(index - 1));
         } catch (IndexOutOfBoundsException e) {
             showInvalidInputAlert(3);
@@ -213,10 +275,8 @@ public class ConsoleApp implements AutoCloseable {
 
     public void tableMenu(@NonNull String tableName) {
         clearConsole();
-        StringBuilder message = new StringBuilder();
         try {
-            message.append(String.format("Table: %s\n", tableName));
-            message.append(service.renderTable(tableName, false));
+            printTable(tableName, false);
         } catch (InvalidInputException e) {
             throw new RuntimeException(e);
         } catch (DataBaseCorruptException e) {
@@ -226,15 +286,21 @@ public class ConsoleApp implements AutoCloseable {
             );
             return;
         }
-        message.append("""
+        String input = readInput("""
                 \n1)Update cell
                 2)Add new row
                 3)Delete row
                 4)Add new column
                 5)Delete column
+                6)Verify table
+                7)Export table
+                n)Next rows
+                p)Previous rows
+                j)Jump to row
+                >)Next columns
+                <)Previous columns
                 Enter your choice:\s""");
-        String input = getInput(message.toString());
-        input = input.trim();
+        input = input.trim().toLowerCase();
 
         switch (input) {
             case "1":
@@ -267,6 +333,31 @@ public class ConsoleApp implements AutoCloseable {
             case "5":
                 deleteColumnMenu(tableName);
                 break;
+            case "6":
+                verifyTableMenu(tableName);
+                break;
+            case "7":
+                exportTableMenu(tableName);
+                break;
+            case "n":
+                rowOffset += PAGE_ROWS;
+                tableMenu(tableName);
+                break;
+            case "p":
+                rowOffset = Math.max(0, rowOffset - PAGE_ROWS);
+                tableMenu(tableName);
+                break;
+            case "j":
+                jumpToRowMenu(tableName);
+                break;
+            case ">":
+                columnOffset += PAGE_COLUMNS;
+                tableMenu(tableName);
+                break;
+            case "<":
+                columnOffset = Math.max(0, columnOffset - PAGE_COLUMNS);
+                tableMenu(tableName);
+                break;
             case "0":
                 tableListMenu();
                 break;
@@ -287,10 +378,8 @@ public class ConsoleApp implements AutoCloseable {
             return;
         }
         clearConsole();
-        StringBuilder message = new StringBuilder();
         try {
-            message.append(String.format("Table: %s\n", tableName));
-            message.append(service.renderTable(tableName, true));
+            printTable(tableName, true);
         } catch (InvalidInputException e) {
             throw new RuntimeException(e);
         } catch (DataBaseCorruptException e) {
@@ -300,17 +389,16 @@ public class ConsoleApp implements AutoCloseable {
             );
             return;
         }
-        message.append("\nChoose a row: ");
-        String rowNumber = getInput(message.toString());
+        String rowNumber = readInput("\nChoose a row: ");
         rowNumber = rowNumber.trim();
         rowNumber = rowNumber.replaceAll("\\s+", " ");
         if (rowNumber.equals("0")) {
             tableMenu(tableName);
             return;
         }
+        String row;
         try {
-            message.append(String.format("Table: %s\n", tableName));
-            message = new StringBuilder(service.renderRow(tableName, rowNumber));
+            row = service.renderRow(tableName, rowNumber);
         } catch (DataBaseCorruptException e) {
             showAlert(
                     5,
@@ -320,10 +408,9 @@ public class ConsoleApp implements AutoCloseable {
         } catch (InvalidInputException | NumberFormatException e) {
             showInvalidInputAlert(3);
             updateCellMenu(tableName);
+            return;
         }
-        message.append("\nEnter name of column: ");
-        clearConsole();
-        String columnName = getInput(message.toString());
+        String columnName = getInput(row + "\nEnter name of column: ");
         columnName = columnName.trim();
         columnName = columnName.replaceAll("\\s+", " ");
         if (!service.doesColumnOfTableExist(columnName, tableName)) {
@@ -390,10 +477,9 @@ public class ConsoleApp implements AutoCloseable {
             tableMenu(tableName);
             return;
         }
-        StringBuilder message = new StringBuilder();
+        clearConsole();
         try {
-            message.append(String.format("Table: %s\n", tableName));
-            message.append(service.renderTable(tableName, true));
+            printTable(tableName, true);
         } catch (InvalidInputException e) {
             throw new RuntimeException(e);
         } catch (DataBaseCorruptException e) {
@@ -403,8 +489,7 @@ public class ConsoleApp implements AutoCloseable {
             );
             return;
         }
-        message.append("\nEnter row number: ");
-        String rowNumber = getInput(message.toString());
+        String rowNumber = readInput("\nEnter row number: ");
         rowNumber = rowNumber.trim();
         rowNumber = rowNumber.replaceAll("\\s+", " ");
         if (rowNumber.equals("0")) {
@@ -425,10 +510,9 @@ public class ConsoleApp implements AutoCloseable {
     }
 
     public void addNewColumnMenu(@NonNull String tableName) {
-        StringBuilder message = new StringBuilder();
+        clearConsole();
         try {
-            message.append(String.format("Table: %s\n", tableName));
-            message.append(service.renderTable(tableName, false));
+            printTable(tableName, false);
         } catch (DataBaseCorruptException e) {
             showAlert(
                     5,
@@ -437,8 +521,7 @@ public class ConsoleApp implements AutoCloseable {
         } catch (InvalidInputException e) {
             throw new RuntimeException(e);
         }
-        message.append("\nEnter new column name: ");
-        String input = getInput(message.toString());
+        String input = readInput("\nEnter new column name: ");
         input = input.trim();
         input = input.replaceAll("\\s+", " ");
         if (input.isEmpty()) {
@@ -504,10 +587,9 @@ public class ConsoleApp implements AutoCloseable {
             tableMenu(tableName);
             return;
         }
-        StringBuilder message = new StringBuilder();
+        clearConsole();
         try {
-            message.append(String.format("Table: %s\n", tableName));
-            message.append(service.renderTable(tableName, false));
+            printTable(tableName, false);
         } catch (DataBaseCorruptException e) {
             showAlert(
                     5,
@@ -516,8 +598,7 @@ public class ConsoleApp implements AutoCloseable {
         } catch (InvalidInputException e) {
             throw new RuntimeException(e);
         }
-        message.append("\nEnter column name to remove: ");
-        String input = getInput(message.toString());
+        String input = readInput("\nEnter column name to remove: ");
         input = input.trim();
         input = input.replaceAll("\\s+", " ");
         if (!service.doesColumnOfTableExist(input, tableName)) {
@@ -562,18 +643,176 @@ public class ConsoleApp implements AutoCloseable {
         }
     }
 
-    public void clearConsole() {
+    public void jumpToRowMenu(@NonNull String tableName) {
+        String input = getInput("Enter row number: ");
+        input = input.trim();
+        if (input.equals("0")) {
+            tableMenu(tableName);
+            return;
+        }
         try {
-            if (System.getProperty("os.name").contains("Windows")) {
-                new ProcessBuilder("cmd", "/c", "cls").inheritIO().start().waitFor();
-            } else {
-                new ProcessBuilder("clear").inheritIO().start().waitFor();
+            int rowNumber = Integer.parseInt(input);
+            if (rowNumber < 1 || rowNumber > service.getRowCount(tableName)) {
+                showInvalidInputAlert(3);
+                jumpToRowMenu(tableName);
+                return;
+            }
+            rowOffset = rowNumber - 1;
+            tableMenu(tableName);
+        } catch (NumberFormatException e) {
+            showInvalidInputAlert(3);
+            jumpToRowMenu(tableName);
+        }
+    }
+
+    public void verifyTableMenu(@NonNull String tableName) {
+        try {
+            service.verifyTable(tableName);
+            showAlert(
+                    3,
+                    String.format("The %s table is consistent.", tableName)
+            );
+            tableMenu(tableName);
+        } catch (InvalidInputException e) {
+            throw new RuntimeException(e);
+        } catch (DataBaseCorruptException e) {
+            showAlert(
+                    5,
+                    "The database is corrupted. Please fix it and restart the app."
+            );
+        }
+    }
+
+    public void exportTableMenu(@NonNull String tableName) {
+        String path = getInput("Enter the path of a .csv or .jsonl file to export to: ").trim();
+        if (path.equals("0")) {
+            tableMenu(tableName);
+            return;
+        }
+        int rowCount = service.getRowCount(tableName);
+        try {
+            long exported = service.exportTable(
+                    tableName,
+                    Path.of(path),
+                    ExportFormat.of(Path.of(path)),
+                    rows -> {
+                        clearConsole();
+                        terminal.append(String.format("Exported %d of %d rows", rows, rowCount)).flush();
+                    }
+            );
+            showAlert(
+                    3,
+                    String.format("%d %s exported to %s.", exported, exported == 1 ? "row" : "rows", path)
+            );
+            tableMenu(tableName);
+        } catch (InvalidInputException e) {
+            showAlert(4, e.getMessage());
+            tableMenu(tableName);
+        } catch (DataBaseCorruptException e) {
+            showAlert(
+                    5,
+                    "The database is corrupted. Please fix it and restart the app."
+            );
+        } catch (InvalidPathException | IOException e) {
+            showAlert(4, String.format("%s couldn't be written.", path));
+            exportTableMenu(tableName);
+        }
+    }
+
+    public void queryMenu() {
+        String input = getInput("""
+                SELECT * | column, ... FROM table
+                [WHERE column =|!=|<|<=|>|>=|^= value AND ...]
+                [ORDER BY column [ASC|DESC]] [LIMIT count]
+                Enter a query:\s""");
+        input = input.trim();
+        if (input.equals("0")) {
+            homeMenu();
+            return;
+        }
+        try {
+            QueryResult result = service.query(input);
+            clearConsole();
+            service.renderQueryResult(result, true, terminal);
+            terminal.append(String.format(
+                    "\n%d %s",
+                    result.rows().size(),
+                    result.rows().size() == 1 ? "row" : "rows"
+            ));
+            String path = readInput("\nEnter a .csv or .jsonl file to export to, or press Enter to continue: ").trim();
+            if (!path.isEmpty()) {
+                try {
+                    service.exportQueryResult(result, Path.of(path), ExportFormat.of(Path.of(path)), rows -> {
+                    });
+                } catch (InvalidPathException | IOException e) {
+                    showAlert(4, String.format("%s couldn't be written.", path));
+                }
             }
-        } catch (IOException | InterruptedException e) {
+            queryMenu();
+        } catch (InvalidInputException e) {
+            showAlert(4, e.getMessage());
+            queryMenu();
+        } catch (DataBaseCorruptException e) {
+            showAlert(
+                    5,
+                    "The database is corrupted. Please fix it and restart the app."
+            );
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    public void importMenu() {
+        String path = getInput("Enter the path of a CSV or TSV file with a header: ").trim();
+        if (path.equals("0")) {
+            homeMenu();
+            return;
+        }
+        String tableName = readInput("Enter the name of a new or existing table: ");
+        tableName = tableName.trim().replaceAll("\\s+", " ");
+        if (tableName.equals("0")) {
+            homeMenu();
+            return;
+        }
+        try {
+            long rowCount = TableImporter.importFile(
+                    service,
+                    tableName,
+                    Path.of(path),
+                    ForkJoinPool.commonPool()
+            );
+            showAlert(
+                    3,
+                    String.format(
+                            "%d %s imported into the %s table.",
+                            rowCount,
+                            rowCount == 1 ? "row was" : "rows were",
+                            tableName
+                    )
+            );
+            homeMenu();
+        } catch (InvalidInputException e) {
+            showAlert(4, e.getMessage());
+            importMenu();
+        } catch (DataBaseCorruptException e) {
+            showAlert(
+                    5,
+                    "The database is corrupted. Please fix it and restart the app."
+            );
+        } catch (InvalidPathException | IOException e) {
+            showAlert(4, String.format("%s couldn't be read.", path));
+            importMenu();
+        }
+    }
+
+    /*
+     * Starts a new screen; it is drawn when the app waits for input or
+     * pauses, repainting only what changed.
+     */
+    public void clearConsole() {
+        terminal.clear();
+    }
+
     public void run() {
         showWelcomeMessage(4);
         homeMenu();
@@ -581,6 +820,7 @@ public class ConsoleApp implements AutoCloseable {
 
     @Override
     public void close() {
+        terminal.flush();
         scanner.close();
     }
 
@@ -1,10 +1,11 @@
 package az.arvilo.crudapp;
 
-import java.util.HashMap;
-import java.util.List;
+import az.arvilo.crudapp.storage.Table;
+
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Data {
 
-    public static final HashMap<String, List<List<String>>> TABLES = new HashMap<>();
+    public static final ConcurrentHashMap<String, Table> TABLES = new ConcurrentHashMap<>();
 
 }
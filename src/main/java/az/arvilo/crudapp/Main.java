@@ -1,13 +1,133 @@
 package az.arvilo.crudapp;
 
+import az.arvilo.crudapp.exception.DataBaseCorruptException;
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.http.HttpApi;
+import az.arvilo.crudapp.persistence.FsyncPolicy;
+import az.arvilo.crudapp.persistence.Snapshot;
+import az.arvilo.crudapp.persistence.WriteAheadLog;
+import az.arvilo.crudapp.server.LineServer;
 import az.arvilo.crudapp.service.Service;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 public class Main {
 
-    public static void main(String[] args) {
-        Service service = new Service();
-        try (ConsoleApp consoleApp = new ConsoleApp(service)) {
-            consoleApp.run();
+    private static final long DEFAULT_GROUP_COMMIT_MILLIS = 100;
+
+    /*
+     * Options:
+     *   --wal=<file>                  keep a write-ahead log and replay it on startup
+     *   --fsync=always|os|group[:ms]  when the log is forced to disk (default: always)
+     *   --snapshot=<file>             load tables from a snapshot on startup
+     *   --checkpoint                  write the snapshot, truncate the log and exit
+     *   --serve=<port>                serve the tables to local clients over the line
+     *                                 protocol instead of the console (0: any free port)
+     *   --http=<port>                 also serve the tables as a JSON API over HTTP
+     */
+    public static void main(String[] args) throws IOException {
+        Path walPath = null;
+        Path snapshotPath = null;
+        boolean checkpoint = false;
+        int servePort = -1;
+        int httpPort = -1;
+        FsyncPolicy fsyncPolicy = FsyncPolicy.EVERY_OPERATION;
+        long groupCommitMillis = DEFAULT_GROUP_COMMIT_MILLIS;
+        for (String arg : args) {
+            if (arg.startsWith("--wal=")) {
+                walPath = Path.of(arg.substring("--wal=".length()));
+            } else if (arg.startsWith("--snapshot=")) {
+                snapshotPath = Path.of(arg.substring("--snapshot=".length()));
+            } else if (arg.equals("--checkpoint")) {
+                checkpoint = true;
+            } else if (arg.startsWith("--serve=")) {
+                servePort = Integer.parseInt(arg.substring("--serve=".length()));
+            } else if (arg.startsWith("--http=")) {
+                httpPort = Integer.parseInt(arg.substring("--http=".length()));
+            } else if (arg.startsWith("--fsync=")) {
+                String value = arg.substring("--fsync=".length());
+                if (value.equals("always")) {
+                    fsyncPolicy = FsyncPolicy.EVERY_OPERATION;
+                } else if (value.equals("os")) {
+                    fsyncPolicy = FsyncPolicy.OS_MANAGED;
+                } else if (value.equals("group") || value.startsWith("group:")) {
+                    fsyncPolicy = FsyncPolicy.GROUP_COMMIT;
+                    if (value.startsWith("group:")) {
+                        groupCommitMillis = Long.parseLong(value.substring("group:".length()));
+                    }
+                } else {
+                    throw new IllegalArgumentException(String.format("Unknown fsync policy %s.", value));
+                }
+            } else {
+                throw new IllegalArgumentException(String.format("Unknown option %s.", arg));
+            }
+        }
+        if (checkpoint && snapshotPath == null) {
+            throw new IllegalArgumentException("--checkpoint requires --snapshot.");
+        }
+        long epoch = 0;
+        if (snapshotPath != null && Files.exists(snapshotPath)) {
+            epoch = Snapshot.load(snapshotPath, Data.TABLES);
+        }
+        if (walPath != null && WriteAheadLog.continues(walPath, epoch)) {
+            Service recovery = new Service();
+            WriteAheadLog.replay(walPath, record -> {
+                try {
+                    recovery.apply(record);
+                } catch (InvalidInputException | DataBaseCorruptException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        if (checkpoint) {
+            Snapshot.write(snapshotPath, Data.TABLES, epoch + 1);
+            if (walPath != null) {
+                // Everything in the log is in the new snapshot now.
+                Files.deleteIfExists(walPath);
+                new WriteAheadLog(walPath, FsyncPolicy.EVERY_OPERATION, 0, epoch + 1).close();
+            }
+            return;
+        }
+        if (walPath == null) {
+            run(new Service(), servePort, httpPort);
+            return;
+        }
+        try (WriteAheadLog writeAheadLog = new WriteAheadLog(walPath, fsyncPolicy, groupCommitMillis, epoch)) {
+            run(new Service(writeAheadLog), servePort, httpPort);
+        }
+    }
+
+    private static void run(Service service, int servePort, int httpPort) throws IOException {
+        if (httpPort < 0) {
+            run(service, servePort);
+            return;
+        }
+        // Without it the JDK server holds every small response back until the
+        // client's delayed ACK, some 40 ms. It is read when the first server
+        // is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        try (HttpApi api = new HttpApi(service, httpPort)) {
+            api.start();
+            System.out.printf("HTTP API on %s:%d%n", InetAddress.getLoopbackAddress().getHostAddress(), api.getPort());
+            run(service, servePort);
+        }
+    }
+
+    private static void run(Service service, int servePort) throws IOException {
+        if (servePort < 0) {
+            try (ConsoleApp consoleApp = new ConsoleApp(service)) {
+                consoleApp.run();
+            }
+            return;
+        }
+        try (LineServer server = new LineServer(service, servePort)) {
+            System.out.printf("Serving on %s:%d%n", InetAddress.getLoopbackAddress().getHostAddress(), server.getPort());
+            server.run();
         }
     }
 }
@@ -0,0 +1,306 @@
+package az.arvilo.crudapp;
+
+import lombok.NonNull;
+import sun.misc.Signal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/*
+ * The screen of the console. A screen is started with clear(), written with
+ * append() and shown with flush(), which the console calls before it waits
+ * for input or pauses; the user's input is added with recordInput().
+ *
+ * On an ANSI terminal flush() draws with escape sequences and repaints only
+ * the lines that differ from the screen shown before, in place. The window
+ * size is read for the first screen and again only after SIGWINCH reports
+ * a resize; a screen drawn after the window was resized, one that doesn't
+ * fit the window, or one drawn when the size is unknown, is drawn whole
+ * after clearing.
+ *
+ * The classic Windows console, which has no TERM, is cleared with cls once
+ * per screen drawn. On a dumb terminal, or when the output isn't a terminal,
+ * screens are printed one after another as plain text.
+ */
+class Terminal implements Appendable {
+
+    private static final String CSI = "\u001b[";
+    private static final String CLEAR = CSI + "H" + CSI + "2J" + CSI + "3J";
+    private static final String ERASE_BELOW = CSI + "J";
+    private static final String ERASE_LINE = CSI + "2K";
+
+    enum Mode {
+        ANSI,
+        CLS,
+        PLAIN
+    }
+
+    /*
+     * In characters.
+     */
+    record WindowSize(int width, int height) {
+    }
+
+    private final PrintStream out;
+    private final Mode mode;
+    private final Supplier<WindowSize> windowSize;
+    private final StringBuilder screen;
+    /*
+     * The lines on the terminal and the window size they were drawn for, or
+     * null when they aren't known.
+     */
+    private List<String> shownLines;
+    private WindowSize shownSize;
+    private boolean clearPending;
+    private int flushed;
+    private WindowSize size;
+    private volatile boolean resized;
+
+    /*
+     * The window size supplier returns null when the size is unknown; only
+     * ANSI terminals use it.
+     */
+    Terminal(@NonNull PrintStream out, @NonNull Mode mode, @NonNull Supplier<WindowSize> windowSize) {
+        this.out = out;
+        this.mode = mode;
+        this.windowSize = windowSize;
+        this.screen = new StringBuilder();
+        this.resized = true;
+    }
+
+    /*
+     * A terminal is taken for ANSI when TERM names one, or in Windows
+     * Terminal, and for the classic Windows console on Windows otherwise.
+     * Without SIGWINCH a resize would go unnoticed, so the size is taken as
+     * unknown.
+     */
+    static Terminal open(@NonNull PrintStream out) {
+        String term = System.getenv("TERM");
+        Mode mode;
+        if (System.console() == null || "dumb".equals(term)) {
+            mode = Mode.PLAIN;
+        } else if (term != null || System.getenv("WT_SESSION") != null) {
+            mode = Mode.ANSI;
+        } else if (System.getProperty("os.name").contains("Windows")) {
+            mode = Mode.CLS;
+        } else {
+            mode = Mode.PLAIN;
+        }
+
+        Terminal terminal = new Terminal(out, mode, Terminal::readWindowSize);
+        if (mode == Mode.ANSI && !terminal.followResizes()) {
+            terminal = new Terminal(out, mode, () -> null);
+        }
+
+        return terminal;
+    }
+
+    /*
+     * The next screen reads the window size again.
+     */
+    void windowResized() {
+        resized = true;
+    }
+
+    void clear() {
+        if (mode == Mode.PLAIN && flushed > 0 && screen.charAt(flushed - 1) != '\n') {
+            out.print('\n');
+        }
+        clearPending = true;
+        screen.setLength(0);
+        flushed = 0;
+    }
+
+    @Override
+    public Terminal append(CharSequence text) {
+        screen.append(text);
+
+        return this;
+    }
+
+    @Override
+    public Terminal append(CharSequence text, int start, int end) {
+        screen.append(text, start, end);
+
+        return this;
+    }
+
+    @Override
+    public Terminal append(char c) {
+        screen.append(c);
+
+        return this;
+    }
+
+    void flush() {
+        if (mode != Mode.ANSI) {
+            if (mode == Mode.CLS && clearPending) {
+                runCls();
+            }
+            clearPending = false;
+            out.print(screen.substring(flushed));
+            flushed = screen.length();
+            out.flush();
+
+            return;
+        }
+        if (resized) {
+            resized = false;
+            size = windowSize.get();
+        }
+        if (size == null || !size.equals(shownSize)) {
+            shownLines = null;
+        }
+        List<String> lines = Arrays.asList(screen.toString().split("\n", -1));
+        boolean fits = size != null && countRows(lines, size.width()) <= size.height();
+        StringBuilder paint = new StringBuilder();
+        if (shownLines == null || !fits) {
+            paint.append(CLEAR);
+            appendLines(paint, lines, 0);
+        } else {
+            appendChanges(paint, lines, size.width());
+        }
+        shownLines = fits ? lines : null;
+        shownSize = size;
+        out.print(paint);
+        out.flush();
+    }
+
+    /*
+     * The terminal echoed the input and the line break after the last line.
+     */
+    void recordInput(@NonNull String input) {
+        screen.append(input).append('\n');
+        flushed = screen.length();
+        if (shownLines != null) {
+            List<String> lines = new ArrayList<>(shownLines);
+            lines.set(lines.size() - 1, lines.getLast() + input);
+            lines.add("");
+            // A line break on the last row scrolls the window.
+            shownLines = countRows(lines, shownSize.width()) <= shownSize.height() ? lines : null;
+        }
+    }
+
+    /*
+     * Skips the lines that are shown already. From a line that takes a
+     * different number of rows on, everything below moves and is repainted.
+     * The last line is always repainted, which leaves the cursor at its end.
+     */
+    private void appendChanges(StringBuilder paint, List<String> lines, int width) {
+        int row = 1;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String shownLine = i < shownLines.size() ? shownLines.get(i) : null;
+            int rows = countRows(line, width);
+            if (shownLine == null || countRows(shownLine, width) != rows || i == lines.size() - 1) {
+                appendMove(paint, row).append(ERASE_BELOW);
+                appendLines(paint, lines, i);
+
+                return;
+            } else if (!line.equals(shownLine)) {
+                for (int j = rows - 1; j >= 0; j--) {
+                    appendMove(paint, row + j).append(ERASE_LINE);
+                }
+                paint.append(line);
+            }
+            row += rows;
+        }
+    }
+
+    private StringBuilder appendMove(StringBuilder paint, int row) {
+
+        return paint.append(CSI).append(row).append(";1H");
+    }
+
+    private void appendLines(StringBuilder paint, List<String> lines, int from) {
+        for (int i = from; i < lines.size(); i++) {
+            if (i > from) {
+                paint.append("\r\n");
+            }
+            paint.append(lines.get(i));
+        }
+    }
+
+    private int countRows(List<String> lines, int width) {
+        int rows = 0;
+        for (String line : lines) {
+            rows += countRows(line, width);
+        }
+
+        return rows;
+    }
+
+    /*
+     * Rows taken by a line that wraps at the window's width.
+     */
+    private int countRows(String line, int width) {
+        int length = line.codePointCount(0, line.length());
+
+        return Math.max(1, (length + width - 1) / width);
+    }
+
+    private boolean followResizes() {
+        try {
+            Signal.handle(new Signal("WINCH"), signal -> windowResized());
+
+            return true;
+        } catch (IllegalArgumentException e) {
+
+            return false;
+        }
+    }
+
+    private void runCls() {
+        try {
+            new ProcessBuilder("cmd", "/c", "cls").inheritIO().start().waitFor();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * The size from stty, or null when it can't be read. COLUMNS and LINES
+     * aren't used: they keep the size the window had at startup.
+     */
+    private static WindowSize readWindowSize() {
+        File tty = new File("/dev/tty");
+        if (!tty.exists()) {
+
+            return null;
+        }
+        try {
+            Process stty = new ProcessBuilder("stty", "size")
+                    .redirectInput(tty)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            String[] size = new String(stty.getInputStream().readAllBytes(), StandardCharsets.US_ASCII)
+                    .trim()
+                    .split(" ");
+            stty.waitFor();
+            if (size.length != 2 ||
+                    !size[0].matches("[1-9][0-9]{0,4}") ||
+                    !size[1].matches("[1-9][0-9]{0,4}")) {
+
+                return null;
+            }
+
+            return new WindowSize(Integer.parseInt(size[1]), Integer.parseInt(size[0]));
+        } catch (IOException e) {
+
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,444 @@
+package az.arvilo.crudapp.http;
+
+import az.arvilo.crudapp.exception.DataBaseCorruptException;
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.service.CellUpdate;
+import az.arvilo.crudapp.service.Service;
+import az.arvilo.crudapp.storage.TableSnapshot;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.NonNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * A JSON API over HTTP for the tables of a Service, served by the JDK's
+ * HttpServer on the loopback address, one virtual thread per exchange:
+ *
+ *   GET    /tables                               names of the tables
+ *   POST   /tables                               {"name": ..., "columns": [...]} creates a table
+ *   GET    /tables/{table}                       {"columns": [...], "rows": [[...], ...]}
+ *   DELETE /tables/{table}                       drops the table
+ *   POST   /tables/{table}/rows                  appends a row object, or an array of them
+ *   GET    /tables/{table}/rows/{row}            the row as an object keyed by column
+ *   PATCH  /tables/{table}/rows/{row}            updates the cells given as an object (PUT too)
+ *   DELETE /tables/{table}/rows/{row}            deletes the row
+ *   PUT    /tables/{table}/rows/{row}/{column}   sets the cell to the JSON string in the body
+ *
+ * Rows are numbered from 1; names in the path are percent-encoded.
+ *
+ * Tables and rows are read from a snapshot, and a table is streamed as
+ * chunked JSON, so reading a large one neither blocks writers nor sits in
+ * memory. The ETag of a read is the table's version, prefixed with a
+ * random tag of the server, since versions start over when the tables are
+ * reloaded: a poll carrying it in If-None-Match is answered with 304 and no
+ * body while the table is unchanged and the server still runs.
+ *
+ * Rejected input is answered with 400, or 404 when the table or row does
+ * not exist, and a corrupted table with 409, each as {"error": message}.
+ *
+ * The JDK server leaves Nagle's algorithm on unless the system property
+ * sun.net.httpserver.nodelay is true, which holds every small response back
+ * for some 40 ms; Main sets it.
+ */
+public class HttpApi implements AutoCloseable {
+
+    private static final String PREFIX = "/tables";
+    private static final String ROWS = "rows";
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final int BACKLOG = 4096;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_BODY_SIZE = 16 << 20;
+
+    private final Service service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String tagPrefix;
+
+    /*
+     * Port 0 picks a free port; see getPort(). The server starts with start().
+     */
+    public HttpApi(@NonNull Service service, int port) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.tagPrefix = Long.toHexString(new SecureRandom().nextLong()) + "-";
+        server.setExecutor(executor);
+        server.createContext(PREFIX, this::handle);
+    }
+
+    public int getPort() {
+
+        return server.getAddress().getPort();
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    /*
+     * Every failure is answered with a status, unless the response has begun
+     * already; then the connection is cut.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        List<String> path = null;
+        try {
+            path = parsePath(exchange.getRequestURI().getRawPath());
+            if (path == null) {
+                sendError(exchange, 404, "No such resource.");
+
+                return;
+            }
+            route(exchange, path);
+        } catch (InvalidInputException e) {
+            sendFailure(exchange, isMissing(path) ? 404 : 400, e.getMessage());
+        } catch (DataBaseCorruptException e) {
+            sendFailure(exchange, 409, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendFailure(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            sendFailure(exchange, 500, "Internal error.");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange, List<String> path)
+            throws IOException, InvalidInputException, DataBaseCorruptException {
+        String method = exchange.getRequestMethod();
+        if (path.size() >= 2 && !path.get(1).equals(ROWS)) {
+            sendError(exchange, 404, "No such resource.");
+
+            return;
+        }
+        switch (path.size()) {
+            case 0 -> {
+                if (method.equals("GET")) {
+                    StringBuilder body = new StringBuilder();
+                    Json.writeStrings(body, service.getTableNames());
+                    sendJson(exchange, 200, body.toString());
+                } else if (method.equals("POST")) {
+                    createTable(exchange);
+                } else {
+                    sendNotAllowed(exchange, "GET, POST");
+                }
+            }
+            case 1 -> {
+                if (method.equals("GET")) {
+                    readTable(exchange, path.get(0));
+                } else if (method.equals("DELETE")) {
+                    service.dropTable(path.get(0));
+                    exchange.sendResponseHeaders(204, -1);
+                } else {
+                    sendNotAllowed(exchange, "GET, DELETE");
+                }
+            }
+            case 2 -> {
+                if (method.equals("POST")) {
+                    addRows(exchange, path.get(0));
+                } else {
+                    sendNotAllowed(exchange, "POST");
+                }
+            }
+            case 3 -> {
+                if (method.equals("GET")) {
+                    readRow(exchange, path.get(0), path.get(2));
+                } else if (method.equals("PATCH") || method.equals("PUT")) {
+                    updateRow(exchange, path.get(0), path.get(2));
+                } else if (method.equals("DELETE")) {
+                    service.deleteRow(path.get(0), rowNumber(path.get(0), path.get(2)));
+                    exchange.sendResponseHeaders(204, -1);
+                } else {
+                    sendNotAllowed(exchange, "GET, PATCH, PUT, DELETE");
+                }
+            }
+            case 4 -> {
+                if (method.equals("PUT")) {
+                    if (!(Json.parse(readBody(exchange)) instanceof String value)) {
+                        throw new IllegalArgumentException("The body must be a JSON string.");
+                    }
+                    service.updateCell(path.get(0), rowNumber(path.get(0), path.get(2)), path.get(3), value);
+                    exchange.sendResponseHeaders(204, -1);
+                } else {
+                    sendNotAllowed(exchange, "PUT");
+                }
+            }
+            default -> sendError(exchange, 404, "No such resource.");
+        }
+    }
+
+    /*
+     * The table and its columns are created in one transaction.
+     */
+    private void createTable(HttpExchange exchange)
+            throws IOException, InvalidInputException, DataBaseCorruptException {
+        if (!(Json.parse(readBody(exchange)) instanceof Map<?, ?> request) ||
+                !(request.get("name") instanceof String tableName)) {
+            throw new IllegalArgumentException("The body must be an object with a \"name\".");
+        }
+        Object columns = request.get("columns");
+        List<String> columnNames = columns == null ? List.of() : toStrings(columns, "\"columns\"");
+        service.inTransaction(List.of(tableName), () -> {
+            service.createTable(tableName);
+            if (!columnNames.isEmpty()) {
+                service.addNewColumns(tableName, columnNames);
+            }
+        });
+        exchange.getResponseHeaders().set("Location", PREFIX + "/" + encode(tableName));
+        exchange.sendResponseHeaders(201, -1);
+    }
+
+    private void readTable(HttpExchange exchange, String tableName)
+            throws IOException, InvalidInputException, DataBaseCorruptException {
+        try (TableSnapshot snapshot = service.takeSnapshot(tableName)) {
+            if (isNotModified(exchange, snapshot)) {
+
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+            exchange.sendResponseHeaders(200, 0);
+            Writer out = new BufferedWriter(
+                    new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8),
+                    BUFFER_SIZE);
+            out.write("{\"columns\":");
+            Json.writeStrings(out, snapshot.getHeader());
+            out.write(",\"rows\":[");
+            for (int i = 0; i < snapshot.getRowCount(); i++) {
+                out.write(i == 0 ? "[" : ",[");
+                for (int j = 0; j < snapshot.getColumnCount(); j++) {
+                    if (j > 0) {
+                        out.write(',');
+                    }
+                    Json.writeString(out, snapshot.getCell(i, j));
+                }
+                out.write(']');
+            }
+            out.write("]}");
+            out.flush();
+        }
+    }
+
+    private void readRow(HttpExchange exchange, String tableName, String rowNumber)
+            throws IOException, InvalidInputException, DataBaseCorruptException {
+        int row = Integer.parseInt(rowNumber(tableName, rowNumber)) - 1;
+        try (TableSnapshot snapshot = service.takeSnapshot(tableName)) {
+            if (row >= snapshot.getRowCount()) {
+                String errorMessage = String.format("Row %s does not exist in %s table.", rowNumber, tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isNotModified(exchange, snapshot)) {
+
+                return;
+            }
+            StringBuilder body = new StringBuilder("{");
+            for (int i = 0; i < snapshot.getColumnCount(); i++) {
+                if (i > 0) {
+                    body.append(',');
+                }
+                Json.writeString(body, snapshot.getHeader().get(i));
+                body.append(':');
+                Json.writeString(body, snapshot.getCell(row, i));
+            }
+            sendJson(exchange, 200, body.append('}').toString());
+        }
+    }
+
+    /*
+     * The row numbers of the appended rows are known because nothing else
+     * changes the table within the transaction.
+     */
+    private void addRows(HttpExchange exchange, String tableName)
+            throws IOException, InvalidInputException, DataBaseCorruptException {
+        Object request = Json.parse(readBody(exchange));
+        List<?> objects = request instanceof List<?> list ? list : List.of(request);
+        int[] firstRow = new int[1];
+        service.inTransaction(List.of(tableName), () -> {
+            List<String> columnNames = service.getColumnNames(tableName);
+            List<List<String>> rows = new ArrayList<>(objects.size());
+            for (Object object : objects) {
+                String[] row = new String[columnNames.size()];
+                Arrays.fill(row, "");
+                for (Map.Entry<String, String> cell : toCells(object).entrySet()) {
+                    int column = columnNames.indexOf(cell.getKey());
+                    if (column < 0) {
+                        String errorMessage = String.format(
+                                "%s column does not exist in %s.",
+                                cell.getKey(),
+                                tableName);
+                        throw new InvalidInputException(errorMessage);
+                    }
+                    row[column] = cell.getValue();
+                }
+                rows.add(Arrays.asList(row));
+            }
+            firstRow[0] = service.getRowCount(tableName) + 1;
+            service.addRows(tableName, rows);
+        });
+        exchange.getResponseHeaders().set("Location", PREFIX + "/" + encode(tableName) + "/" + ROWS + "/" + firstRow[0]);
+        sendJson(exchange, 201, String.format("{\"firstRow\":%d,\"rowCount\":%d}", firstRow[0], objects.size()));
+    }
+
+    private void updateRow(HttpExchange exchange, String tableName, String rowNumber)
+            throws IOException, InvalidInputException, DataBaseCorruptException {
+        int row = Integer.parseInt(rowNumber(tableName, rowNumber));
+        List<CellUpdate> updates = new ArrayList<>();
+        toCells(Json.parse(readBody(exchange))).forEach((column, value) -> updates.add(new CellUpdate(row, column, value)));
+        service.updateCells(tableName, updates);
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    /*
+     * A row number that isn't a positive number names no row.
+     */
+    private String rowNumber(String tableName, String rowNumber) throws InvalidInputException {
+        if (!rowNumber.matches("[1-9][0-9]{0,8}")) {
+            String errorMessage = String.format("Row %s does not exist in %s table.", rowNumber, tableName);
+            throw new InvalidInputException(errorMessage);
+        }
+
+        return rowNumber;
+    }
+
+    /*
+     * Whether a rejected request named a table or row that isn't there.
+     */
+    private boolean isMissing(List<String> path) {
+        if (path.isEmpty()) {
+
+            return false;
+        } else if (!service.getTableNames().contains(path.get(0))) {
+
+            return true;
+        } else if (path.size() < 3) {
+
+            return false;
+        }
+        String rowNumber = path.get(2);
+
+        return !rowNumber.matches("[1-9][0-9]{0,8}") || Integer.parseInt(rowNumber) > service.getRowCount(path.get(0));
+    }
+
+    /*
+     * Sets the ETag and answers 304 when the client has this version already.
+     */
+    private boolean isNotModified(HttpExchange exchange, TableSnapshot snapshot) throws IOException {
+        String tag = "\"" + tagPrefix + snapshot.getVersion() + "\"";
+        exchange.getResponseHeaders().set("ETag", tag);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch == null || Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .noneMatch(candidate -> candidate.equals(tag) || candidate.equals("*"))) {
+
+            return false;
+        }
+        exchange.sendResponseHeaders(304, -1);
+
+        return true;
+    }
+
+    private Map<String, String> toCells(Object object) {
+        if (!(object instanceof Map<?, ?> map)) {
+            throw new IllegalArgumentException("A row must be an object of column names and values.");
+        }
+        List<String> values = toStrings(new ArrayList<>(map.values()), "Cell values");
+        Map<String, String> cells = new LinkedHashMap<>();
+        int i = 0;
+        for (Object key : map.keySet()) {
+            cells.put((String) key, values.get(i++));
+        }
+
+        return cells;
+    }
+
+    private List<String> toStrings(Object array, String what) {
+        if (!(array instanceof List<?> list) || !list.stream().allMatch(String.class::isInstance)) {
+            throw new IllegalArgumentException(String.format("%s must be JSON strings.", what));
+        }
+
+        return list.stream().map(String.class::cast).toList();
+    }
+
+    private String readBody(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_SIZE + 1);
+        if (body.length > MAX_BODY_SIZE) {
+            throw new IllegalArgumentException(String.format("The body is larger than %d bytes.", MAX_BODY_SIZE));
+        }
+
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    /*
+     * The path after /tables, decoded segment by segment, or null when it
+     * isn't under /tables.
+     */
+    private List<String> parsePath(String rawPath) {
+        if (!rawPath.equals(PREFIX) && !rawPath.startsWith(PREFIX + "/")) {
+
+            return null;
+        }
+        List<String> segments = new ArrayList<>();
+        for (String segment : rawPath.substring(PREFIX.length()).split("/")) {
+            if (!segment.isEmpty()) {
+                // In a path "+" is a plus sign, not a space.
+                segments.add(URLDecoder.decode(segment.replace("+", "%2B"), StandardCharsets.UTF_8));
+            }
+        }
+
+        return segments;
+    }
+
+    private String encode(String segment) {
+
+        return URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private void sendJson(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder body = new StringBuilder("{\"error\":");
+        Json.writeString(body, message == null ? "" : message);
+        sendJson(exchange, status, body.append('}').toString());
+    }
+
+    private void sendFailure(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() < 0) {
+            sendError(exchange, status, message);
+        }
+    }
+
+    private void sendNotAllowed(HttpExchange exchange, String allowed) throws IOException {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        sendError(exchange, 405, "Method not allowed.");
+    }
+
+}
@@ -0,0 +1,228 @@
+package az.arvilo.crudapp.http;
+
+import az.arvilo.crudapp.io.JsonText;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Just enough JSON for the API. parse() reads a document into maps (in key
+ * order), lists, strings, booleans and nulls; numbers are kept as their
+ * text, since cells are text. Malformed input, or arrays and objects
+ * nested deeper than MAX_DEPTH, throws IllegalArgumentException with the
+ * offset of the problem.
+ */
+class Json {
+
+    private static final int MAX_DEPTH = 64;
+
+    private final String text;
+    private int position;
+    private int depth;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    static Object parse(@NonNull String text) {
+        Json json = new Json(text);
+        Object value = json.readValue();
+        json.skipWhitespace();
+        if (json.position < text.length()) {
+            throw json.error("Unexpected content");
+        }
+
+        return value;
+    }
+
+    static void writeString(@NonNull Appendable out, @NonNull String value) throws IOException {
+        out.append('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (JsonText.needsEscape(c)) {
+                out.append(value, start, i).append(JsonText.escape(c));
+                start = i + 1;
+            }
+        }
+        out.append(value, start, value.length()).append('"');
+    }
+
+    static void writeStrings(@NonNull Appendable out, @NonNull List<String> values) throws IOException {
+        out.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            writeString(out, values.get(i));
+        }
+        out.append(']');
+    }
+
+    private Object readValue() {
+        skipWhitespace();
+        if (position == text.length()) {
+            throw error("Unexpected end");
+        }
+        char c = text.charAt(position);
+        if (c == '{' || c == '[') {
+            if (++depth > MAX_DEPTH) {
+                throw error("Nested too deeply");
+            }
+            Object value = c == '{' ? readObject() : readArray();
+            depth--;
+
+            return value;
+        } else if (c == '"') {
+
+            return readString();
+        } else if (text.startsWith("true", position)) {
+            position += 4;
+
+            return true;
+        } else if (text.startsWith("false", position)) {
+            position += 5;
+
+            return false;
+        } else if (text.startsWith("null", position)) {
+            position += 4;
+
+            return null;
+        }
+
+        return readNumber();
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        position++;
+        skipWhitespace();
+        if (consume('}')) {
+
+            return object;
+        }
+        do {
+            skipWhitespace();
+            if (position == text.length() || text.charAt(position) != '"') {
+                throw error("Expected a key");
+            }
+            String key = readString();
+            skipWhitespace();
+            if (!consume(':')) {
+                throw error("Expected ':'");
+            }
+            object.put(key, readValue());
+            skipWhitespace();
+        } while (consume(','));
+        if (!consume('}')) {
+            throw error("Expected ',' or '}'");
+        }
+
+        return object;
+    }
+
+    private List<Object> readArray() {
+        List<Object> array = new ArrayList<>();
+        position++;
+        skipWhitespace();
+        if (consume(']')) {
+
+            return array;
+        }
+        do {
+            array.add(readValue());
+            skipWhitespace();
+        } while (consume(','));
+        if (!consume(']')) {
+            throw error("Expected ',' or ']'");
+        }
+
+        return array;
+    }
+
+    private String readString() {
+        StringBuilder value = new StringBuilder();
+        position++;
+        while (true) {
+            if (position >= text.length()) {
+                throw error("Unterminated string");
+            }
+            char c = text.charAt(position++);
+            if (c == '"') {
+
+                return value.toString();
+            } else if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (position >= text.length()) {
+                throw error("Unterminated string");
+            }
+            char escaped = text.charAt(position++);
+            switch (escaped) {
+                case '"', '\\', '/' -> value.append(escaped);
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    if (position + 4 > text.length()) {
+                        throw error("Invalid escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text, position, position + 4, 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid escape");
+                    }
+                    position += 4;
+                }
+                default -> throw error("Invalid escape");
+            }
+        }
+    }
+
+    private String readNumber() {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+        if (position == start) {
+            throw error("Unexpected character");
+        }
+        String number = text.substring(start, position);
+        try {
+            Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number");
+        }
+
+        return number;
+    }
+
+    private boolean consume(char c) {
+        if (position < text.length() && text.charAt(position) == c) {
+            position++;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && " \t\r\n".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String problem) {
+
+        return new IllegalArgumentException(String.format("Invalid JSON: %s at offset %d.", problem, position));
+    }
+
+}
@@ -0,0 +1,113 @@
+package az.arvilo.crudapp.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/*
+ * Cuts a character stream into chunks of whole records, so that each chunk
+ * can be parsed on its own. Finding the cuts only needs the quote state:
+ * a line break outside quotes ends a record. As in RecordParser, a quote
+ * opens a quoted field only at the start of a field and is text anywhere
+ * else; inside a quoted field a doubled quote stays inside.
+ *
+ * A chunk hands its buffer over to the parser; the reader carries the
+ * partial record at its end into a fresh buffer.
+ */
+class ChunkReader {
+
+    private final Reader in;
+    private final boolean quoted;
+    private final char delimiter;
+    private final int chunkSize;
+    private char[] buffer;
+    private int length;
+    private boolean end;
+    private long nextLine;
+
+    ChunkReader(Reader in, TextFormat format, int chunkSize) {
+        this.in = in;
+        this.quoted = format.isQuoted();
+        this.delimiter = format.getDelimiter();
+        this.chunkSize = chunkSize;
+        this.buffer = new char[chunkSize];
+        this.nextLine = 1;
+    }
+
+    /*
+     * Returns null at the end of the stream.
+     */
+    Chunk next() throws IOException {
+        while (true) {
+            while (!end && length < buffer.length) {
+                int read = in.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    end = true;
+                } else {
+                    length += read;
+                }
+            }
+            if (length == 0) {
+
+                return null;
+            }
+            int cut = end ? length : lastRecordEnd();
+            if (cut > 0) {
+
+                return cut(cut);
+            }
+            // A single record is longer than the buffer.
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+    }
+
+    private int lastRecordEnd() {
+        boolean inQuotes = false;
+        boolean fieldStart = true;
+        int cut = 0;
+        for (int i = 0; i < length; i++) {
+            char c = buffer[i];
+            if (inQuotes) {
+                if (c == '"') {
+                    if (i + 1 < length && buffer[i + 1] == '"') {
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                }
+            } else if (c == '"' && quoted && fieldStart) {
+                inQuotes = true;
+                fieldStart = false;
+            } else if (c == '\n') {
+                cut = i + 1;
+                fieldStart = true;
+            } else {
+                fieldStart = c == delimiter;
+            }
+        }
+
+        return cut;
+    }
+
+    private Chunk cut(int cut) {
+        Chunk chunk = new Chunk(buffer, cut, nextLine);
+        for (int i = 0; i < cut; i++) {
+            if (buffer[i] == '\n') {
+                nextLine++;
+            }
+        }
+        char[] rest = new char[Math.max(chunkSize, length - cut)];
+        System.arraycopy(buffer, cut, rest, 0, length - cut);
+        buffer = rest;
+        length -= cut;
+
+        return chunk;
+    }
+
+    /*
+     * Characters [0, length) of chars, starting at line firstLine.
+     */
+    record Chunk(char[] chars, int length, long firstLine) {
+    }
+
+}
@@ -0,0 +1,26 @@
+package az.arvilo.crudapp.io;
+
+import lombok.NonNull;
+
+import java.nio.file.Path;
+
+/*
+ * CSV is written as TableImporter reads it back: a header line, then one
+ * line per row, quoted only where needed. JSON lines hold one object per
+ * row, keyed by the column names.
+ */
+public enum ExportFormat {
+
+    CSV,
+    JSON_LINES;
+
+    /*
+     * JSON lines for .jsonl and .ndjson files, CSV otherwise.
+     */
+    public static ExportFormat of(@NonNull Path path) {
+        String fileName = path.getFileName().toString().toLowerCase();
+
+        return fileName.endsWith(".jsonl") || fileName.endsWith(".ndjson") ? JSON_LINES : CSV;
+    }
+
+}
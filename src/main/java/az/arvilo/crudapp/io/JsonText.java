@@ -0,0 +1,29 @@
+package az.arvilo.crudapp.io;
+
+/*
+ * Escaping of JSON strings, shared by the JSON lines export and the HTTP
+ * API. Quotes, backslashes and control characters are escaped; every other
+ * character is written as it is.
+ */
+public class JsonText {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    public static boolean needsEscape(char c) {
+
+        return c == '"' || c == '\\' || c < 0x20;
+    }
+
+    public static String escape(char c) {
+
+        return switch (c) {
+            case '"' -> "\\\"";
+            case '\\' -> "\\\\";
+            case '\n' -> "\\n";
+            case '\r' -> "\\r";
+            case '\t' -> "\\t";
+            default -> "\\u00" + HEX_DIGITS[c >> 4] + HEX_DIGITS[c & 0xF];
+        };
+    }
+
+}
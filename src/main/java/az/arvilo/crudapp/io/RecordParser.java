@@ -0,0 +1,111 @@
+package az.arvilo.crudapp.io;
+
+import az.arvilo.crudapp.exception.InvalidInputException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Parses one chunk of whole records. Line breaks are \n or \r\n, blank lines
+ * are skipped and an unquoted field is taken as it is, quotes included.
+ */
+class RecordParser {
+
+    static final int ANY_FIELD_COUNT = -1;
+
+    /*
+     * Every record must have fieldCount fields or, for ANY_FIELD_COUNT, as
+     * many as the first record of the chunk.
+     */
+    static List<List<String>> parse(ChunkReader.Chunk chunk, TextFormat format, int fieldCount)
+            throws InvalidInputException {
+        char[] chars = chunk.chars();
+        int length = chunk.length();
+        char delimiter = format.getDelimiter();
+        List<List<String>> records = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        long line = chunk.firstLine();
+        int i = 0;
+        while (i < length) {
+            if (chars[i] == '\n') {
+                line++;
+                i++;
+                continue;
+            } else if (chars[i] == '\r' && i + 1 < length && chars[i + 1] == '\n') {
+                line++;
+                i += 2;
+                continue;
+            }
+            long recordLine = line;
+            fields.clear();
+            while (true) {
+                if (format.isQuoted() && i < length && chars[i] == '"') {
+                    value.setLength(0);
+                    int start = ++i;
+                    while (true) {
+                        if (i == length) {
+                            String errorMessage = String.format("Line %d: unclosed quote.", recordLine);
+                            throw new InvalidInputException(errorMessage);
+                        } else if (chars[i] == '"') {
+                            value.append(chars, start, i - start);
+                            if (i + 1 < length && chars[i + 1] == '"') {
+                                value.append('"');
+                                i += 2;
+                                start = i;
+                                continue;
+                            }
+                            i++;
+                            break;
+                        } else if (chars[i] == '\n') {
+                            line++;
+                        }
+                        i++;
+                    }
+                    if (i < length && chars[i] != delimiter && chars[i] != '\r' && chars[i] != '\n') {
+                        String errorMessage = String.format(
+                                "Line %d: unexpected %c after a closing quote.",
+                                line,
+                                chars[i]);
+                        throw new InvalidInputException(errorMessage);
+                    }
+                    fields.add(value.toString());
+                } else {
+                    int start = i;
+                    while (i < length && chars[i] != delimiter && chars[i] != '\n') {
+                        i++;
+                    }
+                    int end = i > start && chars[i - 1] == '\r' ? i - 1 : i;
+                    fields.add(new String(chars, start, end - start));
+                }
+                if (i < length && chars[i] == delimiter) {
+                    i++;
+                    continue;
+                }
+                if (i < length && chars[i] == '\r') {
+                    i++;
+                }
+                if (i < length && chars[i] == '\n') {
+                    line++;
+                    i++;
+                }
+                break;
+            }
+            if (fieldCount == ANY_FIELD_COUNT) {
+                fieldCount = fields.size();
+            } else if (fields.size() != fieldCount) {
+                String errorMessage = String.format(
+                        "Line %d has %d fields, %d expected.",
+                        recordLine,
+                        fields.size(),
+                        fieldCount);
+                throw new InvalidInputException(errorMessage);
+            }
+            records.add(Arrays.asList(fields.toArray(new String[0])));
+        }
+
+        return records;
+    }
+
+}
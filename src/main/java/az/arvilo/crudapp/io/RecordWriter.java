@@ -0,0 +1,211 @@
+package az.arvilo.crudapp.io;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
+
+/*
+ * Writes records to a file in one of the export formats. Escaped text goes
+ * into a small char buffer, is encoded to UTF-8 into a direct byte buffer
+ * and written to the channel whenever that fills up. Both buffers are
+ * reused for the whole file, so memory use does not depend on its size.
+ *
+ * The progress consumer gets the number of records written after every
+ * PROGRESS_INTERVAL records and once more when the writer is closed.
+ */
+public class RecordWriter implements AutoCloseable {
+
+    static final int PROGRESS_INTERVAL = 1 << 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ExportFormat format;
+    private final LongConsumer progress;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars;
+    private final ByteBuffer bytes;
+    private String[] keys;
+    private long recordCount;
+
+    public RecordWriter(@NonNull Path path,
+                        @NonNull ExportFormat format,
+                        @NonNull LongConsumer progress) throws IOException {
+        this.channel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+        );
+        this.format = format;
+        this.progress = progress;
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = CharBuffer.allocate(BUFFER_SIZE / 4);
+        this.bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /*
+     * CSV writes the header as its first line; JSON lines keep it as the
+     * keys of every object.
+     */
+    public void writeHeader(@NonNull List<String> header) throws IOException {
+        if (format == ExportFormat.CSV) {
+            appendCsvRecord(header.size(), header::get);
+
+            return;
+        }
+        keys = new String[header.size()];
+        for (int i = 0; i < keys.length; i++) {
+            StringBuilder key = new StringBuilder(i == 0 ? "{\"" : ",\"");
+            String name = header.get(i);
+            for (int j = 0; j < name.length(); j++) {
+                char c = name.charAt(j);
+                key.append(JsonText.needsEscape(c) ? JsonText.escape(c) : String.valueOf(c));
+            }
+            keys[i] = key.append("\":").toString();
+        }
+    }
+
+    public void writeRecord(int fieldCount, @NonNull IntFunction<String> fields) throws IOException {
+        if (format == ExportFormat.CSV) {
+            appendCsvRecord(fieldCount, fields);
+        } else {
+            for (int i = 0; i < fieldCount; i++) {
+                append(keys[i]);
+                appendJsonString(fields.apply(i));
+            }
+            append(fieldCount == 0 ? "{}\n" : "}\n");
+        }
+        if (++recordCount % PROGRESS_INTERVAL == 0) {
+            progress.accept(recordCount);
+        }
+    }
+
+    public long getRecordCount() {
+
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                writeBytes();
+            }
+            writeBytes();
+        } finally {
+            channel.close();
+        }
+        progress.accept(recordCount);
+    }
+
+    /*
+     * A lone empty field is quoted, since a blank line reads as no record.
+     */
+    private void appendCsvRecord(int fieldCount, IntFunction<String> fields) throws IOException {
+        for (int i = 0; i < fieldCount; i++) {
+            if (i > 0) {
+                append(',');
+            }
+            String value = fields.apply(i);
+            boolean quoted = fieldCount == 1 && value.isEmpty();
+            for (int j = 0; j < value.length() && !quoted; j++) {
+                char c = value.charAt(j);
+                quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quoted) {
+                append(value);
+                continue;
+            }
+            append('"');
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '"') {
+                    append('"');
+                }
+                append(c);
+            }
+            append('"');
+        }
+        append('\n');
+    }
+
+    private void appendJsonString(String value) throws IOException {
+        append('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (JsonText.needsEscape(c)) {
+                append(value, start, i);
+                append(JsonText.escape(c));
+                start = i + 1;
+            }
+        }
+        append(value, start, value.length());
+        append('"');
+    }
+
+    private void append(char c) throws IOException {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(c);
+    }
+
+    private void append(String text) throws IOException {
+        append(text, 0, text.length());
+    }
+
+    private void append(String text, int start, int end) throws IOException {
+        while (start < end) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int next = Math.min(end, start + chars.remaining());
+            chars.put(text, start, next);
+            start = next;
+        }
+    }
+
+    /*
+     * A high surrogate at the end of the chars stays there until its pair
+     * arrives.
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                writeBytes();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        chars.compact();
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+}
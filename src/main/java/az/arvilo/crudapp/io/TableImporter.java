@@ -0,0 +1,187 @@
+package az.arvilo.crudapp.io;
+
+import az.arvilo.crudapp.exception.DataBaseCorruptException;
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.service.Service;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/*
+ * Streams a CSV or TSV file into a table. The first record is the header:
+ * a missing table is created with those columns, an existing one gets them
+ * when it has none and must have exactly them otherwise. The other records
+ * are appended in batches of one chunk (see ChunkReader), each validated
+ * and logged once by Service.addRows, so the file is never held in memory
+ * as a whole.
+ *
+ * With a pool, chunks are parsed in parallel while the reader goes on
+ * cutting the next ones. The parsed chunks are appended strictly in file
+ * order, and at most two per pool thread wait for their turn.
+ *
+ * A failing batch stops the import; the batches before it stay in the table.
+ */
+public class TableImporter {
+
+    static final int CHUNK_SIZE = 1 << 20;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    public static long importFile(@NonNull Service service,
+                                  @NonNull String tableName,
+                                  @NonNull Path path)
+            throws IOException, InvalidInputException, DataBaseCorruptException {
+        try (Reader in = openReader(path)) {
+
+            return importRecords(service, tableName, in, TextFormat.of(path), null, CHUNK_SIZE);
+        }
+    }
+
+    public static long importFile(@NonNull Service service,
+                                  @NonNull String tableName,
+                                  @NonNull Path path,
+                                  @NonNull ForkJoinPool pool)
+            throws IOException, InvalidInputException, DataBaseCorruptException {
+        try (Reader in = openReader(path)) {
+
+            return importRecords(service, tableName, in, TextFormat.of(path), pool, CHUNK_SIZE);
+        }
+    }
+
+    /*
+     * Returns the number of rows added. Chunks are parsed on the calling
+     * thread when pool is null.
+     */
+    static long importRecords(Service service,
+                              String tableName,
+                              Reader in,
+                              TextFormat format,
+                              ForkJoinPool pool,
+                              int chunkSize)
+            throws IOException, InvalidInputException, DataBaseCorruptException {
+        ChunkReader reader = new ChunkReader(in, format, chunkSize);
+        ChunkReader.Chunk chunk = reader.next();
+        List<List<String>> records = chunk == null
+                ? List.of()
+                : RecordParser.parse(chunk, format, RecordParser.ANY_FIELD_COUNT);
+        if (records.isEmpty()) {
+            String errorMessage = "The file has no header.";
+            throw new InvalidInputException(errorMessage);
+        }
+        List<String> header = records.get(0);
+        prepareTable(service, tableName, header);
+        long rowCount = append(service, tableName, records.subList(1, records.size()), chunk);
+        Queue<Parsing> parsing = new ArrayDeque<>();
+        try {
+            while ((chunk = reader.next()) != null) {
+                if (pool == null) {
+                    rowCount += append(service, tableName, RecordParser.parse(chunk, format, header.size()), chunk);
+                    continue;
+                }
+                ChunkReader.Chunk next = chunk;
+                parsing.add(new Parsing(
+                        chunk,
+                        pool.submit(() -> RecordParser.parse(next, format, header.size()))
+                ));
+                if (parsing.size() >= 2 * pool.getParallelism()) {
+                    rowCount += append(service, tableName, parsing.remove());
+                }
+            }
+            while (!parsing.isEmpty()) {
+                rowCount += append(service, tableName, parsing.remove());
+            }
+        } finally {
+            parsing.forEach(next -> next.records().cancel(false));
+        }
+
+        return rowCount;
+    }
+
+    private static Reader openReader(Path path) throws IOException {
+
+        return Channels.newReader(
+                FileChannel.open(path, StandardOpenOption.READ),
+                StandardCharsets.UTF_8.newDecoder(),
+                READ_BUFFER_SIZE
+        );
+    }
+
+    private static void prepareTable(Service service, String tableName, List<String> header)
+            throws InvalidInputException, DataBaseCorruptException {
+        if (service.getTableNames().contains(tableName)) {
+            List<String> columnNames = service.getColumnNames(tableName);
+            if (columnNames.isEmpty()) {
+                service.addNewColumns(tableName, header);
+            } else if (!columnNames.equals(header)) {
+                String errorMessage = String.format(
+                        "The header does not match the columns of %s table.",
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            }
+
+            return;
+        }
+        service.createTable(tableName);
+        try {
+            service.addNewColumns(tableName, header);
+        } catch (InvalidInputException | DataBaseCorruptException e) {
+            service.dropTable(tableName);
+            throw e;
+        }
+    }
+
+    private static long append(Service service,
+                               String tableName,
+                               List<List<String>> rows,
+                               ChunkReader.Chunk chunk)
+            throws InvalidInputException, DataBaseCorruptException {
+        if (rows.isEmpty()) {
+
+            return 0;
+        }
+        try {
+            service.addRows(tableName, rows);
+        } catch (InvalidInputException e) {
+            String errorMessage = String.format(
+                    "%s (batch from line %d)",
+                    e.getMessage(),
+                    chunk.firstLine());
+            throw new InvalidInputException(errorMessage);
+        }
+
+        return rows.size();
+    }
+
+    private static long append(Service service, String tableName, Parsing parsing)
+            throws InvalidInputException, DataBaseCorruptException {
+        List<List<String>> rows;
+        try {
+            rows = parsing.records().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InvalidInputException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+
+        return append(service, tableName, rows, parsing.chunk());
+    }
+
+    private record Parsing(ChunkReader.Chunk chunk, Future<List<List<String>>> records) {
+    }
+
+}
@@ -0,0 +1,44 @@
+package az.arvilo.crudapp.io;
+
+import lombok.NonNull;
+
+import java.nio.file.Path;
+
+/*
+ * CSV follows RFC 4180: a field holding the delimiter, a quote or a line
+ * break is written in double quotes, and a quote inside it is doubled.
+ * TSV fields are never quoted, so they cannot hold tabs or line breaks.
+ */
+public enum TextFormat {
+
+    CSV(',', true),
+    TSV('\t', false);
+
+    private final char delimiter;
+    private final boolean quoted;
+
+    TextFormat(char delimiter, boolean quoted) {
+        this.delimiter = delimiter;
+        this.quoted = quoted;
+    }
+
+    public char getDelimiter() {
+
+        return delimiter;
+    }
+
+    public boolean isQuoted() {
+
+        return quoted;
+    }
+
+    /*
+     * TSV for .tsv and .tab files, CSV otherwise.
+     */
+    public static TextFormat of(@NonNull Path path) {
+        String fileName = path.getFileName().toString().toLowerCase();
+
+        return fileName.endsWith(".tsv") || fileName.endsWith(".tab") ? TSV : CSV;
+    }
+
+}
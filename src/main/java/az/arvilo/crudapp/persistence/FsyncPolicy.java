@@ -0,0 +1,14 @@
+package az.arvilo.crudapp.persistence;
+
+public enum FsyncPolicy {
+
+    /** Forces every record to disk before the mutation is applied. */
+    EVERY_OPERATION,
+
+    /** Forces pending records to disk once per group commit interval. */
+    GROUP_COMMIT,
+
+    /** Leaves flushing to the operating system. */
+    OS_MANAGED
+
+}
@@ -0,0 +1,6 @@
+package az.arvilo.crudapp.persistence;
+
+import java.util.List;
+
+public record LogRecord(Operation operation, List<String> arguments) {
+}
@@ -0,0 +1,63 @@
+package az.arvilo.crudapp.persistence;
+
+public enum Operation {
+
+    CREATE_TABLE(1, 1),
+    DROP_TABLE(2, 1),
+    ADD_NEW_ROW(3, 1),
+    UPDATE_CELL(4, 4),
+    DELETE_ROW(5, 2),
+    ADD_NEW_COLUMN(6, 2),
+    DELETE_COLUMN(7, 2),
+    CREATE_INDEX(8, 2),
+    DROP_INDEX(9, 2),
+    CREATE_ORDERED_INDEX(10, 2),
+    DROP_ORDERED_INDEX(11, 2),
+    ADD_ROWS(12, Operation.VARIABLE_ARGUMENTS),
+    DELETE_ROWS(13, Operation.VARIABLE_ARGUMENTS),
+    UPDATE_CELLS(14, Operation.VARIABLE_ARGUMENTS),
+    TRANSACTION(15, Operation.VARIABLE_ARGUMENTS);
+
+    /*
+     * Bulk operations take the table name followed by any number of
+     * arguments, so that a batch is logged and replayed as one record.
+     * A transaction holds the records of its changes, each as its operation
+     * code, its argument count and its arguments.
+     */
+    private static final int VARIABLE_ARGUMENTS = -1;
+
+    private final byte code;
+    private final int argumentCount;
+
+    Operation(int code, int argumentCount) {
+        this.code = (byte) code;
+        this.argumentCount = argumentCount;
+    }
+
+    public byte getCode() {
+
+        return code;
+    }
+
+    public int getArgumentCount() {
+
+        return argumentCount;
+    }
+
+    public boolean hasVariableArguments() {
+
+        return argumentCount == VARIABLE_ARGUMENTS;
+    }
+
+    public static Operation fromCode(byte code) {
+        for (Operation operation : values()) {
+            if (operation.code == code) {
+
+                return operation;
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,310 @@
+package az.arvilo.crudapp.persistence;
+
+import az.arvilo.crudapp.storage.Table;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/*
+ * File layout: magic (int), version (int), epoch (long), directory offset
+ * (long), table blocks, directory. The directory holds the table count and,
+ * for each table, its name, block offset (long) and block length (long).
+ *
+ * A table block is the header size (int), the column names, the column count
+ * (int), then every column as its row count (int) followed by its cells.
+ * Since version 2 the block ends with the count (int) and ordinals (int) of
+ * the columns with a hash index, and since version 3 with those of the
+ * columns with an ordered index. Version 4 appends the next row ID (long),
+ * the row count (int) and the ID (long) of every row; before it, rows are
+ * numbered from 1. Strings are written as a byte length (int) and UTF-8
+ * bytes; a null cell has the length -1.
+ *
+ * Removed rows are not written, so a table is read back compacted.
+ */
+public class Snapshot {
+
+    private static final int MAGIC = 0x43525544;
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /*
+     * Writes all tables to a temporary file that replaces the target atomically,
+     * so a crash never leaves a half-written snapshot behind.
+     */
+    public static void write(@NonNull Path path, @NonNull Map<String, Table> tables, long epoch)
+            throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<String, long[]> directory = new LinkedHashMap<>();
+        try (FileChannel channel = FileChannel.open(
+                temporary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(epoch);
+            out.putLong(0);
+            for (Map.Entry<String, Table> entry : tables.entrySet()) {
+                long offset = out.position();
+                writeTable(out, entry.getValue());
+                directory.put(entry.getKey(), new long[]{offset, out.position() - offset});
+            }
+            long directoryOffset = out.position();
+            out.putInt(directory.size());
+            for (Map.Entry<String, long[]> entry : directory.entrySet()) {
+                out.putString(entry.getKey());
+                out.putLong(entry.getValue()[0]);
+                out.putLong(entry.getValue()[1]);
+            }
+            out.flush();
+            ByteBuffer offset = ByteBuffer.allocate(Long.BYTES).putLong(0, directoryOffset);
+            while (offset.hasRemaining()) {
+                channel.write(offset, HEADER_SIZE - Long.BYTES + offset.position());
+            }
+            channel.force(true);
+        }
+        Files.move(
+                temporary,
+                path,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    /*
+     * Maps the file and registers every table without decoding it. A table is
+     * decoded from its mapped block on first access. Returns the epoch.
+     */
+    public static long load(@NonNull Path path, @NonNull Map<String, Table> tables)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException(String.format("%s is not a snapshot.", path));
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException(String.format("%s is not a snapshot.", path));
+            }
+            int version = header.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException(String.format("%s has unsupported version %d.", path, version));
+            }
+            long epoch = header.getLong();
+            long directoryOffset = header.getLong();
+            if (directoryOffset < HEADER_SIZE || directoryOffset > size) {
+                throw new IOException(String.format("%s is truncated.", path));
+            }
+            MappedByteBuffer directory = map(channel, directoryOffset, size - directoryOffset);
+            int tableCount = directory.getInt();
+            for (int i = 0; i < tableCount; i++) {
+                String name = getString(directory);
+                long offset = directory.getLong();
+                long length = directory.getLong();
+                if (offset < HEADER_SIZE || offset + length > directoryOffset) {
+                    throw new IOException(String.format("%s is truncated.", path));
+                }
+                MappedByteBuffer block = map(channel, offset, length);
+                tables.put(name, Table.lazy(() -> readTable(block.duplicate(), version)));
+            }
+
+            return epoch;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset, long length)
+            throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("A snapshot block can't be larger than 2 GB.");
+        }
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    /*
+     * The read lock keeps the table still while it is written, e.g. against
+     * a background compaction.
+     */
+    private static void writeTable(Output out, Table table) throws IOException {
+        table.getLock().readLock().lock();
+        try {
+            List<String> header = table.getHeader();
+            out.putInt(header.size());
+            for (String name : header) {
+                out.putString(name);
+            }
+            out.putInt(table.getColumnCount());
+            for (int i = 0; i < table.getColumnCount(); i++) {
+                // A corrupted table is written as it is, ragged columns included.
+                if (table.isCorrupted()) {
+                    int rowCount = table.getColumn(i).size();
+                    out.putInt(rowCount);
+                    for (int j = 0; j < rowCount; j++) {
+                        out.putString(table.getColumn(i).get(j));
+                    }
+                } else {
+                    out.putInt(table.getRowCount());
+                    for (int j = 0; j < table.getRowCount(); j++) {
+                        out.putString(table.getCell(j, i));
+                    }
+                }
+            }
+            putColumns(out, table, table::isIndexed);
+            putColumns(out, table, table::isOrdered);
+            out.putLong(table.getNextRowId());
+            int rowCount = table.isCorrupted() ? 0 : table.getRowCount();
+            out.putInt(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                out.putLong(table.getRowId(i));
+            }
+        } finally {
+            table.getLock().readLock().unlock();
+        }
+    }
+
+    private static void putColumns(Output out, Table table, IntPredicate filter) throws IOException {
+        int[] selected = IntStream
+                .range(0, table.getColumnCount())
+                .filter(filter)
+                .toArray();
+        out.putInt(selected.length);
+        for (int column : selected) {
+            out.putInt(column);
+        }
+    }
+
+    private static Table readTable(ByteBuffer in, int version) {
+        int headerSize = in.getInt();
+        List<String> header = new ArrayList<>(headerSize);
+        for (int i = 0; i < headerSize; i++) {
+            header.add(getString(in));
+        }
+        int columnCount = in.getInt();
+        List<String[]> columns = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            String[] values = new String[in.getInt()];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = getString(in);
+            }
+            columns.add(values);
+        }
+        Table table = Table.fromColumns(header, columns);
+        if (version >= 2) {
+            int indexCount = in.getInt();
+            for (int i = 0; i < indexCount; i++) {
+                table.createIndex(in.getInt());
+            }
+        }
+        if (version >= 3) {
+            int indexCount = in.getInt();
+            for (int i = 0; i < indexCount; i++) {
+                table.createOrderedIndex(in.getInt());
+            }
+        }
+        if (version >= 4) {
+            long nextRowId = in.getLong();
+            long[] rowIds = new long[in.getInt()];
+            for (int i = 0; i < rowIds.length; i++) {
+                rowIds[i] = in.getLong();
+            }
+            if (!table.isCorrupted()) {
+                table.setRowIds(rowIds, nextRowId);
+            }
+        }
+
+        return table;
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Output {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long flushed;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.flushed = 0;
+        }
+
+        long position() {
+
+            return flushed + buffer.position();
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putString(String value) throws IOException {
+            if (value == null) {
+                putInt(-1);
+
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            if (bytes.length > buffer.capacity()) {
+                flush();
+                ByteBuffer large = ByteBuffer.wrap(bytes);
+                while (large.hasRemaining()) {
+                    flushed += channel.write(large);
+                }
+
+                return;
+            }
+            ensureRemaining(bytes.length);
+            buffer.put(bytes);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensureRemaining(int count) throws IOException {
+            if (buffer.remaining() < count) {
+                flush();
+            }
+        }
+
+    }
+
+}
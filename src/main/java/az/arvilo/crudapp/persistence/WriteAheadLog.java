@@ -0,0 +1,300 @@
+package az.arvilo.crudapp.persistence;
+
+import lombok.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/*
+ * The file starts with its epoch (long). A snapshot taken at a checkpoint
+ * carries the epoch of the log that continues it, so a log left over from an
+ * earlier epoch is known to be folded into the snapshot already.
+ *
+ * Record layout: payload length (int), CRC32 of the payload (int), payload.
+ * The payload is the operation code (byte) followed by the arguments, each
+ * written as a byte length (int) and its UTF-8 bytes. Operations with a
+ * variable number of arguments read them up to the end of the payload.
+ */
+public final class WriteAheadLog implements AutoCloseable {
+
+    private static final int FILE_HEADER_SIZE = Long.BYTES;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final FileChannel channel;
+    private final FsyncPolicy fsyncPolicy;
+    private final ScheduledExecutorService groupCommitter;
+    private final CRC32 crc;
+    private ByteBuffer buffer;
+    private boolean dirty;
+    /*
+     * Set when a group commit failed. Records written before it may never
+     * reach the disk, so every later append and sync fails with it.
+     */
+    private IOException groupCommitFailure;
+
+    /*
+     * Opens the log of the given epoch. A log of the epoch before, folded into
+     * the snapshot already, is discarded; see continues().
+     */
+    public WriteAheadLog(@NonNull Path path,
+                         @NonNull FsyncPolicy fsyncPolicy,
+                         long groupCommitMillis,
+                         long epoch) throws IOException {
+        boolean continued = continues(path, epoch);
+        this.channel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND
+        );
+        this.fsyncPolicy = fsyncPolicy;
+        this.crc = new CRC32();
+        this.buffer = ByteBuffer.allocate(256);
+        if (!continued) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putLong(0, epoch);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        }
+        if (fsyncPolicy == FsyncPolicy.GROUP_COMMIT) {
+            if (groupCommitMillis < 1) {
+                throw new IllegalArgumentException("Group commit interval must be positive.");
+            }
+            groupCommitter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-group-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            groupCommitter.scheduleWithFixedDelay(
+                    this::commitGroup,
+                    groupCommitMillis,
+                    groupCommitMillis,
+                    TimeUnit.MILLISECONDS
+            );
+        } else {
+            groupCommitter = null;
+        }
+    }
+
+    public synchronized void append(@NonNull Operation operation, @NonNull String... arguments)
+            throws IOException {
+        checkGroupCommit();
+        if (operation.hasVariableArguments()) {
+            if (arguments.length == 0) {
+                throw new IllegalArgumentException(
+                        String.format("%s takes at least 1 argument.", operation)
+                );
+            }
+        } else if (arguments.length != operation.getArgumentCount()) {
+            throw new IllegalArgumentException(
+                    String.format("%s takes %d arguments.", operation, operation.getArgumentCount())
+            );
+        }
+        byte[][] encoded = new byte[arguments.length][];
+        int payloadLength = 1;
+        for (int i = 0; i < arguments.length; i++) {
+            encoded[i] = arguments[i].getBytes(StandardCharsets.UTF_8);
+            payloadLength += Integer.BYTES + encoded[i].length;
+        }
+        if (buffer.capacity() < HEADER_SIZE + payloadLength) {
+            buffer = ByteBuffer.allocate(Math.max(HEADER_SIZE + payloadLength, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        buffer.position(HEADER_SIZE);
+        buffer.put(operation.getCode());
+        for (byte[] argument : encoded) {
+            buffer.putInt(argument.length);
+            buffer.put(argument);
+        }
+        crc.reset();
+        crc.update(buffer.array(), HEADER_SIZE, payloadLength);
+        buffer.putInt(0, payloadLength);
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (fsyncPolicy == FsyncPolicy.EVERY_OPERATION) {
+            channel.force(false);
+        } else {
+            dirty = true;
+        }
+    }
+
+    public synchronized void sync() throws IOException {
+        checkGroupCommit();
+        channel.force(false);
+        dirty = false;
+    }
+
+    /*
+     * Returns -1 when the log does not exist or has no header yet.
+     */
+    public static long readEpoch(@NonNull Path path) throws IOException {
+        if (!Files.exists(path)) {
+
+            return -1;
+        }
+        try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (readChannel.read(header) < 0) {
+
+                    return -1;
+                }
+            }
+
+            return header.getLong(0);
+        }
+    }
+
+    /*
+     * Whether the log continues a snapshot of the given epoch, so that it is
+     * to be replayed. A missing log doesn't, nor does one of the epoch before,
+     * which the snapshot already holds. A log of any other epoch belongs to a
+     * snapshot that wasn't loaded; it is neither replayed nor discarded.
+     */
+    public static boolean continues(@NonNull Path path, long epoch) throws IOException {
+        long logEpoch = readEpoch(path);
+        if (logEpoch == epoch) {
+
+            return true;
+        } else if (logEpoch < 0 || logEpoch == epoch - 1) {
+
+            return false;
+        }
+        String errorMessage = String.format(
+                "The log %s is of epoch %d, but the snapshot is of epoch %d. Start with the snapshot it continues.",
+                path,
+                logEpoch,
+                epoch);
+        throw new IllegalStateException(errorMessage);
+    }
+
+    /*
+     * Reads every complete record in order. A torn or corrupted tail, left by a
+     * crash in the middle of an append, is cut off so that new records follow
+     * the last valid one.
+     */
+    public static void replay(@NonNull Path path, @NonNull Consumer<LogRecord> handler)
+            throws IOException {
+        if (readEpoch(path) < 0) {
+
+            return;
+        }
+        long validLength = FILE_HEADER_SIZE;
+        try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(
+                     new BufferedInputStream(Channels.newInputStream(readChannel)))) {
+            long fileLength = readChannel.size();
+            CRC32 checksum = new CRC32();
+            in.skipNBytes(FILE_HEADER_SIZE);
+            while (validLength + HEADER_SIZE <= fileLength) {
+                int payloadLength = in.readInt();
+                int expectedCrc = in.readInt();
+                if (payloadLength < 1 || validLength + HEADER_SIZE + payloadLength > fileLength) {
+                    break;
+                }
+                byte[] payload = new byte[payloadLength];
+                in.readFully(payload);
+                checksum.reset();
+                checksum.update(payload);
+                if ((int) checksum.getValue() != expectedCrc) {
+                    break;
+                }
+                LogRecord record = decode(payload);
+                if (record == null) {
+                    break;
+                }
+                handler.accept(record);
+                validLength += HEADER_SIZE + payloadLength;
+            }
+        } catch (EOFException e) {
+            // The tail is shorter than its header claims; it is truncated below.
+        }
+        try (FileChannel writeChannel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (writeChannel.size() > validLength) {
+                writeChannel.truncate(validLength);
+                writeChannel.force(true);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (groupCommitter != null) {
+            groupCommitter.shutdown();
+        }
+        synchronized (this) {
+            if (fsyncPolicy != FsyncPolicy.OS_MANAGED) {
+                channel.force(false);
+            }
+            channel.close();
+        }
+    }
+
+    private synchronized void commitGroup() {
+        if (!dirty || !channel.isOpen() || groupCommitFailure != null) {
+
+            return;
+        }
+        try {
+            sync();
+        } catch (IOException e) {
+            // Thrown out of the task, it would cancel later runs silently.
+            groupCommitFailure = e;
+        }
+    }
+
+    private void checkGroupCommit() throws IOException {
+        if (groupCommitFailure != null) {
+            throw new IOException("A group commit failed; the log is no longer durable.", groupCommitFailure);
+        }
+    }
+
+    private static LogRecord decode(byte[] payload) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        Operation operation = Operation.fromCode(in.get());
+        if (operation == null) {
+
+            return null;
+        }
+        List<String> arguments = new ArrayList<>();
+        while (operation.hasVariableArguments()
+                ? in.hasRemaining()
+                : arguments.size() < operation.getArgumentCount()) {
+            if (in.remaining() < Integer.BYTES) {
+
+                return null;
+            }
+            int length = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+
+                return null;
+            }
+            arguments.add(new String(payload, in.position(), length, StandardCharsets.UTF_8));
+            in.position(in.position() + length);
+        }
+
+        return in.hasRemaining() ? null : new LogRecord(operation, arguments);
+    }
+
+}
@@ -0,0 +1,32 @@
+package az.arvilo.crudapp.query;
+
+import lombok.NonNull;
+
+/*
+ * COUNT and COUNT_DISTINCT skip empty cells, COUNT(*) counts rows. MIN, MAX,
+ * SUM and AVG only take numeric-looking cells into account.
+ */
+public enum AggregateFunction {
+
+    COUNT,
+    COUNT_DISTINCT,
+    MIN,
+    MAX,
+    SUM,
+    AVG;
+
+    public static final String ALL_ROWS = "*";
+
+    public String label(@NonNull String columnName) {
+
+        return this == COUNT_DISTINCT
+                ? String.format("COUNT(DISTINCT %s)", columnName)
+                : String.format("%s(%s)", name(), columnName);
+    }
+
+    public boolean isNumeric() {
+
+        return this == MIN || this == MAX || this == SUM || this == AVG;
+    }
+
+}
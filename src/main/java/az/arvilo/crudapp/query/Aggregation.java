@@ -0,0 +1,372 @@
+package az.arvilo.crudapp.query;
+
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.storage.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+/*
+ * Groups rows and folds them into per-group accumulators.
+ *
+ * Grouping cells are encoded into dense codes by one StringDictionary per
+ * grouping column. The group of a row is then found level by level: the
+ * group of the first k columns and the code of column k + 1 are packed into
+ * one long and looked up in an open-addressing LongIntHashMap. Accumulators
+ * are primitive arrays indexed by the final group id, so the scan allocates
+ * nothing per row beyond growing those tables.
+ */
+class Aggregation {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private final Table table;
+    private final int[] groupColumns;
+    private final StringDictionary[] groupDictionaries;
+    private final LongIntHashMap[] groupLevels;
+    private final int[] levelSizes;
+    private final Accumulator[] accumulators;
+    private int[] firstRows;
+    private int groupCount;
+
+    private Aggregation(Table table, int[] groupColumns, Accumulator[] accumulators) {
+        this.table = table;
+        this.groupColumns = groupColumns;
+        this.groupDictionaries = new StringDictionary[groupColumns.length];
+        this.groupLevels = new LongIntHashMap[groupColumns.length];
+        this.levelSizes = new int[groupColumns.length];
+        for (int i = 0; i < groupColumns.length; i++) {
+            groupDictionaries[i] = new StringDictionary();
+            groupLevels[i] = new LongIntHashMap(16);
+        }
+        this.accumulators = accumulators;
+        this.firstRows = new int[16];
+    }
+
+    static QueryResult execute(Query query, Table table, PrimitiveIterator.OfInt rows)
+            throws InvalidInputException {
+        List<String> groupBy = query.getGroupBy();
+        int[] groupColumns = new int[groupBy.size()];
+        for (int i = 0; i < groupColumns.length; i++) {
+            groupColumns[i] = getColumn(query, table, groupBy.get(i));
+        }
+        List<Selection> selections = query.getSelections().isEmpty()
+                ? groupBy.stream().map(columnName -> new Selection(columnName, null)).toList()
+                : query.getSelections();
+        List<Accumulator> accumulators = new ArrayList<>();
+        int[] outputs = new int[selections.size()];
+        for (int i = 0; i < outputs.length; i++) {
+            Selection selection = selections.get(i);
+            if (!selection.isAggregate()) {
+                if (!groupBy.contains(selection.columnName())) {
+                    String errorMessage = String.format(
+                            "%s column must be grouped or aggregated.",
+                            selection.columnName());
+                    throw new InvalidInputException(errorMessage);
+                }
+                outputs[i] = getColumn(query, table, selection.columnName());
+                continue;
+            }
+            int column;
+            if (selection.columnName().equals(AggregateFunction.ALL_ROWS)) {
+                if (selection.function() != AggregateFunction.COUNT) {
+                    String errorMessage = String.format("%s is not valid.", selection.label());
+                    throw new InvalidInputException(errorMessage);
+                }
+                column = -1;
+            } else {
+                column = getColumn(query, table, selection.columnName());
+            }
+            outputs[i] = -1 - accumulators.size();
+            accumulators.add(new Accumulator(table, selection.function(), column));
+        }
+        Aggregation aggregation = new Aggregation(
+                table,
+                groupColumns,
+                accumulators.toArray(new Accumulator[0])
+        );
+        if (groupColumns.length == 0) {
+            // Without grouping there is exactly one group, even for no rows.
+            aggregation.addGroup(-1);
+        }
+        while (rows.hasNext()) {
+            aggregation.add(rows.nextInt());
+        }
+
+        return aggregation.toResult(query, selections, outputs);
+    }
+
+    private void add(int row) {
+        int group = 0;
+        if (groupColumns.length > 0) {
+            int parent = 0;
+            for (int i = 0; i < groupColumns.length; i++) {
+                int code = groupDictionaries[i].encode(table.getCell(row, groupColumns[i]));
+                long key = ((long) parent << 32) | code;
+                int next = groupLevels[i].putIfAbsent(key, levelSizes[i]);
+                if (next == LongIntHashMap.ABSENT) {
+                    next = levelSizes[i]++;
+                    if (i == groupColumns.length - 1) {
+                        addGroup(row);
+                    }
+                }
+                parent = next;
+            }
+            group = parent;
+        }
+        for (Accumulator accumulator : accumulators) {
+            accumulator.add(group, row);
+        }
+    }
+
+    private void addGroup(int firstRow) {
+        if (groupCount == firstRows.length) {
+            firstRows = Arrays.copyOf(firstRows, groupCount * 2);
+        }
+        firstRows[groupCount++] = firstRow;
+        for (Accumulator accumulator : accumulators) {
+            accumulator.ensureCapacity(groupCount);
+        }
+    }
+
+    private QueryResult toResult(Query query, List<Selection> selections, int[] outputs)
+            throws InvalidInputException {
+        List<String> header = selections.stream().map(Selection::label).toList();
+        List<List<String>> rows = new ArrayList<>(groupCount);
+        for (int group = 0; group < groupCount; group++) {
+            List<String> values = new ArrayList<>(outputs.length);
+            for (int output : outputs) {
+                values.add(output >= 0
+                        ? table.getCell(firstRows[group], output)
+                        : accumulators[-1 - output].result(group));
+            }
+            rows.add(values);
+        }
+        if (query.getOrderBy() != null) {
+            int column = header.indexOf(query.getOrderBy());
+            if (column < 0) {
+                String errorMessage = String.format("%s is not in the result.", query.getOrderBy());
+                throw new InvalidInputException(errorMessage);
+            }
+            Comparator<List<String>> order = (left, right) -> compareValues(left.get(column), right.get(column));
+            rows.sort(query.isDescending() ? order.reversed() : order);
+        }
+        if (query.getLimit() != Query.NO_LIMIT && rows.size() > query.getLimit()) {
+            rows = rows.subList(0, query.getLimit());
+        }
+        List<Integer> rowNumbers = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            rowNumbers.add(i + 1);
+        }
+
+        return new QueryResult(header, rowNumbers, List.copyOf(rows));
+    }
+
+    /*
+     * Numbers compare by value, anything else in String order after them.
+     */
+    private static int compareValues(String left, String right) {
+        double leftNumber = parseNumber(left);
+        double rightNumber = parseNumber(right);
+        if (!Double.isNaN(leftNumber) && !Double.isNaN(rightNumber)) {
+
+            return Double.compare(leftNumber, rightNumber);
+        } else if (!Double.isNaN(leftNumber)) {
+
+            return -1;
+        } else if (!Double.isNaN(rightNumber)) {
+
+            return 1;
+        }
+
+        return left.compareTo(right);
+    }
+
+    /*
+     * NaN unless the cell looks like a decimal number, e.g. "-12", "3.5" or
+     * "1e6". The check is done by hand so that text cells, the common case,
+     * never reach the exception path of Double.parseDouble.
+     *
+     * Numbers of at most 15 digits without an exponent are computed from
+     * their digits directly: both the digits and the power of ten are exact
+     * doubles, so the one division rounds correctly, and unlike
+     * Double.parseDouble nothing is allocated.
+     */
+    static double parseNumber(String cell) {
+        int length = cell.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (cell.charAt(i) == '-' || cell.charAt(i) == '+')) {
+            negative = cell.charAt(i) == '-';
+            i++;
+        }
+        int digits = 0;
+        int fractionDigits = 0;
+        long mantissa = 0;
+        boolean point = false;
+        for (; i < length; i++) {
+            char c = cell.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                mantissa = mantissa * 10 + (c - '0');
+                if (point) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+
+            return Double.NaN;
+        }
+        if (i == length && digits <= 15) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+
+            return negative ? -value : value;
+        }
+        if (i < length && (cell.charAt(i) == 'e' || cell.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (cell.charAt(i) == '-' || cell.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < length && cell.charAt(i) >= '0' && cell.charAt(i) <= '9') {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+
+                return Double.NaN;
+            }
+        }
+
+        return i == length ? Double.parseDouble(cell) : Double.NaN;
+    }
+
+    static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+
+            return Long.toString((long) value);
+        }
+
+        return Double.toString(value);
+    }
+
+    private static int getColumn(Query query, Table table, String columnName)
+            throws InvalidInputException {
+        if (!table.hasColumn(columnName)) {
+            String errorMessage = String.format(
+                    "%s column of %s table does not exist.",
+                    columnName,
+                    query.getTableName());
+            throw new InvalidInputException(errorMessage);
+        }
+
+        return table.indexOfColumn(columnName);
+    }
+
+    private static class Accumulator {
+
+        private final Table table;
+        private final AggregateFunction function;
+        private final int column;
+        private long[] counts;
+        private double[] values;
+        private StringDictionary distinctValues;
+        private LongIntHashMap seen;
+
+        Accumulator(Table table, AggregateFunction function, int column) {
+            this.table = table;
+            this.function = function;
+            this.column = column;
+            this.counts = new long[16];
+            if (function.isNumeric()) {
+                this.values = new double[16];
+            }
+            if (function == AggregateFunction.COUNT_DISTINCT) {
+                this.distinctValues = new StringDictionary();
+                this.seen = new LongIntHashMap(16);
+            }
+        }
+
+        void ensureCapacity(int groups) {
+            if (groups > counts.length) {
+                int capacity = Math.max(groups, counts.length * 2);
+                counts = Arrays.copyOf(counts, capacity);
+                if (values != null) {
+                    values = Arrays.copyOf(values, capacity);
+                }
+            }
+            if (function == AggregateFunction.MIN) {
+                values[groups - 1] = Double.POSITIVE_INFINITY;
+            } else if (function == AggregateFunction.MAX) {
+                values[groups - 1] = Double.NEGATIVE_INFINITY;
+            }
+        }
+
+        void add(int group, int row) {
+            if (column < 0) {
+                counts[group]++;
+
+                return;
+            }
+            String cell = table.getCell(row, column);
+            switch (function) {
+                case COUNT -> {
+                    if (!cell.isEmpty()) {
+                        counts[group]++;
+                    }
+                }
+                case COUNT_DISTINCT -> {
+                    if (!cell.isEmpty()) {
+                        long key = ((long) group << 32) | distinctValues.encode(cell);
+                        if (seen.putIfAbsent(key, 0) == LongIntHashMap.ABSENT) {
+                            counts[group]++;
+                        }
+                    }
+                }
+                default -> {
+                    double number = parseNumber(cell);
+                    if (Double.isNaN(number)) {
+
+                        return;
+                    }
+                    counts[group]++;
+                    values[group] = switch (function) {
+                        case MIN -> Math.min(values[group], number);
+                        case MAX -> Math.max(values[group], number);
+                        default -> values[group] + number;
+                    };
+                }
+            }
+        }
+
+        /*
+         * Numeric aggregates of a group without numeric cells are empty.
+         */
+        String result(int group) {
+            if (!function.isNumeric()) {
+
+                return Long.toString(counts[group]);
+            }
+            if (counts[group] == 0) {
+
+                return "";
+            }
+
+            return formatNumber(function == AggregateFunction.AVG
+                    ? values[group] / counts[group]
+                    : values[group]);
+        }
+
+    }
+
+}
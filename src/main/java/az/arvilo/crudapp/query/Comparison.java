@@ -0,0 +1,53 @@
+package az.arvilo.crudapp.query;
+
+import lombok.NonNull;
+
+/*
+ * Cells are compared in String order, the same order the ordered index uses.
+ */
+public enum Comparison {
+
+    EQUAL("="),
+    NOT_EQUAL("!="),
+    LESS("<"),
+    LESS_OR_EQUAL("<="),
+    GREATER(">"),
+    GREATER_OR_EQUAL(">="),
+    PREFIX("^=");
+
+    private final String symbol;
+
+    Comparison(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public String getSymbol() {
+
+        return symbol;
+    }
+
+    public boolean test(@NonNull String cell, @NonNull String value) {
+
+        return switch (this) {
+            case EQUAL -> cell.equals(value);
+            case NOT_EQUAL -> !cell.equals(value);
+            case LESS -> cell.compareTo(value) < 0;
+            case LESS_OR_EQUAL -> cell.compareTo(value) <= 0;
+            case GREATER -> cell.compareTo(value) > 0;
+            case GREATER_OR_EQUAL -> cell.compareTo(value) >= 0;
+            case PREFIX -> cell.startsWith(value);
+        };
+    }
+
+    public static Comparison fromSymbol(@NonNull String symbol) {
+        for (Comparison comparison : values()) {
+            if (comparison.symbol.equals(symbol)) {
+
+                return comparison;
+            }
+        }
+
+        return null;
+    }
+
+}
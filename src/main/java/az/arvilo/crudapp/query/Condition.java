@@ -0,0 +1,8 @@
+package az.arvilo.crudapp.query;
+
+import lombok.NonNull;
+
+public record Condition(@NonNull String columnName,
+                        @NonNull Comparison comparison,
+                        @NonNull String value) {
+}
@@ -0,0 +1,83 @@
+package az.arvilo.crudapp.query;
+
+import java.util.Arrays;
+
+/*
+ * Open-addressing map from non-negative long keys to int values, with linear
+ * probing and no boxing. Keys and values live in two parallel arrays.
+ */
+class LongIntHashMap {
+
+    static final int ABSENT = -1;
+
+    private static final long FREE = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, FREE);
+    }
+
+    int size() {
+
+        return size;
+    }
+
+    /*
+     * Returns the value already mapped to the key, or ABSENT after mapping
+     * the key to the given value.
+     */
+    int putIfAbsent(long key, int value) {
+        int slot = slot(key);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+
+        return ABSENT;
+    }
+
+    private int slot(long key) {
+        // Finalizer of MurmurHash3, which spreads sequential keys apart.
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+
+        return (int) key & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        Arrays.fill(keys, FREE);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+}
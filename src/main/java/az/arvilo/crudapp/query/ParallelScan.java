@@ -0,0 +1,107 @@
+package az.arvilo.crudapp.query;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/*
+ * Fork-join scan over the rows of a table. The row range is split through
+ * its spliterator until the chunks are small enough to be scanned by one
+ * task; results of the chunks are joined in row order.
+ *
+ * Tables with fewer rows than THRESHOLD are scanned on the calling thread,
+ * where the cost of forking would outweigh the work.
+ *
+ * The predicate runs on pool threads while the caller waits, so a table
+ * read lock held by the caller covers the whole scan.
+ */
+public class ParallelScan {
+
+    public static final int THRESHOLD = 1 << 16;
+    private static final int CHUNK_SIZE = 1 << 13;
+
+    /*
+     * Ascending ordinals of the rows in [0, rowCount) matching the predicate.
+     */
+    public static int[] filter(int rowCount, @NonNull IntPredicate predicate, @NonNull ForkJoinPool pool) {
+        if (rowCount < THRESHOLD) {
+
+            return IntStream.range(0, rowCount).filter(predicate).toArray();
+        }
+
+        return pool.invoke(new FilterTask(IntStream.range(0, rowCount).spliterator(), predicate));
+    }
+
+    public static long count(int rowCount, @NonNull IntPredicate predicate, @NonNull ForkJoinPool pool) {
+        if (rowCount < THRESHOLD) {
+
+            return IntStream.range(0, rowCount).filter(predicate).count();
+        }
+
+        return pool.invoke(new CountTask(IntStream.range(0, rowCount).spliterator(), predicate));
+    }
+
+    @SuppressWarnings("serial")
+    private static class FilterTask extends RecursiveTask<int[]> {
+
+        private final Spliterator.OfInt rows;
+        private final IntPredicate predicate;
+
+        FilterTask(Spliterator.OfInt rows, IntPredicate predicate) {
+            this.rows = rows;
+            this.predicate = predicate;
+        }
+
+        @Override
+        protected int[] compute() {
+            Spliterator.OfInt prefix = rows.estimateSize() > CHUNK_SIZE ? rows.trySplit() : null;
+            if (prefix == null) {
+
+                return StreamSupport.intStream(rows, false).filter(predicate).toArray();
+            }
+            FilterTask left = new FilterTask(prefix, predicate);
+            left.fork();
+            int[] rightRows = new FilterTask(rows, predicate).compute();
+            int[] leftRows = left.join();
+            int[] joined = Arrays.copyOf(leftRows, leftRows.length + rightRows.length);
+            System.arraycopy(rightRows, 0, joined, leftRows.length, rightRows.length);
+
+            return joined;
+        }
+
+    }
+
+    @SuppressWarnings("serial")
+    private static class CountTask extends RecursiveTask<Long> {
+
+        private final Spliterator.OfInt rows;
+        private final IntPredicate predicate;
+
+        CountTask(Spliterator.OfInt rows, IntPredicate predicate) {
+            this.rows = rows;
+            this.predicate = predicate;
+        }
+
+        @Override
+        protected Long compute() {
+            Spliterator.OfInt prefix = rows.estimateSize() > CHUNK_SIZE ? rows.trySplit() : null;
+            if (prefix == null) {
+
+                return StreamSupport.intStream(rows, false).filter(predicate).count();
+            }
+            CountTask left = new CountTask(prefix, predicate);
+            left.fork();
+            long rightCount = new CountTask(rows, predicate).compute();
+
+            return left.join() + rightCount;
+        }
+
+    }
+
+}
@@ -0,0 +1,133 @@
+package az.arvilo.crudapp.query;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Description of a read over one table: the conditions a row must meet (all
+ * of them), the projected columns (all when none are selected), an optional
+ * order and an optional limit.
+ *
+ * A query with aggregates or grouping columns returns one row per group
+ * instead; its order then refers to a label of the result, e.g. "COUNT(*)".
+ */
+public class Query {
+
+    public static final int NO_LIMIT = -1;
+
+    private final String tableName;
+    private final List<Selection> selections;
+    private final List<Condition> conditions;
+    private final List<String> groupBy;
+    private String orderBy;
+    private boolean descending;
+    private int limit;
+
+    public Query(@NonNull String tableName) {
+        this.tableName = tableName;
+        this.selections = new ArrayList<>();
+        this.conditions = new ArrayList<>();
+        this.groupBy = new ArrayList<>();
+        this.limit = NO_LIMIT;
+    }
+
+    public Query select(@NonNull String... columnNames) {
+        for (String columnName : columnNames) {
+            selections.add(new Selection(columnName, null));
+        }
+
+        return this;
+    }
+
+    /*
+     * The column is AggregateFunction.ALL_ROWS for COUNT(*).
+     */
+    public Query aggregate(@NonNull AggregateFunction function, @NonNull String columnName) {
+        selections.add(new Selection(columnName, function));
+
+        return this;
+    }
+
+    public Query groupBy(@NonNull String... columnNames) {
+        groupBy.addAll(List.of(columnNames));
+
+        return this;
+    }
+
+    public Query where(@NonNull String columnName,
+                       @NonNull Comparison comparison,
+                       @NonNull String value) {
+        conditions.add(new Condition(columnName, comparison, value));
+
+        return this;
+    }
+
+    public Query orderBy(@NonNull String columnName, boolean descending) {
+        this.orderBy = columnName;
+        this.descending = descending;
+
+        return this;
+    }
+
+    public Query limit(int limit) {
+        this.limit = limit;
+
+        return this;
+    }
+
+    public String getTableName() {
+
+        return tableName;
+    }
+
+    public List<Selection> getSelections() {
+
+        return Collections.unmodifiableList(selections);
+    }
+
+    /*
+     * Names of the selected columns that are not aggregated.
+     */
+    public List<String> getColumnNames() {
+
+        return selections
+                .stream()
+                .filter(selection -> !selection.isAggregate())
+                .map(Selection::columnName)
+                .toList();
+    }
+
+    public List<String> getGroupBy() {
+
+        return Collections.unmodifiableList(groupBy);
+    }
+
+    public boolean isAggregate() {
+
+        return !groupBy.isEmpty() || selections.stream().anyMatch(Selection::isAggregate);
+    }
+
+    public List<Condition> getConditions() {
+
+        return Collections.unmodifiableList(conditions);
+    }
+
+    public String getOrderBy() {
+
+        return orderBy;
+    }
+
+    public boolean isDescending() {
+
+        return descending;
+    }
+
+    public int getLimit() {
+
+        return limit;
+    }
+
+}
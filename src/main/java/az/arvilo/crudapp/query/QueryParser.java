@@ -0,0 +1,257 @@
+package az.arvilo.crudapp.query;
+
+import az.arvilo.crudapp.exception.InvalidInputException;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Grammar, keywords are case-insensitive:
+ *
+ *   SELECT (* | item {, item}) FROM table
+ *   [WHERE column operator value {AND column operator value}]
+ *   [GROUP BY column {, column}]
+ *   [ORDER BY item [ASC | DESC]]
+ *   [LIMIT count]
+ *
+ *   item: column | COUNT(*) | COUNT([DISTINCT] column)
+ *         | MIN(column) | MAX(column) | SUM(column) | AVG(column)
+ *
+ * Operators are =, !=, <, <=, >, >= and ^= (starts with). Names and values
+ * with spaces or symbols are written in single quotes; a quote inside them
+ * is doubled.
+ */
+public class QueryParser {
+
+    private static final String OPERATOR_CHARS = "=!<>^";
+
+    private final List<Token> tokens;
+    private int position;
+
+    private QueryParser(List<Token> tokens) {
+        this.tokens = tokens;
+        this.position = 0;
+    }
+
+    public static Query parse(@NonNull String text) throws InvalidInputException {
+        QueryParser parser = new QueryParser(tokenize(text));
+
+        return parser.parseQuery();
+    }
+
+    private Query parseQuery() throws InvalidInputException {
+        expectKeyword("SELECT");
+        List<Selection> selections = new ArrayList<>();
+        if (peekSymbol("*")) {
+            position++;
+        } else {
+            selections.add(parseSelection());
+            while (peekSymbol(",")) {
+                position++;
+                selections.add(parseSelection());
+            }
+        }
+        expectKeyword("FROM");
+        Query query = new Query(expectWord());
+        for (Selection selection : selections) {
+            if (selection.isAggregate()) {
+                query.aggregate(selection.function(), selection.columnName());
+            } else {
+                query.select(selection.columnName());
+            }
+        }
+        if (peekKeyword("WHERE")) {
+            position++;
+            parseCondition(query);
+            while (peekKeyword("AND")) {
+                position++;
+                parseCondition(query);
+            }
+        }
+        if (peekKeyword("GROUP")) {
+            position++;
+            expectKeyword("BY");
+            query.groupBy(expectWord());
+            while (peekSymbol(",")) {
+                position++;
+                query.groupBy(expectWord());
+            }
+        }
+        if (peekKeyword("ORDER")) {
+            position++;
+            expectKeyword("BY");
+            String columnName = parseSelection().label();
+            boolean descending = false;
+            if (peekKeyword("DESC")) {
+                position++;
+                descending = true;
+            } else if (peekKeyword("ASC")) {
+                position++;
+            }
+            query.orderBy(columnName, descending);
+        }
+        if (peekKeyword("LIMIT")) {
+            position++;
+            String count = expectWord();
+            try {
+                query.limit(Integer.parseInt(count));
+            } catch (NumberFormatException e) {
+                String errorMessage = String.format("Limit couldn't be %s", count);
+                throw new InvalidInputException(errorMessage);
+            }
+        }
+        if (position < tokens.size()) {
+            String errorMessage = String.format("Unexpected %s in query.", tokens.get(position).text());
+            throw new InvalidInputException(errorMessage);
+        }
+
+        return query;
+    }
+
+    private Selection parseSelection() throws InvalidInputException {
+        boolean quoted = position < tokens.size() && tokens.get(position).quoted();
+        String name = expectWord();
+        if (quoted || !peekSymbol("(")) {
+
+            return new Selection(name, null);
+        }
+        position++;
+        AggregateFunction function;
+        try {
+            function = AggregateFunction.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            function = null;
+        }
+        if (function == null || function == AggregateFunction.COUNT_DISTINCT) {
+            String errorMessage = String.format("%s is not an aggregate function.", name);
+            throw new InvalidInputException(errorMessage);
+        }
+        String columnName;
+        if (function == AggregateFunction.COUNT && peekSymbol("*")) {
+            position++;
+            columnName = AggregateFunction.ALL_ROWS;
+        } else {
+            if (function == AggregateFunction.COUNT && peekKeyword("DISTINCT")) {
+                position++;
+                function = AggregateFunction.COUNT_DISTINCT;
+            }
+            columnName = expectWord();
+        }
+        if (!peekSymbol(")")) {
+            String errorMessage = ") expected.";
+            throw new InvalidInputException(errorMessage);
+        }
+        position++;
+
+        return new Selection(columnName, function);
+    }
+
+    private void parseCondition(Query query) throws InvalidInputException {
+        String columnName = expectWord();
+        Token token = next();
+        Comparison comparison = token.symbol() ? Comparison.fromSymbol(token.text()) : null;
+        if (comparison == null) {
+            String errorMessage = String.format("%s is not an operator.", token.text());
+            throw new InvalidInputException(errorMessage);
+        }
+        query.where(columnName, comparison, expectWord());
+    }
+
+    private boolean peekKeyword(String keyword) {
+
+        return position < tokens.size() &&
+                !tokens.get(position).symbol() &&
+                !tokens.get(position).quoted() &&
+                tokens.get(position).text().equalsIgnoreCase(keyword);
+    }
+
+    private boolean peekSymbol(String symbol) {
+
+        return position < tokens.size() &&
+                tokens.get(position).symbol() &&
+                tokens.get(position).text().equals(symbol);
+    }
+
+    private void expectKeyword(String keyword) throws InvalidInputException {
+        if (!peekKeyword(keyword)) {
+            String errorMessage = String.format("%s expected.", keyword);
+            throw new InvalidInputException(errorMessage);
+        }
+        position++;
+    }
+
+    private String expectWord() throws InvalidInputException {
+        Token token = next();
+        if (token.symbol()) {
+            String errorMessage = String.format("Unexpected %s in query.", token.text());
+            throw new InvalidInputException(errorMessage);
+        }
+
+        return token.text();
+    }
+
+    private Token next() throws InvalidInputException {
+        if (position == tokens.size()) {
+            String errorMessage = "Unexpected end of query.";
+            throw new InvalidInputException(errorMessage);
+        }
+
+        return tokens.get(position++);
+    }
+
+    private static List<Token> tokenize(String text) throws InvalidInputException {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'') {
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i == text.length()) {
+                        String errorMessage = "Unclosed quote in query.";
+                        throw new InvalidInputException(errorMessage);
+                    }
+                    if (text.charAt(i) == '\'') {
+                        if (i + 1 < text.length() && text.charAt(i + 1) == '\'') {
+                            value.append('\'');
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    value.append(text.charAt(i++));
+                }
+                tokens.add(new Token(value.toString(), false, true));
+            } else if (",*()".indexOf(c) >= 0) {
+                tokens.add(new Token(String.valueOf(c), true, false));
+                i++;
+            } else if (OPERATOR_CHARS.indexOf(c) >= 0) {
+                int start = i;
+                while (i < text.length() && OPERATOR_CHARS.indexOf(text.charAt(i)) >= 0) {
+                    i++;
+                }
+                tokens.add(new Token(text.substring(start, i), true, false));
+            } else {
+                int start = i;
+                while (i < text.length() &&
+                        !Character.isWhitespace(text.charAt(i)) &&
+                        ",*()'".indexOf(text.charAt(i)) < 0 &&
+                        OPERATOR_CHARS.indexOf(text.charAt(i)) < 0) {
+                    i++;
+                }
+                tokens.add(new Token(text.substring(start, i), false, false));
+            }
+        }
+
+        return tokens;
+    }
+
+    private record Token(String text, boolean symbol, boolean quoted) {
+    }
+
+}
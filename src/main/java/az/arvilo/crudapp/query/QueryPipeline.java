@@ -0,0 +1,346 @@
+package az.arvilo.crudapp.query;
+
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.storage.Table;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/*
+ * Evaluates a query as a chain of pull-based row iterators:
+ *
+ *   source -> filter -> sort -> limit -> projection
+ *
+ * Every stage asks the one before it for the next row only when it needs
+ * one, so a limited query stops reading the table once the limit is met.
+ * The only blocking stage is the sort, and it is skipped when the source
+ * already yields rows in the requested order.
+ *
+ * A full scan of a large table is the exception: when nothing downstream can
+ * stop it early, its filter runs on a fork-join pool (see ParallelScan).
+ *
+ * The caller holds the table's read lock for the whole evaluation.
+ */
+public class QueryPipeline {
+
+    public static QueryResult execute(@NonNull Query query, @NonNull Table table)
+            throws InvalidInputException {
+
+        return execute(query, table, ForkJoinPool.commonPool());
+    }
+
+    /*
+     * Full scans of large tables are filtered in parallel on the pool, unless
+     * a limit without an order lets the sequential scan stop early.
+     */
+    public static QueryResult execute(@NonNull Query query,
+                                      @NonNull Table table,
+                                      @NonNull ForkJoinPool pool)
+            throws InvalidInputException {
+        if (query.getLimit() < 0 && query.getLimit() != Query.NO_LIMIT) {
+            String errorMessage = String.format("Limit couldn't be %d", query.getLimit());
+            throw new InvalidInputException(errorMessage);
+        }
+        int[] conditionColumns = getConditionColumns(query, table);
+        IntPredicate matches = getPredicate(query, table, conditionColumns);
+        if (query.isAggregate()) {
+            Source source = openSource(query, table, conditionColumns, -1);
+
+            return Aggregation.execute(query, table, filter(source, table, matches, true, pool));
+        }
+        List<String> header = query.getColumnNames().isEmpty()
+                ? table.getHeader()
+                : query.getColumnNames();
+        int[] projection = new int[header.size()];
+        for (int i = 0; i < projection.length; i++) {
+            projection[i] = getColumn(query, table, header.get(i));
+        }
+        int orderColumn = query.getOrderBy() == null ? -1 : getColumn(query, table, query.getOrderBy());
+        Source source = openSource(query, table, conditionColumns, orderColumn);
+        boolean needsSort = orderColumn >= 0 && !source.isSorted();
+        PrimitiveIterator.OfInt rows = filter(
+                source,
+                table,
+                matches,
+                needsSort || query.getLimit() == Query.NO_LIMIT,
+                pool
+        );
+        if (needsSort) {
+            rows = sort(rows, table, orderColumn, query.isDescending(), query.getLimit());
+        }
+        if (query.getLimit() != Query.NO_LIMIT) {
+            rows = new Limit(rows, query.getLimit());
+        }
+        List<Integer> rowNumbers = new ArrayList<>();
+        List<List<String>> cells = new ArrayList<>();
+        while (rows.hasNext()) {
+            int row = rows.nextInt();
+            List<String> values = new ArrayList<>(projection.length);
+            for (int column : projection) {
+                values.add(table.getCell(row, column));
+            }
+            rowNumbers.add(row + 1);
+            cells.add(values);
+        }
+
+        return new QueryResult(List.copyOf(header), rowNumbers, cells);
+    }
+
+    public static long count(@NonNull Query query, @NonNull Table table)
+            throws InvalidInputException {
+
+        return count(query, table, ForkJoinPool.commonPool());
+    }
+
+    /*
+     * Number of rows meeting the conditions; projection, order and limit
+     * don't apply.
+     */
+    public static long count(@NonNull Query query,
+                             @NonNull Table table,
+                             @NonNull ForkJoinPool pool)
+            throws InvalidInputException {
+        int[] conditionColumns = getConditionColumns(query, table);
+        IntPredicate matches = getPredicate(query, table, conditionColumns);
+        if (matches == null) {
+
+            return table.getRowCount();
+        }
+        Source source = openSource(query, table, conditionColumns, -1);
+        if (source.isScan()) {
+
+            return ParallelScan.count(table.getRowCount(), matches, pool);
+        }
+        long count = 0;
+        for (PrimitiveIterator.OfInt rows = new Filter(source, matches); rows.hasNext(); rows.nextInt()) {
+            count++;
+        }
+
+        return count;
+    }
+
+    /*
+     * "drained" tells that every matching row will be pulled, so a large
+     * scan gains nothing from being lazy and is filtered in parallel.
+     */
+    private static PrimitiveIterator.OfInt filter(Source source,
+                                                  Table table,
+                                                  IntPredicate matches,
+                                                  boolean drained,
+                                                  ForkJoinPool pool) {
+        if (matches == null) {
+
+            return source;
+        }
+        if (drained && source.isScan() && table.getRowCount() >= ParallelScan.THRESHOLD) {
+
+            return Arrays.stream(ParallelScan.filter(table.getRowCount(), matches, pool)).iterator();
+        }
+
+        return new Filter(source, matches);
+    }
+
+    private static int[] getConditionColumns(Query query, Table table)
+            throws InvalidInputException {
+        List<Condition> conditions = query.getConditions();
+        int[] conditionColumns = new int[conditions.size()];
+        for (int i = 0; i < conditionColumns.length; i++) {
+            conditionColumns[i] = getColumn(query, table, conditions.get(i).columnName());
+        }
+
+        return conditionColumns;
+    }
+
+    /*
+     * Null when the query has no conditions.
+     */
+    private static IntPredicate getPredicate(Query query, Table table, int[] conditionColumns) {
+        List<Condition> conditions = query.getConditions();
+        if (conditions.isEmpty()) {
+
+            return null;
+        }
+
+        return row -> {
+            for (int i = 0; i < conditionColumns.length; i++) {
+                Condition condition = conditions.get(i);
+                String cell = table.getCell(row, conditionColumns[i]);
+                if (!condition.comparison().test(cell, condition.value())) {
+
+                    return false;
+                }
+            }
+
+            return true;
+        };
+    }
+
+    /*
+     * An equality condition on an indexed column narrows the rows to its
+     * matches. Otherwise an ordered index on the sort column yields the rows
+     * already sorted. Otherwise every row is scanned.
+     */
+    private static Source openSource(Query query,
+                                     Table table,
+                                     int[] conditionColumns,
+                                     int orderColumn) {
+        List<Condition> conditions = query.getConditions();
+        for (int i = 0; i < conditionColumns.length; i++) {
+            int column = conditionColumns[i];
+            if (conditions.get(i).comparison() == Comparison.EQUAL &&
+                    (table.isIndexed(column) || table.isOrdered(column))) {
+
+                return new Source(
+                        Arrays.stream(table.findRows(column, conditions.get(i).value())).iterator(),
+                        false,
+                        false
+                );
+            }
+        }
+        if (orderColumn >= 0 && table.isOrdered(orderColumn)) {
+
+            return new Source(table.sortedIterator(orderColumn, query.isDescending()), true, false);
+        }
+
+        return new Source(IntStream.range(0, table.getRowCount()).iterator(), false, true);
+    }
+
+    /*
+     * With a limit, only the best "limit" rows are kept while the input is
+     * drained, so the sort costs O(n log limit) and holds "limit" rows.
+     */
+    private static PrimitiveIterator.OfInt sort(PrimitiveIterator.OfInt rows,
+                                                Table table,
+                                                int column,
+                                                boolean descending,
+                                                int limit) {
+        Comparator<Integer> byValue = Comparator.comparing(row -> table.getCell(row, column));
+        Comparator<Integer> order = (descending ? byValue.reversed() : byValue)
+                .thenComparing(Comparator.naturalOrder());
+        List<Integer> result;
+        if (limit == Query.NO_LIMIT) {
+            result = new ArrayList<>();
+            rows.forEachRemaining((int row) -> result.add(row));
+            result.sort(order);
+        } else {
+            // The limit may be far above the row count.
+            int capacity = Math.max(1, Math.min(limit, table.getRowCount()) + 1);
+            PriorityQueue<Integer> best = new PriorityQueue<>(capacity, order.reversed());
+            while (rows.hasNext() && limit > 0) {
+                best.add(rows.nextInt());
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            result = new ArrayList<>(best);
+            result.sort(order);
+        }
+
+        return result.stream().mapToInt(Integer::intValue).iterator();
+    }
+
+    private static int getColumn(Query query, Table table, String columnName)
+            throws InvalidInputException {
+        if (!table.hasColumn(columnName)) {
+            String errorMessage = String.format(
+                    "%s column of %s table does not exist.",
+                    columnName,
+                    query.getTableName());
+            throw new InvalidInputException(errorMessage);
+        }
+
+        return table.indexOfColumn(columnName);
+    }
+
+    private record Source(PrimitiveIterator.OfInt rows, boolean isSorted, boolean isScan)
+            implements PrimitiveIterator.OfInt {
+
+        @Override
+        public boolean hasNext() {
+
+            return rows.hasNext();
+        }
+
+        @Override
+        public int nextInt() {
+
+            return rows.nextInt();
+        }
+
+    }
+
+    private static class Filter implements PrimitiveIterator.OfInt {
+
+        private final PrimitiveIterator.OfInt rows;
+        private final IntPredicate predicate;
+        private int next;
+        private boolean ready;
+
+        Filter(PrimitiveIterator.OfInt rows, IntPredicate predicate) {
+            this.rows = rows;
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!ready && rows.hasNext()) {
+                int row = rows.nextInt();
+                if (predicate.test(row)) {
+                    next = row;
+                    ready = true;
+                }
+            }
+
+            return ready;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+
+            return next;
+        }
+
+    }
+
+    private static class Limit implements PrimitiveIterator.OfInt {
+
+        private final PrimitiveIterator.OfInt rows;
+        private int remaining;
+
+        Limit(PrimitiveIterator.OfInt rows, int limit) {
+            this.rows = rows;
+            this.remaining = limit;
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            return remaining > 0 && rows.hasNext();
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+
+            return rows.nextInt();
+        }
+
+    }
+
+}
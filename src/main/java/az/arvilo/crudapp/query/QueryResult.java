@@ -0,0 +1,12 @@
+package az.arvilo.crudapp.query;
+
+import java.util.List;
+
+/*
+ * The projected header, the 1-based numbers of the matching rows and their
+ * projected cells, in result order.
+ */
+public record QueryResult(List<String> header,
+                          List<Integer> rowNumbers,
+                          List<List<String>> rows) {
+}
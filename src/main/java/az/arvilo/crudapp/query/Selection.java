@@ -0,0 +1,20 @@
+package az.arvilo.crudapp.query;
+
+import lombok.NonNull;
+
+/*
+ * A selected column, or an aggregate of a column when "function" is set.
+ */
+public record Selection(@NonNull String columnName, AggregateFunction function) {
+
+    public boolean isAggregate() {
+
+        return function != null;
+    }
+
+    public String label() {
+
+        return function == null ? columnName : function.label(columnName);
+    }
+
+}
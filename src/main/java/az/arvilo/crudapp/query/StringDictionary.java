@@ -0,0 +1,68 @@
+package az.arvilo.crudapp.query;
+
+/*
+ * Open-addressing map from strings to dense codes 0, 1, 2, ... in order of
+ * first appearance. String hash codes are cached by String itself, so a
+ * lookup of a repeated cell costs one equals call.
+ */
+class StringDictionary {
+
+    private String[] keys;
+    private int[] codes;
+    private int size;
+    private int mask;
+
+    StringDictionary() {
+        this.keys = new String[16];
+        this.codes = new int[16];
+        this.mask = 15;
+    }
+
+    int size() {
+
+        return size;
+    }
+
+    int encode(String value) {
+        int slot = slot(value);
+        while (keys[slot] != null) {
+            if (keys[slot].equals(value)) {
+
+                return codes[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        codes[slot] = size;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+
+        return size - 1;
+    }
+
+    private int slot(String value) {
+        int hash = value.hashCode() * 0x9e3779b9;
+
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldCodes = codes;
+        keys = new String[oldKeys.length * 2];
+        codes = new int[oldCodes.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                codes[slot] = oldCodes[i];
+            }
+        }
+    }
+
+}
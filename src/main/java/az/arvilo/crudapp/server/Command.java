@@ -0,0 +1,70 @@
+package az.arvilo.crudapp.server;
+
+import lombok.NonNull;
+
+/*
+ * The requests of the line protocol, each mapped onto one Service call.
+ * Commands are matched ignoring case.
+ */
+public enum Command {
+
+    PING("", 0, 0),
+    TABLES("", 0, 0),
+    CREATE_TABLE("<table>", 1, 1),
+    DROP_TABLE("<table>", 1, 1),
+    COLUMNS("<table>", 1, 1),
+    ADD_COLUMNS("<table> <column>...", 2, Command.ANY),
+    DELETE_COLUMN("<table> <column>", 2, 2),
+    ROW_COUNT("<table>", 1, 1),
+    ROW("<table> <row>", 2, 2),
+    ADD_ROW("<table> [<value>...]", 1, Command.ANY),
+    UPDATE("<table> <row> <column> <value>", 4, 4),
+    DELETE_ROW("<table> <row>", 2, 2),
+    CREATE_INDEX("<table> <column>", 2, 2),
+    DROP_INDEX("<table> <column>", 2, 2),
+    CREATE_ORDERED_INDEX("<table> <column>", 2, 2),
+    DROP_ORDERED_INDEX("<table> <column>", 2, 2),
+    QUERY("<query>", 1, 1),
+    RENDER("<table>", 1, 1),
+    BEGIN("", 0, 0),
+    COMMIT("", 0, 0),
+    ROLLBACK("", 0, 0),
+    QUIT("", 0, 0);
+
+    private static final int ANY = Integer.MAX_VALUE;
+
+    private final String usage;
+    private final int minArguments;
+    private final int maxArguments;
+
+    Command(String usage, int minArguments, int maxArguments) {
+        this.usage = usage;
+        this.minArguments = minArguments;
+        this.maxArguments = maxArguments;
+    }
+
+    public String getUsage() {
+
+        return usage.isEmpty() ? name() : name() + " " + usage;
+    }
+
+    public boolean acceptsArguments(int count) {
+
+        return count >= minArguments && count <= maxArguments;
+    }
+
+    /*
+     * Returns null for an unknown command.
+     */
+    public static Command of(@NonNull String name) {
+        for (Command command : values()) {
+            if (command.name().equalsIgnoreCase(name)) {
+
+                return command;
+            }
+        }
+
+        return null;
+    }
+
+}
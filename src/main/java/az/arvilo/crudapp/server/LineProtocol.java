@@ -0,0 +1,88 @@
+package az.arvilo.crudapp.server;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Requests and responses are single lines of tab-separated fields. A request
+ * starts with its command (see Command), a response with OK or ERROR, and
+ * their fields follow. Backslash, tab, carriage return and line feed inside
+ * a field are written as \\, \t, \r and \n; any other escaped character
+ * stands for itself.
+ *
+ * A client may send any number of requests before reading the responses,
+ * which come back in the same order.
+ */
+public class LineProtocol {
+
+    public static final String OK = "OK";
+    public static final String ERROR = "ERROR";
+
+    public static List<String> decode(@NonNull String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char escaped = line.charAt(++i);
+                field.append(switch (escaped) {
+                    case 't' -> '\t';
+                    case 'r' -> '\r';
+                    case 'n' -> '\n';
+                    default -> escaped;
+                });
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+
+        return fields;
+    }
+
+    /*
+     * Writes the fields as one line, with its line feed.
+     */
+    public static void write(@NonNull Appendable out, @NonNull List<String> fields) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                out.append('\t');
+            }
+            String field = fields.get(i);
+            int start = 0;
+            for (int j = 0; j < field.length(); j++) {
+                String escape = switch (field.charAt(j)) {
+                    case '\\' -> "\\\\";
+                    case '\t' -> "\\t";
+                    case '\r' -> "\\r";
+                    case '\n' -> "\\n";
+                    default -> null;
+                };
+                if (escape != null) {
+                    out.append(field, start, j).append(escape);
+                    start = j + 1;
+                }
+            }
+            out.append(field, start, field.length());
+        }
+        out.append('\n');
+    }
+
+    public static String encode(@NonNull List<String> fields) {
+        StringBuilder line = new StringBuilder();
+        try {
+            write(line, fields);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return line.toString();
+    }
+
+}
@@ -0,0 +1,158 @@
+package az.arvilo.crudapp.server;
+
+import az.arvilo.crudapp.service.Service;
+import lombok.NonNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+ * Serves one Service to local clients over the line protocol (see
+ * LineProtocol). It listens on the loopback address only. Every connection
+ * is served on a virtual thread of its own, which blocks on the socket and
+ * on table locks without holding a platform thread.
+ *
+ * Responses are flushed once no further request is buffered, so a client
+ * pipelining requests gets their responses in few writes. A transaction
+ * left open by a connection is rolled back when it closes.
+ *
+ * An open transaction keeps the tables it changed locked for everyone, so a
+ * connection that sends nothing for transactionIdleMillis while it has one
+ * is answered with ERROR, rolled back and closed.
+ */
+public class LineServer implements AutoCloseable {
+
+    private static final int BACKLOG = 4096;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int TRANSACTION_IDLE_MILLIS = 30_000;
+
+    private final Service service;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Set<Socket> sockets;
+    private final int transactionIdleMillis;
+
+    /*
+     * Port 0 picks a free port; see getPort().
+     */
+    public LineServer(@NonNull Service service, int port) throws IOException {
+        this(service, port, TRANSACTION_IDLE_MILLIS);
+    }
+
+    LineServer(@NonNull Service service, int port, int transactionIdleMillis) throws IOException {
+        if (transactionIdleMillis < 1) {
+            throw new IllegalArgumentException("Transaction idle time must be positive.");
+        }
+        this.service = service;
+        this.transactionIdleMillis = transactionIdleMillis;
+        this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        this.connections = Executors.newVirtualThreadPerTaskExecutor();
+        this.sockets = ConcurrentHashMap.newKeySet();
+    }
+
+    public int getPort() {
+
+        return serverSocket.getLocalPort();
+    }
+
+    /*
+     * Accepts connections until the server is closed.
+     */
+    public void run() throws IOException {
+        while (true) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+
+                    return;
+                }
+                throw e;
+            }
+            sockets.add(socket);
+            try {
+                connections.execute(() -> serve(socket));
+            } catch (RejectedExecutionException e) {
+                // Closed meanwhile.
+                sockets.remove(socket);
+                socket.close();
+            }
+        }
+    }
+
+    /*
+     * Stops accepting, closes the open connections and waits for their
+     * threads to finish.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdown();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        connections.close();
+    }
+
+    private void serve(Socket socket) {
+        RequestHandler handler = new RequestHandler(service);
+        try (socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8),
+                     BUFFER_SIZE);
+             Writer out = new BufferedWriter(
+                     new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),
+                     BUFFER_SIZE)) {
+            socket.setTcpNoDelay(true);
+            while (true) {
+                socket.setSoTimeout(service.isInTransaction() ? transactionIdleMillis : 0);
+                String line;
+                try {
+                    line = in.readLine();
+                } catch (SocketTimeoutException e) {
+                    service.rollback();
+                    LineProtocol.write(out, List.of(
+                            LineProtocol.ERROR,
+                            "Transaction idle for too long; it was rolled back."));
+                    break;
+                }
+                if (line == null) {
+                    break;
+                }
+                List<String> request = LineProtocol.decode(line);
+                LineProtocol.write(out, handler.handle(request));
+                if (Command.of(request.getFirst()) == Command.QUIT) {
+                    break;
+                }
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // The client went away, or the server is closing.
+        } finally {
+            if (service.isInTransaction()) {
+                service.rollback();
+            }
+            sockets.remove(socket);
+        }
+    }
+
+}
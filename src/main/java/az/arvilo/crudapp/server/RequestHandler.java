@@ -0,0 +1,135 @@
+package az.arvilo.crudapp.server;
+
+import az.arvilo.crudapp.exception.DataBaseCorruptException;
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.query.QueryResult;
+import az.arvilo.crudapp.service.Service;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Answers one decoded request with the response fields. Rejected requests
+ * are answered with ERROR and the reason; nothing is thrown to the caller.
+ *
+ * Transactions belong to the calling thread, as everywhere in Service, so
+ * every connection served on its own thread has its own.
+ */
+class RequestHandler {
+
+    private static final List<String> OK = List.of(LineProtocol.OK);
+
+    private final Service service;
+
+    RequestHandler(@NonNull Service service) {
+        this.service = service;
+    }
+
+    List<String> handle(@NonNull List<String> request) {
+        String name = request.getFirst();
+        Command command = Command.of(name);
+        if (name.isEmpty()) {
+
+            return error("Empty request.");
+        } else if (command == null) {
+
+            return error(String.format("Unknown command %s.", name));
+        }
+        List<String> arguments = request.subList(1, request.size());
+        if (!command.acceptsArguments(arguments.size())) {
+
+            return error("Usage: " + command.getUsage());
+        }
+        try {
+
+            return execute(command, arguments);
+        } catch (InvalidInputException | DataBaseCorruptException | IllegalStateException e) {
+
+            return error(e.getMessage());
+        } catch (NumberFormatException e) {
+
+            return error("Row numbers must be whole numbers.");
+        }
+    }
+
+    private List<String> execute(Command command, List<String> arguments)
+            throws InvalidInputException, DataBaseCorruptException {
+        switch (command) {
+            case TABLES -> {
+
+                return ok(service.getTableNames());
+            }
+            case CREATE_TABLE -> service.createTable(arguments.get(0));
+            case DROP_TABLE -> service.dropTable(arguments.get(0));
+            case COLUMNS -> {
+
+                return ok(service.getColumnNames(arguments.get(0)));
+            }
+            case ADD_COLUMNS -> service.addNewColumns(arguments.get(0), arguments.subList(1, arguments.size()));
+            case DELETE_COLUMN -> service.deleteColumn(arguments.get(0), arguments.get(1));
+            case ROW_COUNT -> {
+
+                return ok(List.of(String.valueOf(service.getRowCount(arguments.get(0)))));
+            }
+            case ROW -> {
+
+                return ok(service.getRow(arguments.get(0), arguments.get(1)));
+            }
+            case ADD_ROW -> {
+                if (arguments.size() == 1) {
+                    service.addNewRow(arguments.get(0));
+                } else {
+                    service.addRows(arguments.get(0), List.of(arguments.subList(1, arguments.size())));
+                }
+            }
+            case UPDATE -> service.updateCell(arguments.get(0), arguments.get(1), arguments.get(2), arguments.get(3));
+            case DELETE_ROW -> service.deleteRow(arguments.get(0), arguments.get(1));
+            case CREATE_INDEX -> service.createIndex(arguments.get(0), arguments.get(1));
+            case DROP_INDEX -> service.dropIndex(arguments.get(0), arguments.get(1));
+            case CREATE_ORDERED_INDEX -> service.createOrderedIndex(arguments.get(0), arguments.get(1));
+            case DROP_ORDERED_INDEX -> service.dropOrderedIndex(arguments.get(0), arguments.get(1));
+            case QUERY -> {
+
+                return ok(toFields(service.query(arguments.get(0))));
+            }
+            case RENDER -> {
+
+                return ok(List.of(service.renderTable(arguments.get(0), true)));
+            }
+            case BEGIN -> service.begin();
+            case COMMIT -> service.commit();
+            case ROLLBACK -> service.rollback();
+            case PING, QUIT -> {
+            }
+        }
+
+        return OK;
+    }
+
+    /*
+     * The column count, the header, then the cells row by row.
+     */
+    private List<String> toFields(QueryResult result) {
+        List<String> fields = new ArrayList<>(1 + result.header().size() * (1 + result.rows().size()));
+        fields.add(String.valueOf(result.header().size()));
+        fields.addAll(result.header());
+        result.rows().forEach(fields::addAll);
+
+        return fields;
+    }
+
+    private List<String> ok(List<String> fields) {
+        List<String> response = new ArrayList<>(1 + fields.size());
+        response.add(LineProtocol.OK);
+        response.addAll(fields);
+
+        return response;
+    }
+
+    private List<String> error(String message) {
+
+        return List.of(LineProtocol.ERROR, message);
+    }
+
+}
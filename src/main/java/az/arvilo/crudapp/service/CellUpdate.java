@@ -0,0 +1,11 @@
+package az.arvilo.crudapp.service;
+
+import lombok.NonNull;
+
+/*
+ * One cell of an updateCells batch. Rows are numbered from 1.
+ */
+public record CellUpdate(int rowNumber,
+                         @NonNull String columnName,
+                         @NonNull String value) {
+}
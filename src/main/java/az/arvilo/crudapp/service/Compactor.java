@@ -0,0 +1,56 @@
+package az.arvilo.crudapp.service;
+
+import az.arvilo.crudapp.storage.Table;
+import lombok.NonNull;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+
+/*
+ * Compacts tables on a background thread once their tombstones pass the
+ * table's threshold, so that deletes don't pay for moving cells. Requests
+ * for a table that is already waiting are merged.
+ *
+ * A compaction holds the table's write lock, like any other change, and
+ * keeps row numbers and row IDs as they are.
+ */
+class Compactor {
+
+    private final ExecutorService executor;
+    private final Set<Table> pending;
+
+    Compactor() {
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "table-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pending = ConcurrentHashMap.newKeySet();
+    }
+
+    /*
+     * Called by writers after removing rows; returns at once.
+     */
+    void request(@NonNull Table table) {
+        if (table.needsCompaction() && pending.add(table)) {
+            executor.execute(() -> compact(table));
+        }
+    }
+
+    private void compact(Table table) {
+        pending.remove(table);
+        Lock lock = table.getLock().writeLock();
+        lock.lock();
+        try {
+            if (table.needsCompaction()) {
+                table.compact();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
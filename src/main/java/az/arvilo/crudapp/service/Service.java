@@ -3,132 +3,551 @@ package az.arvilo.crudapp.service;
 import az.arvilo.crudapp.Data;
 import az.arvilo.crudapp.exception.DataBaseCorruptException;
 import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.io.ExportFormat;
+import az.arvilo.crudapp.io.RecordWriter;
+import az.arvilo.crudapp.persistence.LogRecord;
+import az.arvilo.crudapp.persistence.Operation;
+import az.arvilo.crudapp.persistence.WriteAheadLog;
+import az.arvilo.crudapp.query.Query;
+import az.arvilo.crudapp.query.QueryParser;
+import az.arvilo.crudapp.query.QueryPipeline;
+import az.arvilo.crudapp.query.QueryResult;
+import az.arvilo.crudapp.storage.Column;
+import az.arvilo.crudapp.storage.Table;
+import az.arvilo.crudapp.storage.TableSnapshot;
 import lombok.NonNull;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Objects;
-import java.util.function.Predicate;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 public class Service {
 
+    private static final int RENDER_BUFFER_SIZE = 8192;
+    private static final ReentrantLock CATALOG_LOCK = new ReentrantLock();
+    private static final Compactor COMPACTOR = new Compactor();
+
+    private final WriteAheadLog writeAheadLog;
+    private final ThreadLocal<Transaction> transactions;
+
+    public Service() {
+        this(null);
+    }
+
+    public Service(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+        this.transactions = new ThreadLocal<>();
+    }
+
     public List<String> getTableNames() {
 
         return new ArrayList<>(Data.TABLES.keySet());
     }
 
+    /*
+     * Opens a transaction on the calling thread. The changes it makes through
+     * this service until commit or rollback are applied at once, visible to
+     * this thread only, and either all kept or all undone.
+     *
+     * Tables it changes stay write-locked until it ends. Two transactions
+     * changing the same tables in different orders can deadlock; inTransaction
+     * avoids that by locking the tables in one order up front.
+     */
+    public void begin() {
+        if (transactions.get() != null) {
+            throw new IllegalStateException("A transaction is already open on this thread.");
+        }
+        transactions.set(new Transaction());
+    }
+
+    public boolean isInTransaction() {
+
+        return transactions.get() != null;
+    }
+
+    /*
+     * Logs the changes as one record, so a crash keeps all of them or none,
+     * and unlocks the tables. When the log can't be written, the changes are
+     * rolled back.
+     */
+    public void commit() {
+        Transaction transaction = endTransaction();
+        try {
+            appendToLog(transaction.getLogRecords());
+        } catch (RuntimeException e) {
+            transaction.rollback();
+            throw e;
+        } finally {
+            transaction.unlock();
+        }
+    }
+
+    public void rollback() {
+        Transaction transaction = endTransaction();
+        try {
+            transaction.rollback();
+        } finally {
+            transaction.unlock();
+        }
+    }
+
+    /*
+     * Group commit: runs the body as one transaction with the write locks of
+     * the named tables taken once, in name order, before it starts. Its calls
+     * find the locks held instead of waiting for them one by one. A table
+     * that doesn't exist yet is locked when the body creates it. Anything
+     * the body throws rolls the transaction back and is rethrown.
+     */
+    public void inTransaction(@NonNull Collection<String> tableNames, @NonNull TransactionBody body)
+            throws InvalidInputException, DataBaseCorruptException {
+        begin();
+        try {
+            for (String tableName : new TreeSet<>(tableNames)) {
+                unlockTable(lockTable(tableName, true), true);
+            }
+            body.run();
+        } catch (Throwable e) {
+            rollback();
+            throw e;
+        }
+        commit();
+    }
+
     public void createTable(@NonNull String newTableName) throws InvalidInputException {
-        if (isTableExist(newTableName)) {
-            String errorMessage = String.format("%s already exist.", newTableName);
-            throw new InvalidInputException(errorMessage);
-        } else if (!isValidTableName(newTableName)) {
-            String errorMessage = String.format("%s is not valid name.", newTableName);
-            throw new InvalidInputException(errorMessage);
-        } else {
-            Data.TABLES.put(newTableName, new ArrayList<>(List.of(new ArrayList<>())));
+        lockCatalog();
+        try {
+            if (isTableExist(newTableName)) {
+                String errorMessage = String.format("%s already exist.", newTableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (!isValidTableName(newTableName)) {
+                String errorMessage = String.format("%s is not valid name.", newTableName);
+                throw new InvalidInputException(errorMessage);
+            } else {
+                appendToLog(Operation.CREATE_TABLE, newTableName);
+                Table table = new Table();
+                Transaction transaction = transactions.get();
+                if (transaction != null) {
+                    // Locked before it is registered, so nobody sees it before the commit.
+                    transaction.keepLocked(table);
+                }
+                Data.TABLES.put(newTableName, table);
+                addUndo(() -> Data.TABLES.remove(newTableName, table));
+            }
+        } finally {
+            CATALOG_LOCK.unlock();
         }
     }
 
     public void dropTable(@NonNull String tableName)
             throws InvalidInputException {
-        if (!isTableExist(tableName)) {
-            String errorMessage = String.format("%s is not exist.", tableName);
-            throw new InvalidInputException(errorMessage);
-        } else {
-            Data.TABLES.remove(tableName);
+        lockCatalog();
+        try {
+            Table table = lockTable(tableName, true);
+            try {
+                if (table == null) {
+                    String errorMessage = String.format("%s is not exist.", tableName);
+                    throw new InvalidInputException(errorMessage);
+                } else {
+                    appendToLog(Operation.DROP_TABLE, tableName);
+                    Data.TABLES.remove(tableName);
+                    addUndo(() -> Data.TABLES.put(tableName, table));
+                }
+            } finally {
+                unlockTable(table, true);
+            }
+        } finally {
+            CATALOG_LOCK.unlock();
         }
     }
 
     public String renderTable(@NonNull String tableName, boolean verticalRuler)
             throws InvalidInputException, DataBaseCorruptException {
-        if (!isTableExist(tableName)) {
-            String errorMessage = String.format("%s is not exist.", tableName);
-            throw new InvalidInputException(errorMessage);
+        StringBuilder tableText = new StringBuilder();
+        try {
+            renderTable(tableName, verticalRuler, tableText);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        if (isTableInvalid(tableName)) {
-            String errorMessage = String.format("%s table is corrupted.", tableName);
-            throw new DataBaseCorruptException(errorMessage);
-        } else {
-            if (Data.TABLES.get(tableName).getFirst().isEmpty()) {
-
-                return "Empty table.";
-            } else if (Data.TABLES.get(tableName).size() == 1) {
-                StringBuilder tableText = new StringBuilder();
-                appendHeavyLine(tableText, tableName, verticalRuler);
-                appendRowToText(tableText, tableName, 0, verticalRuler);
-                appendHeavyLine(tableText, tableName, verticalRuler);
-                tableText.deleteCharAt(tableText.length() - 1);
-
-                return tableText.toString();
-            } else {
-                StringBuilder tableText = new StringBuilder();
-                appendHeavyLine(tableText, tableName, verticalRuler);
-                appendRowToText(tableText, tableName, 0, verticalRuler);
-                appendHeavyLine(tableText, tableName, verticalRuler);
-                appendRowToText(tableText, tableName, 1, verticalRuler);
-                IntStream
-                        .range(2, Data.TABLES.get(tableName).size())
-                        .forEach(i -> {
-                            appendLine(tableText, tableName, verticalRuler);
-                            appendRowToText(tableText, tableName, i, verticalRuler);
-                        });
-                appendHeavyLine(tableText, tableName, verticalRuler);
-                tableText.deleteCharAt(tableText.length() - 1);
 
-                return tableText.toString();
+        return tableText.toString();
+    }
+
+    public void writeTable(@NonNull String tableName,
+                           boolean verticalRuler,
+                           @NonNull OutputStream out)
+            throws InvalidInputException, DataBaseCorruptException, IOException {
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(out, StandardCharsets.UTF_8),
+                RENDER_BUFFER_SIZE
+        );
+        renderTable(tableName, verticalRuler, writer);
+        writer.flush();
+    }
+
+    /*
+     * Renders a snapshot of the table, so writers only wait while it is taken.
+     */
+    public void renderTable(@NonNull String tableName,
+                            boolean verticalRuler,
+                            @NonNull Appendable out)
+            throws InvalidInputException, DataBaseCorruptException, IOException {
+        try (TableSnapshot snapshot = takeSnapshot(tableName)) {
+            if (snapshot.getColumnCount() == 0) {
+                out.append("Empty table.");
+
+                return;
+            }
+            TableRenderer renderer = new TableRenderer(
+                    out,
+                    IntStream.range(0, snapshot.getColumnCount())
+                            .map(snapshot::getColumnWidth)
+                            .boxed()
+                            .collect(Collectors.toList()),
+                    snapshot.getRowCount(),
+                    verticalRuler
+            );
+            renderer.appendHeavyLine();
+            renderer.appendHeader(snapshot.getHeader());
+            renderer.appendHeavyLine();
+            for (int i = 0; i < snapshot.getRowCount(); i++) {
+                if (i > 0) {
+                    renderer.appendLine();
+                }
+                int row = i;
+                renderer.appendRow(i + 1, column -> snapshot.getCell(row, column));
+            }
+            if (snapshot.getRowCount() > 0) {
+                renderer.appendHeavyLine();
             }
         }
     }
 
-    public void addNewRow(@NonNull String tableName)
+    public long exportTable(@NonNull String tableName,
+                            @NonNull Path path,
+                            @NonNull ExportFormat format)
+            throws InvalidInputException, DataBaseCorruptException, IOException {
+
+        return exportTable(tableName, path, format, rowCount -> {
+        });
+    }
+
+    /*
+     * Streams the rows of a snapshot of the table to the file and returns
+     * their count; progress gets the number of rows written so far.
+     */
+    public long exportTable(@NonNull String tableName,
+                            @NonNull Path path,
+                            @NonNull ExportFormat format,
+                            @NonNull LongConsumer progress)
+            throws InvalidInputException, DataBaseCorruptException, IOException {
+        try (TableSnapshot snapshot = takeSnapshot(tableName)) {
+            if (snapshot.getColumnCount() == 0) {
+                String errorMessage = String.format("%s table has no columns.", tableName);
+                throw new InvalidInputException(errorMessage);
+            }
+            try (RecordWriter writer = new RecordWriter(path, format, progress)) {
+                writer.writeHeader(snapshot.getHeader());
+                // One accessor for every row, instead of a capturing lambda per row.
+                int[] row = new int[1];
+                IntFunction<String> cells = column -> snapshot.getCell(row[0], column);
+                for (row[0] = 0; row[0] < snapshot.getRowCount(); row[0]++) {
+                    writer.writeRecord(snapshot.getColumnCount(), cells);
+                }
+
+                return writer.getRecordCount();
+            }
+        }
+    }
+
+    public long exportQueryResult(@NonNull QueryResult result,
+                                  @NonNull Path path,
+                                  @NonNull ExportFormat format,
+                                  @NonNull LongConsumer progress) throws IOException {
+        try (RecordWriter writer = new RecordWriter(path, format, progress)) {
+            writer.writeHeader(result.header());
+            for (List<String> row : result.rows()) {
+                writer.writeRecord(row.size(), row::get);
+            }
+
+            return writer.getRecordCount();
+        }
+    }
+
+    /*
+     * A consistent version of the table that is read without blocking its
+     * writers; the caller closes it when done.
+     */
+    public TableSnapshot takeSnapshot(@NonNull String tableName)
             throws InvalidInputException, DataBaseCorruptException {
-        if (!isTableExist(tableName)) {
-            String errorMessage = String.format("%s is not exist.", tableName);
-            throw new InvalidInputException(errorMessage);
+        Table table = lockTable(tableName, false);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s is not exist.", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            }
+
+            return table.snapshot();
+        } finally {
+            unlockTable(table, false);
         }
-        if (isTableInvalid(tableName)) {
-            String errorMessage = String.format("%s table is corrupted.", tableName);
-            throw new DataBaseCorruptException(errorMessage);
-        } else if (Data.TABLES.get(tableName).getFirst().isEmpty()) {
-            String errorMessage = String.format("%s table has no columns.", tableName);
-            throw new InvalidInputException(errorMessage);
-        } else {
-            List<List<String>> table = Data.TABLES.get(tableName);
-            table.add(
-                    IntStream
-                            .range(0, table.getFirst().size())
-                            .mapToObj(i -> "")
-                            .collect(Collectors.toList())
+    }
+
+    public String renderViewport(@NonNull String tableName,
+                                 int rowOffset,
+                                 int rowLimit,
+                                 int columnOffset,
+                                 int columnLimit,
+                                 boolean verticalRuler)
+            throws InvalidInputException, DataBaseCorruptException {
+        StringBuilder text = new StringBuilder();
+        try {
+            renderViewport(
+                    tableName,
+                    rowOffset,
+                    rowLimit,
+                    columnOffset,
+                    columnLimit,
+                    verticalRuler,
+                    text
             );
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return text.toString();
+    }
+
+    public void renderViewport(@NonNull String tableName,
+                               int rowOffset,
+                               int rowLimit,
+                               int columnOffset,
+                               int columnLimit,
+                               boolean verticalRuler,
+                               @NonNull Appendable out)
+            throws InvalidInputException, DataBaseCorruptException, IOException {
+        Table table = lockTable(tableName, false);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s is not exist.", tableName);
+                throw new InvalidInputException(errorMessage);
+            }
+            if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (rowLimit < 1 || columnLimit < 1) {
+                String errorMessage = "Viewport limits must be positive.";
+                throw new InvalidInputException(errorMessage);
+            } else if (rowOffset < 0 || (rowOffset > 0 && rowOffset >= table.getRowCount())) {
+                String errorMessage = String.format("Row offset couldn't be %d", rowOffset);
+                throw new InvalidInputException(errorMessage);
+            } else if (columnOffset < 0 || (columnOffset > 0 && columnOffset >= table.getColumnCount())) {
+                String errorMessage = String.format("Column offset couldn't be %d", columnOffset);
+                throw new InvalidInputException(errorMessage);
+            } else if (table.getColumnCount() == 0) {
+                out.append("Empty table.");
+            } else {
+                int rowEnd = (int) Math.min(table.getRowCount(), (long) rowOffset + rowLimit);
+                int columnEnd = (int) Math.min(table.getColumnCount(), (long) columnOffset + columnLimit);
+                TableRenderer renderer = new TableRenderer(
+                        out,
+                        getColumnLengths(table, rowOffset, rowEnd, columnOffset, columnEnd),
+                        rowEnd,
+                        verticalRuler
+                );
+                renderer.appendHeavyLine();
+                renderer.appendHeader(table.getHeader().subList(columnOffset, columnEnd));
+                renderer.appendHeavyLine();
+                for (int i = rowOffset; i < rowEnd; i++) {
+                    if (i > rowOffset) {
+                        renderer.appendLine();
+                    }
+                    int row = i;
+                    renderer.appendRow(i + 1, column -> table.getCell(row, columnOffset + column));
+                }
+                if (rowEnd > rowOffset) {
+                    renderer.appendHeavyLine();
+                }
+            }
+        } finally {
+            unlockTable(table, false);
+        }
+    }
+
+    public void addNewRow(@NonNull String tableName)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s is not exist.", tableName);
+                throw new InvalidInputException(errorMessage);
+            }
+            if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (table.getColumnCount() == 0) {
+                String errorMessage = String.format("%s table has no columns.", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else {
+                appendToLog(Operation.ADD_NEW_ROW, tableName);
+                table.addRow();
+                addUndo(() -> table.removeLastRows(1));
+            }
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    /*
+     * Adds "count" empty rows, validated and logged once for the batch.
+     */
+    public void addRows(@NonNull String tableName, int count)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s is not exist.", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (table.getColumnCount() == 0) {
+                String errorMessage = String.format("%s table has no columns.", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (count < 1) {
+                String errorMessage = String.format("Row count couldn't be %d", count);
+                throw new InvalidInputException(errorMessage);
+            } else {
+                appendToLog(Operation.ADD_ROWS, tableName, String.valueOf(count));
+                table.addRows(count);
+                addUndo(() -> table.removeLastRows(count));
+            }
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    /*
+     * Appends the rows, each holding one value per column. Either every row
+     * is added or, when any of them is invalid, none.
+     */
+    public void addRows(@NonNull String tableName, @NonNull List<List<String>> rows)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s is not exist.", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (table.getColumnCount() == 0) {
+                String errorMessage = String.format("%s table has no columns.", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (rows.isEmpty()) {
+                String errorMessage = "Row count couldn't be 0";
+                throw new InvalidInputException(errorMessage);
+            }
+            int columnCount = table.getColumnCount();
+            String[] arguments = new String[2 + rows.size() * columnCount];
+            arguments[0] = tableName;
+            arguments[1] = String.valueOf(rows.size());
+            int next = 2;
+            for (List<String> row : rows) {
+                if (row == null || row.size() != columnCount) {
+                    String errorMessage = String.format(
+                            "Every row of %s table must have %d values.",
+                            tableName,
+                            columnCount);
+                    throw new InvalidInputException(errorMessage);
+                }
+                for (String value : row) {
+                    if (value == null || !isCellValueValid(value)) {
+                        String errorMessage = "Invalid input: The value does not meet the required format.";
+                        throw new InvalidInputException(errorMessage);
+                    }
+                    arguments[next++] = value;
+                }
+            }
+            appendToLog(Operation.ADD_ROWS, arguments);
+            int firstRow = table.getRowCount();
+            table.addRows(rows.size());
+            addUndo(() -> table.removeLastRows(rows.size()));
+            for (int i = 0; i < rows.size(); i++) {
+                List<String> row = rows.get(i);
+                for (int j = 0; j < columnCount; j++) {
+                    if (!row.get(j).isEmpty()) {
+                        table.setCell(firstRow + i, j, row.get(j));
+                    }
+                }
+            }
+        } finally {
+            unlockTable(table, true);
         }
     }
 
     public String renderRow(@NonNull String tableName, @NonNull String rowNumber)
             throws InvalidInputException, DataBaseCorruptException {
-        int rowNumberInt = Integer.parseInt(rowNumber);
-        if (!isTableExist(tableName)) {
-            String errorMessage = String.format("%s is not exist.", tableName);
-            throw new InvalidInputException(errorMessage);
+        StringBuilder text = new StringBuilder();
+        try {
+            renderRow(tableName, rowNumber, text);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        if (isTableInvalid(tableName)) {
-            String errorMessage = String.format("%s table is corrupted.", tableName);
-            throw new DataBaseCorruptException(errorMessage);
-        } else if (rowNumberInt < 1 || rowNumberInt >= Data.TABLES.get(tableName).size()) {
-            String errorMessage = String.format("Row number couldn't be %d", rowNumberInt);
-            throw new InvalidInputException(errorMessage);
-        } else {
-            StringBuilder text = new StringBuilder();
-            appendHeavyLine(text, tableName, true);
-            appendRowToText(text, tableName, 0, true);
-            appendLine(text, tableName, true);
-            appendRowToText(text, tableName, rowNumberInt, true);
-            appendHeavyLine(text, tableName, true);
-            text.deleteCharAt(text.length() - 1);
 
-            return text.toString();
+        return text.toString();
+    }
+
+    public void renderRow(@NonNull String tableName,
+                          @NonNull String rowNumber,
+                          @NonNull Appendable out)
+            throws InvalidInputException, DataBaseCorruptException, IOException {
+        int rowNumberInt = Integer.parseInt(rowNumber);
+        Table table = lockTable(tableName, false);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s is not exist.", tableName);
+                throw new InvalidInputException(errorMessage);
+            }
+            if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (rowNumberInt < 1 || rowNumberInt > table.getRowCount()) {
+                String errorMessage = String.format("Row number couldn't be %d", rowNumberInt);
+                throw new InvalidInputException(errorMessage);
+            } else {
+                TableRenderer renderer = new TableRenderer(
+                        out,
+                        getColumnLengths(table),
+                        table.getRowCount(),
+                        true
+                );
+                renderer.appendHeavyLine();
+                renderer.appendHeader(table.getHeader());
+                renderer.appendLine();
+                renderer.appendRow(rowNumberInt, column -> table.getCell(rowNumberInt - 1, column));
+                renderer.appendHeavyLine();
+            }
+        } finally {
+            unlockTable(table, false);
         }
     }
 
@@ -137,280 +556,1183 @@ public class Service {
                            @NonNull String columnName,
                            @NonNull String newValue)
             throws InvalidInputException, DataBaseCorruptException {
-        Predicate<String> isValueValid = (inputValue) ->
-                !inputValue.startsWith(" ") &&
-                        !inputValue.endsWith(" ") &&
-                        !inputValue.contains("  ");
-        if (!isTableExist(tableName)) {
-            String errorMessage = String.format("%s table is not exist", tableName);
-            throw new InvalidInputException(errorMessage);
-        } else if (isTableInvalid(tableName)) {
-            String errorMessage = String.format("%s table is corrupted.", tableName);
-            throw new DataBaseCorruptException(errorMessage);
-        } else if (
-                Integer.parseInt(rowNumber) < 1 ||
-                        Integer.parseInt(rowNumber) >= Data.TABLES.get(tableName).size()
-        ) {
-            String errorMessage = "Row does not exist.";
-            throw new InvalidInputException(errorMessage);
-        } else if (!Data.TABLES.get(tableName).getFirst().contains(columnName)) {
-            String errorMessage = String.format(
-                    "%s column does not exist in %s.",
-                    columnName,
-                    tableName
-            );
-            throw new InvalidInputException(errorMessage);
-        } else if (!isValueValid.test(newValue)) {
-            String errorMessage = "Invalid input: The value does not meet the required format.";
-            throw new InvalidInputException(errorMessage);
-        } else {
-            Data.TABLES.get(tableName)
-                    .get(Integer.parseInt(rowNumber))
-                    .set(
-                            Data.TABLES.get(tableName).getFirst().indexOf(columnName)
-                            , newValue
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (
+                    Integer.parseInt(rowNumber) < 1 ||
+                            Integer.parseInt(rowNumber) > table.getRowCount()
+            ) {
+                String errorMessage = "Row does not exist.";
+                throw new InvalidInputException(errorMessage);
+            } else if (!table.hasColumn(columnName)) {
+                String errorMessage = String.format(
+                        "%s column does not exist in %s.",
+                        columnName,
+                        tableName
+                );
+                throw new InvalidInputException(errorMessage);
+            } else if (!isCellValueValid(newValue)) {
+                String errorMessage = "Invalid input: The value does not meet the required format.";
+                throw new InvalidInputException(errorMessage);
+            } else {
+                appendToLog(Operation.UPDATE_CELL, tableName, rowNumber, columnName, newValue);
+                int row = Integer.parseInt(rowNumber) - 1;
+                int column = table.indexOfColumn(columnName);
+                String oldValue = table.getCell(row, column);
+                table.setCell(row, column, newValue);
+                addUndo(() -> table.setCell(row, column, oldValue));
+            }
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    /*
+     * Applies the updates in order, so a later update of a cell wins. The
+     * whole batch is validated before any cell changes.
+     */
+    public void updateCells(@NonNull String tableName, @NonNull List<CellUpdate> updates)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (updates.isEmpty()) {
+
+                return;
+            }
+            int[] columns = new int[updates.size()];
+            String[] arguments = new String[1 + updates.size() * 3];
+            arguments[0] = tableName;
+            for (int i = 0; i < columns.length; i++) {
+                CellUpdate update = updates.get(i);
+                if (update.rowNumber() < 1 || update.rowNumber() > table.getRowCount()) {
+                    String errorMessage = String.format("Row %d does not exist.", update.rowNumber());
+                    throw new InvalidInputException(errorMessage);
+                } else if (!table.hasColumn(update.columnName())) {
+                    String errorMessage = String.format(
+                            "%s column does not exist in %s.",
+                            update.columnName(),
+                            tableName
                     );
+                    throw new InvalidInputException(errorMessage);
+                } else if (!isCellValueValid(update.value())) {
+                    String errorMessage = "Invalid input: The value does not meet the required format.";
+                    throw new InvalidInputException(errorMessage);
+                }
+                columns[i] = table.indexOfColumn(update.columnName());
+                arguments[1 + i * 3] = String.valueOf(update.rowNumber());
+                arguments[2 + i * 3] = update.columnName();
+                arguments[3 + i * 3] = update.value();
+            }
+            appendToLog(Operation.UPDATE_CELLS, arguments);
+            String[] oldValues = isInTransaction() ? new String[columns.length] : null;
+            for (int i = 0; i < columns.length; i++) {
+                int row = updates.get(i).rowNumber() - 1;
+                if (oldValues != null) {
+                    oldValues[i] = table.getCell(row, columns[i]);
+                }
+                table.setCell(row, columns[i], updates.get(i).value());
+            }
+            if (oldValues != null) {
+                int[] rows = updates.stream().mapToInt(update -> update.rowNumber() - 1).toArray();
+                // Last update first, so a cell updated twice gets its first old value.
+                addUndo(() -> {
+                    for (int i = rows.length - 1; i >= 0; i--) {
+                        table.setCell(rows[i], columns[i], oldValues[i]);
+                    }
+                });
+            }
+        } finally {
+            unlockTable(table, true);
         }
     }
 
     public void deleteRow(@NonNull String tableName,
                           @NonNull String rowNumber)
             throws InvalidInputException, DataBaseCorruptException {
-        if (!isTableExist(tableName)) {
-            String errorMessage = String.format("%s table is not exist", tableName);
-            throw new InvalidInputException(errorMessage);
-        } else if (isTableInvalid(tableName)) {
-            String errorMessage = String.format("%s table is corrupted.", tableName);
-            throw new DataBaseCorruptException(errorMessage);
-        } else if (
-                Integer.parseInt(rowNumber) < 1 ||
-                        Integer.parseInt(rowNumber) >= Data.TABLES.get(tableName).size()
-        ) {
-            String errorMessage = String.format(
-                    "Row %s does not exist in %s table.",
-                    rowNumber,
-                    tableName);
-            throw new InvalidInputException(errorMessage);
-        } else {
-            Data.TABLES.get(tableName).remove(Integer.parseInt(rowNumber));
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (
+                    Integer.parseInt(rowNumber) < 1 ||
+                            Integer.parseInt(rowNumber) > table.getRowCount()
+            ) {
+                String errorMessage = String.format(
+                        "Row %s does not exist in %s table.",
+                        rowNumber,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            } else {
+                appendToLog(Operation.DELETE_ROW, tableName, rowNumber);
+                int[] rows = {Integer.parseInt(rowNumber) - 1};
+                addUndoOfRemoval(table, rows);
+                table.removeRows(rows);
+                COMPACTOR.request(table);
+            }
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    /*
+     * Deletes the row that had the ID when it was added. The log records
+     * the row number it has at the time of the deletion.
+     */
+    public void deleteRowById(@NonNull String tableName, long rowId)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            }
+            int row = table.indexOfRowId(rowId);
+            if (row < 0) {
+                String errorMessage = String.format(
+                        "Row with ID %d does not exist in %s table.",
+                        rowId,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            }
+            appendToLog(Operation.DELETE_ROW, tableName, String.valueOf(row + 1));
+            addUndoOfRemoval(table, new int[]{row});
+            table.removeRow(row);
+            COMPACTOR.request(table);
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    /*
+     * Deletes the rows; repeated row numbers count once. Row numbers refer
+     * to the table before the deletion, so the result of findRows can be
+     * passed as it is.
+     */
+    public void deleteRows(@NonNull String tableName, @NonNull Collection<Integer> rowNumbers)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            }
+            for (Integer rowNumber : rowNumbers) {
+                if (rowNumber == null || rowNumber < 1 || rowNumber > table.getRowCount()) {
+                    String errorMessage = String.format(
+                            "Row %s does not exist in %s table.",
+                            rowNumber,
+                            tableName);
+                    throw new InvalidInputException(errorMessage);
+                }
+            }
+            int[] rows = rowNumbers
+                    .stream()
+                    .mapToInt(rowNumber -> rowNumber - 1)
+                    .sorted()
+                    .distinct()
+                    .toArray();
+            if (rows.length == 0) {
+
+                return;
+            }
+            String[] arguments = new String[1 + rows.length];
+            arguments[0] = tableName;
+            for (int i = 0; i < rows.length; i++) {
+                arguments[i + 1] = String.valueOf(rows[i] + 1);
+            }
+            appendToLog(Operation.DELETE_ROWS, arguments);
+            addUndoOfRemoval(table, rows);
+            table.removeRows(rows);
+            COMPACTOR.request(table);
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    /*
+     * Row IDs stay with their rows while the row numbers after a deleted
+     * row move up, so callers keep IDs to refer to rows later.
+     */
+    public long getRowId(@NonNull String tableName, @NonNull String rowNumber)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, false);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (
+                    Integer.parseInt(rowNumber) < 1 ||
+                            Integer.parseInt(rowNumber) > table.getRowCount()
+            ) {
+                String errorMessage = String.format(
+                        "Row %s does not exist in %s table.",
+                        rowNumber,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            }
+
+            return table.getRowId(Integer.parseInt(rowNumber) - 1);
+        } finally {
+            unlockTable(table, false);
+        }
+    }
+
+    public List<String> getRow(@NonNull String tableName, @NonNull String rowNumber)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, false);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (
+                    Integer.parseInt(rowNumber) < 1 ||
+                            Integer.parseInt(rowNumber) > table.getRowCount()
+            ) {
+                String errorMessage = String.format(
+                        "Row %s does not exist in %s table.",
+                        rowNumber,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            }
+
+            return table.getRow(Integer.parseInt(rowNumber) - 1);
+        } finally {
+            unlockTable(table, false);
+        }
+    }
+
+    public int getRowNumber(@NonNull String tableName, long rowId)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, false);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            }
+            int row = table.indexOfRowId(rowId);
+            if (row < 0) {
+                String errorMessage = String.format(
+                        "Row with ID %d does not exist in %s table.",
+                        rowId,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            }
+
+            return row + 1;
+        } finally {
+            unlockTable(table, false);
         }
     }
 
     public void addNewColumn(@NonNull String tableName,
                              @NonNull String newColumnName)
             throws InvalidInputException, DataBaseCorruptException {
-        Predicate<String> isValueValid = (inputValue) ->
-                !inputValue.isBlank() &&
-                        !inputValue.startsWith(" ") &&
-                        !inputValue.endsWith(" ") &&
-                        !inputValue.contains("  ");
-        if (!isTableExist(tableName)) {
-            String errorMessage = String.format("%s table is not exist", tableName);
-            throw new InvalidInputException(errorMessage);
-        } else if (isTableInvalid(tableName)) {
-            String errorMessage = String.format("%s table is corrupted.", tableName);
-            throw new DataBaseCorruptException(errorMessage);
-        } else if (Data.TABLES.get(tableName).getFirst().contains(newColumnName)) {
-            String errorMessage = String.format(
-                    "%s column of %s table already exists.",
-                    newColumnName,
-                    tableName);
-            throw new InvalidInputException(errorMessage);
-        } else if (!isValueValid.test(newColumnName)) {
-            String errorMessage = "Invalid input: The value does not meet the required format.";
-            throw new InvalidInputException(errorMessage);
-        } else {
-            Data.TABLES.get(tableName).getFirst().add(newColumnName);
-            Data
-                    .TABLES
-                    .get(tableName)
-                    .stream()
-                    .skip(1)
-                    .forEach(row -> row.add(""));
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (table.hasColumn(newColumnName)) {
+                String errorMessage = String.format(
+                        "%s column of %s table already exists.",
+                        newColumnName,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (!isColumnNameValid(newColumnName)) {
+                String errorMessage = "Invalid input: The value does not meet the required format.";
+                throw new InvalidInputException(errorMessage);
+            } else {
+                appendToLog(Operation.ADD_NEW_COLUMN, tableName, newColumnName);
+                int column = table.getColumnCount();
+                table.addColumn(newColumnName);
+                addUndo(() -> table.removeColumn(column));
+            }
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    /*
+     * Adds the columns in order. Either every column is added or, when any
+     * name is invalid or taken, none.
+     */
+    public void addNewColumns(@NonNull String tableName,
+                              @NonNull List<String> newColumnNames)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            }
+            Set<String> names = new HashSet<>();
+            for (String newColumnName : newColumnNames) {
+                if (newColumnName == null || !isColumnNameValid(newColumnName)) {
+                    String errorMessage = "Invalid input: The value does not meet the required format.";
+                    throw new InvalidInputException(errorMessage);
+                } else if (table.hasColumn(newColumnName) || !names.add(newColumnName)) {
+                    String errorMessage = String.format(
+                            "%s column of %s table already exists.",
+                            newColumnName,
+                            tableName);
+                    throw new InvalidInputException(errorMessage);
+                }
+            }
+            for (String newColumnName : newColumnNames) {
+                appendToLog(Operation.ADD_NEW_COLUMN, tableName, newColumnName);
+                int column = table.getColumnCount();
+                table.addColumn(newColumnName);
+                addUndo(() -> table.removeColumn(column));
+            }
+        } finally {
+            unlockTable(table, true);
         }
     }
 
     public void deleteColumn(@NonNull String tableName,
                              @NonNull String columnName)
             throws InvalidInputException, DataBaseCorruptException {
-        if (!isTableExist(tableName)) {
-            String errorMessage = String.format("%s table is not exist", tableName);
-            throw new InvalidInputException(errorMessage);
-        } else if (isTableInvalid(tableName)) {
-            String errorMessage = String.format("%s table is corrupted.", tableName);
-            throw new DataBaseCorruptException(errorMessage);
-        } else if (!Data.TABLES.get(tableName).getFirst().contains(columnName)) {
-            String errorMessage = String.format(
-                    "%s column of %s table does not exist.",
-                    columnName,
-                    tableName);
-            throw new InvalidInputException(errorMessage);
-        } else {
-            int indexOfColumn = Data.TABLES.get(tableName).getFirst().indexOf(columnName);
-            Data
-                    .TABLES
-                    .get(tableName)
-                    .forEach(row -> row.remove(indexOfColumn));
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (!table.hasColumn(columnName)) {
+                String errorMessage = String.format(
+                        "%s column of %s table does not exist.",
+                        columnName,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            } else {
+                appendToLog(Operation.DELETE_COLUMN, tableName, columnName);
+                int column = table.indexOfColumn(columnName);
+                Column cells = table.getColumn(column);
+                table.removeColumn(column);
+                addUndo(() -> table.insertColumn(column, columnName, cells));
+            }
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    public void createIndex(@NonNull String tableName,
+                            @NonNull String columnName)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (!table.hasColumn(columnName)) {
+                String errorMessage = String.format(
+                        "%s column of %s table does not exist.",
+                        columnName,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (table.isIndexed(table.indexOfColumn(columnName))) {
+                String errorMessage = String.format(
+                        "%s column of %s table is already indexed.",
+                        columnName,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            } else {
+                appendToLog(Operation.CREATE_INDEX, tableName, columnName);
+                int column = table.indexOfColumn(columnName);
+                table.createIndex(column);
+                addUndo(() -> table.dropIndex(column));
+            }
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    public void dropIndex(@NonNull String tableName,
+                          @NonNull String columnName)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (!table.hasColumn(columnName)) {
+                String errorMessage = String.format(
+                        "%s column of %s table does not exist.",
+                        columnName,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (!table.isIndexed(table.indexOfColumn(columnName))) {
+                String errorMessage = String.format(
+                        "%s column of %s table is not indexed.",
+                        columnName,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            } else {
+                appendToLog(Operation.DROP_INDEX, tableName, columnName);
+                int column = table.indexOfColumn(columnName);
+                table.dropIndex(column);
+                addUndo(() -> table.createIndex(column));
+            }
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    public void createOrderedIndex(@NonNull String tableName,
+                                   @NonNull String columnName)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (!table.hasColumn(columnName)) {
+                String errorMessage = String.format(
+                        "%s column of %s table does not exist.",
+                        columnName,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (table.isOrdered(table.indexOfColumn(columnName))) {
+                String errorMessage = String.format(
+                        "%s column of %s table already has an ordered index.",
+                        columnName,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            } else {
+                appendToLog(Operation.CREATE_ORDERED_INDEX, tableName, columnName);
+                int column = table.indexOfColumn(columnName);
+                table.createOrderedIndex(column);
+                addUndo(() -> table.dropOrderedIndex(column));
+            }
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    public void dropOrderedIndex(@NonNull String tableName,
+                                 @NonNull String columnName)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            } else if (!table.hasColumn(columnName)) {
+                String errorMessage = String.format(
+                        "%s column of %s table does not exist.",
+                        columnName,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (!table.isOrdered(table.indexOfColumn(columnName))) {
+                String errorMessage = String.format(
+                        "%s column of %s table has no ordered index.",
+                        columnName,
+                        tableName);
+                throw new InvalidInputException(errorMessage);
+            } else {
+                appendToLog(Operation.DROP_ORDERED_INDEX, tableName, columnName);
+                int column = table.indexOfColumn(columnName);
+                table.dropOrderedIndex(column);
+                addUndo(() -> table.createOrderedIndex(column));
+            }
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    /*
+     * Row numbers, in ascending order, of the rows whose cell in the column
+     * equals the value. An indexed column answers without scanning the table.
+     */
+    public List<Integer> findRows(@NonNull String tableName,
+                                  @NonNull String columnName,
+                                  @NonNull String value)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, false);
+        try {
+            int column = getQueriedColumn(table, tableName, columnName);
+
+            return toRowNumbers(table.findRows(column, value));
+        } finally {
+            unlockTable(table, false);
+        }
+    }
+
+    /*
+     * Row numbers of the rows whose value lies between "from" and "to", both
+     * included, in value order.
+     */
+    public List<Integer> findRowsBetween(@NonNull String tableName,
+                                         @NonNull String columnName,
+                                         @NonNull String from,
+                                         @NonNull String to)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, false);
+        try {
+            int column = getQueriedColumn(table, tableName, columnName);
+
+            return toRowNumbers(table.findRange(column, from, true, to, true));
+        } finally {
+            unlockTable(table, false);
+        }
+    }
+
+    public List<Integer> findRowsGreaterThan(@NonNull String tableName,
+                                             @NonNull String columnName,
+                                             @NonNull String value)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, false);
+        try {
+            int column = getQueriedColumn(table, tableName, columnName);
+
+            return toRowNumbers(table.findRange(column, value, false, null, false));
+        } finally {
+            unlockTable(table, false);
+        }
+    }
+
+    public List<Integer> findRowsWithPrefix(@NonNull String tableName,
+                                            @NonNull String columnName,
+                                            @NonNull String prefix)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, false);
+        try {
+            int column = getQueriedColumn(table, tableName, columnName);
+
+            return toRowNumbers(table.findWithPrefix(column, prefix));
+        } finally {
+            unlockTable(table, false);
+        }
+    }
+
+    /*
+     * A page of row numbers in the order of the column's values. With an
+     * ordered index on the column, only the rows of the page are visited.
+     */
+    public List<Integer> getSortedRows(@NonNull String tableName,
+                                       @NonNull String columnName,
+                                       boolean descending,
+                                       int offset,
+                                       int limit)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, false);
+        try {
+            int column = getQueriedColumn(table, tableName, columnName);
+            if (offset < 0 || limit < 0) {
+                String errorMessage = "Offset and limit couldn't be negative.";
+                throw new InvalidInputException(errorMessage);
+            }
+
+            return toRowNumbers(table.sortedRows(column, descending, offset, limit));
+        } finally {
+            unlockTable(table, false);
+        }
+    }
+
+    /*
+     * The rows with the greatest values, greatest first.
+     */
+    public List<Integer> findTopRows(@NonNull String tableName,
+                                     @NonNull String columnName,
+                                     int count)
+            throws InvalidInputException, DataBaseCorruptException {
+
+        return getSortedRows(tableName, columnName, true, 0, count);
+    }
+
+    public String renderRows(@NonNull String tableName,
+                             @NonNull List<Integer> rowNumbers,
+                             boolean verticalRuler)
+            throws InvalidInputException, DataBaseCorruptException {
+        StringBuilder text = new StringBuilder();
+        try {
+            renderRows(tableName, rowNumbers, verticalRuler, text);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return text.toString();
+    }
+
+    /*
+     * Renders the given rows in the given order, e.g. a page from
+     * getSortedRows. Column widths fit the rendered rows only.
+     */
+    public void renderRows(@NonNull String tableName,
+                           @NonNull List<Integer> rowNumbers,
+                           boolean verticalRuler,
+                           @NonNull Appendable out)
+            throws InvalidInputException, DataBaseCorruptException, IOException {
+        Table table = lockTable(tableName, false);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s is not exist.", tableName);
+                throw new InvalidInputException(errorMessage);
+            }
+            if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            }
+            for (int rowNumber : rowNumbers) {
+                if (rowNumber < 1 || rowNumber > table.getRowCount()) {
+                    String errorMessage = String.format("Row number couldn't be %d", rowNumber);
+                    throw new InvalidInputException(errorMessage);
+                }
+            }
+            if (table.getColumnCount() == 0) {
+                out.append("Empty table.");
+
+                return;
+            }
+            List<Integer> lengths = IntStream
+                    .range(0, table.getColumnCount())
+                    .map(column -> rowNumbers
+                            .stream()
+                            .mapToInt(rowNumber -> table.getCell(rowNumber - 1, column).length())
+                            .reduce(table.getHeader().get(column).length(), Math::max))
+                    .boxed()
+                    .collect(Collectors.toList());
+            TableRenderer renderer = new TableRenderer(
+                    out,
+                    lengths,
+                    rowNumbers.stream().mapToInt(Integer::intValue).max().orElse(0),
+                    verticalRuler
+            );
+            renderer.appendHeavyLine();
+            renderer.appendHeader(table.getHeader());
+            renderer.appendHeavyLine();
+            for (int i = 0; i < rowNumbers.size(); i++) {
+                if (i > 0) {
+                    renderer.appendLine();
+                }
+                int row = rowNumbers.get(i) - 1;
+                renderer.appendRow(row + 1, column -> table.getCell(row, column));
+            }
+            if (!rowNumbers.isEmpty()) {
+                renderer.appendHeavyLine();
+            }
+        } finally {
+            unlockTable(table, false);
+        }
+    }
+
+    public QueryResult query(@NonNull Query query)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(query.getTableName(), false);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s is not exist.", query.getTableName());
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", query.getTableName());
+                throw new DataBaseCorruptException(errorMessage);
+            }
+
+            return QueryPipeline.execute(query, table);
+        } finally {
+            unlockTable(table, false);
+        }
+    }
+
+    /*
+     * Number of rows meeting the query's conditions. Large tables are
+     * scanned in parallel on the common fork-join pool.
+     */
+    public long countRows(@NonNull Query query)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(query.getTableName(), false);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s is not exist.", query.getTableName());
+                throw new InvalidInputException(errorMessage);
+            } else if (isTableInvalid(table)) {
+                String errorMessage = String.format("%s table is corrupted.", query.getTableName());
+                throw new DataBaseCorruptException(errorMessage);
+            }
+
+            return QueryPipeline.count(query, table);
+        } finally {
+            unlockTable(table, false);
+        }
+    }
+
+    public QueryResult query(@NonNull String query)
+            throws InvalidInputException, DataBaseCorruptException {
+
+        return query(QueryParser.parse(query));
+    }
+
+    public String renderQueryResult(@NonNull QueryResult result, boolean verticalRuler) {
+        StringBuilder text = new StringBuilder();
+        try {
+            renderQueryResult(result, verticalRuler, text);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return text.toString();
+    }
+
+    /*
+     * Renders the result like a table, each row numbered as in its table.
+     */
+    public void renderQueryResult(@NonNull QueryResult result,
+                                  boolean verticalRuler,
+                                  @NonNull Appendable out) throws IOException {
+        List<String> header = result.header();
+        if (header.isEmpty()) {
+            out.append("Empty table.");
+
+            return;
+        }
+        List<Integer> lengths = IntStream
+                .range(0, header.size())
+                .map(column -> result
+                        .rows()
+                        .stream()
+                        .mapToInt(row -> row.get(column).length())
+                        .reduce(header.get(column).length(), Math::max))
+                .boxed()
+                .collect(Collectors.toList());
+        TableRenderer renderer = new TableRenderer(
+                out,
+                lengths,
+                result.rowNumbers().stream().mapToInt(Integer::intValue).max().orElse(0),
+                verticalRuler
+        );
+        renderer.appendHeavyLine();
+        renderer.appendHeader(header);
+        renderer.appendHeavyLine();
+        for (int i = 0; i < result.rows().size(); i++) {
+            if (i > 0) {
+                renderer.appendLine();
+            }
+            List<String> row = result.rows().get(i);
+            renderer.appendRow(result.rowNumbers().get(i), row::get);
+        }
+        if (!result.rows().isEmpty()) {
+            renderer.appendHeavyLine();
+        }
+    }
+
+    public void verifyTable(@NonNull String tableName)
+            throws InvalidInputException, DataBaseCorruptException {
+        Table table = lockTable(tableName, true);
+        try {
+            if (table == null) {
+                String errorMessage = String.format("%s table is not exist", tableName);
+                throw new InvalidInputException(errorMessage);
+            } else if (!table.verify()) {
+                String errorMessage = String.format("%s table is corrupted.", tableName);
+                throw new DataBaseCorruptException(errorMessage);
+            }
+        } finally {
+            unlockTable(table, true);
+        }
+    }
+
+    public void apply(@NonNull LogRecord record)
+            throws InvalidInputException, DataBaseCorruptException {
+        List<String> arguments = record.arguments();
+        switch (record.operation()) {
+            case CREATE_TABLE -> createTable(arguments.get(0));
+            case DROP_TABLE -> dropTable(arguments.get(0));
+            case ADD_NEW_ROW -> addNewRow(arguments.get(0));
+            case UPDATE_CELL -> updateCell(
+                    arguments.get(0),
+                    arguments.get(1),
+                    arguments.get(2),
+                    arguments.get(3)
+            );
+            case DELETE_ROW -> deleteRow(arguments.get(0), arguments.get(1));
+            case ADD_NEW_COLUMN -> addNewColumn(arguments.get(0), arguments.get(1));
+            case DELETE_COLUMN -> deleteColumn(arguments.get(0), arguments.get(1));
+            case CREATE_INDEX -> createIndex(arguments.get(0), arguments.get(1));
+            case DROP_INDEX -> dropIndex(arguments.get(0), arguments.get(1));
+            case CREATE_ORDERED_INDEX -> createOrderedIndex(arguments.get(0), arguments.get(1));
+            case DROP_ORDERED_INDEX -> dropOrderedIndex(arguments.get(0), arguments.get(1));
+            case ADD_ROWS -> applyAddRows(arguments);
+            case DELETE_ROWS -> deleteRows(
+                    arguments.get(0),
+                    arguments.subList(1, arguments.size()).stream().map(Integer::parseInt).toList()
+            );
+            case UPDATE_CELLS -> applyUpdateCells(arguments);
+            case TRANSACTION -> applyTransaction(arguments);
         }
     }
 
     public boolean doesColumnOfTableExist(@NonNull String columnName,
                                           @NonNull String tableName) {
+        Table table = lockTable(tableName, false);
+        try {
 
-        return Data.TABLES.containsKey(tableName) &&
-                Data.TABLES.get(tableName).getFirst().contains(columnName);
+            return table == null ? false : table.hasColumn(columnName);
+        } finally {
+            unlockTable(table, false);
+        }
     }
 
     public boolean isTableEmpty(@NonNull String tableName) {
+        Table table = lockTable(tableName, false);
+        try {
 
-        return !Data.TABLES.containsKey(tableName) ||
-                Data.TABLES.get(tableName).getFirst().isEmpty();
+            return table == null ? true : table.getColumnCount() == 0;
+        } finally {
+            unlockTable(table, false);
+        }
     }
 
     public boolean hasNoRows(@NonNull String tableName) {
+        Table table = lockTable(tableName, false);
+        try {
 
-        return !Data.TABLES.containsKey(tableName) ||
-                Data.TABLES.get(tableName).size() <= 1;
-    }
-
-    private void appendRowToText(@NonNull StringBuilder text,
-                                 @NonNull String tableName,
-                                 int number,
-                                 boolean verticalRuler) {
-        List<String> row = Data.TABLES.get(tableName).get(number);
-        List<Integer> lengths = getColumnLengths(tableName);
-        boolean header = number == 0;
-        int lengthOfLastNumber = String.valueOf(Data.TABLES.get(tableName).size() - 1).length();
-        int lengthOfCurrentNumber = String.valueOf(number).length();
-        text.append(verticalRuler ?
-                header ?
-                        " ".repeat(lengthOfLastNumber + 4) + "|" :
-                        " ".repeat(lengthOfLastNumber - lengthOfCurrentNumber) + number + " -> |"
-                : "|");
-        IntStream
-                .range(0, lengths.size())
-                .forEach(i -> {
-                    text.append(header
-                            ? getColumnText(row.get(i), lengths.get(i))
-                            : getCellText(row.get(i), lengths.get(i)));
-                    text.append("|");
-                });
-        text.append("\n");
-    }
-
-    private void appendLine(@NonNull StringBuilder text,
-                            @NonNull String tableName,
-                            boolean verticalRuler) {
-        List<Integer> lengths = getColumnLengths(tableName);
-        int lengthOfLastNumber = String.valueOf(Data.TABLES.get(tableName).size() - 1).length();
-        if (verticalRuler) {
-            text.append(" ".repeat(lengthOfLastNumber + 4));
-        }
-        text.append("|");
-        lengths
-                .forEach(length -> {
-                            text.append("-".repeat(length));
-                            text.append("+");
-                        }
-                );
-        text.deleteCharAt(text.length() - 1);
-        text.append("|\n");
+            return table == null ? true : table.getRowCount() == 0;
+        } finally {
+            unlockTable(table, false);
+        }
     }
 
-    private void appendHeavyLine(@NonNull StringBuilder text,
-                                 @NonNull String tableName,
-                                 boolean verticalRuler) {
-        int lengthOfLastNumber = String.valueOf(Data.TABLES.get(tableName).size() - 1).length();
-        if (verticalRuler) {
-            text.append(" ".repeat(lengthOfLastNumber + 4));
+    public int getRowCount(@NonNull String tableName) {
+        Table table = lockTable(tableName, false);
+        try {
+
+            return table == null ? 0 : table.getRowCount();
+        } finally {
+            unlockTable(table, false);
         }
-        int length = getTableCharLength(tableName);
-        text.append("=".repeat(length));
-        text.append("\n");
     }
 
-    private int getTableCharLength(@NonNull String tableName) {
-        List<Integer> columnLength = getColumnLengths(tableName);
+    public List<String> getColumnNames(@NonNull String tableName) {
+        Table table = lockTable(tableName, false);
+        try {
 
-        return columnLength
-                .stream()
-                .reduce(0, Integer::sum) + columnLength.size() + 1;
+            return table == null ? List.of() : List.copyOf(table.getHeader());
+        } finally {
+            unlockTable(table, false);
+        }
     }
 
-    private String getColumnText(@NonNull String value, int length) {
-        int allSpaces = length - value.length();
-        int beforeSpaces;
-        int afterSpaces;
-        if (allSpaces % 2 == 0) {
-            beforeSpaces = allSpaces / 2;
-            afterSpaces = allSpaces / 2;
-        } else {
-            beforeSpaces = (allSpaces - 1) / 2;
-            afterSpaces = (allSpaces + 1) / 2;
-        }
+    public int getColumnCount(@NonNull String tableName) {
+        Table table = lockTable(tableName, false);
+        try {
 
-        return " ".repeat(beforeSpaces) +
-                value +
-                " ".repeat(afterSpaces);
+            return table == null ? 0 : table.getColumnCount();
+        } finally {
+            unlockTable(table, false);
+        }
     }
 
-    private String getCellText(@NonNull String value, int length) {
-        StringBuilder text = new StringBuilder(value);
-        IntStream.range(value.length(), length).forEach(i -> text.append(" "));
+    private List<Integer> getColumnLengths(@NonNull Table table,
+                                           int rowFrom,
+                                           int rowTo,
+                                           int columnFrom,
+                                           int columnTo) {
 
-        return text.toString();
+        return IntStream.range(columnFrom, columnTo)
+                .map(i -> {
+                    int length = table.getHeader().get(i).length();
+                    for (int j = rowFrom; j < rowTo; j++) {
+                        length = Math.max(length, table.getCell(j, i).length());
+                    }
+
+                    return length;
+                })
+                .boxed()
+                .collect(Collectors.toList());
     }
 
-    private List<Integer> getColumnLengths(@NonNull String tableName) {
-        List<List<String>> table = Data.TABLES.get(tableName);
+    private List<Integer> getColumnLengths(@NonNull Table table) {
 
-        return IntStream.range(0, table.getFirst().size())
-                .map(i ->
-                        table
-                                .stream()
-                                .max(Comparator.comparingInt(row ->
-                                        row.get(i).length()))
-                                .orElseThrow()
-                                .get(i)
-                                .length()
-                )
+        return IntStream.range(0, table.getColumnCount())
+                .map(table::getColumnWidth)
                 .boxed()
                 .collect(Collectors.toList());
     }
 
-    private boolean isTableInvalid(@NonNull String tableName) {
-        List<List<String>> table = Data.TABLES.get(tableName);
+    /*
+     * Arguments: table name, row count and, unless the rows are empty, their
+     * values row by row.
+     */
+    private void applyAddRows(List<String> arguments)
+            throws InvalidInputException, DataBaseCorruptException {
+        int count = Integer.parseInt(arguments.get(1));
+        if (arguments.size() == 2) {
+            addRows(arguments.get(0), count);
 
-        if (table.isEmpty()) {
+            return;
+        }
+        int columnCount = (arguments.size() - 2) / count;
+        List<List<String>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int from = 2 + i * columnCount;
+            rows.add(arguments.subList(from, from + columnCount));
+        }
+        addRows(arguments.get(0), rows);
+    }
 
-            return true;
+    /*
+     * Arguments: table name followed by row number, column name and value of
+     * every update.
+     */
+    private void applyUpdateCells(List<String> arguments)
+            throws InvalidInputException, DataBaseCorruptException {
+        List<CellUpdate> updates = new ArrayList<>((arguments.size() - 1) / 3);
+        for (int i = 1; i + 2 < arguments.size(); i += 3) {
+            updates.add(new CellUpdate(
+                    Integer.parseInt(arguments.get(i)),
+                    arguments.get(i + 1),
+                    arguments.get(i + 2)
+            ));
         }
+        updateCells(arguments.get(0), updates);
+    }
 
-        if (table.stream().anyMatch(Objects::isNull)) {
+    /*
+     * Arguments: operation code, argument count and arguments of every
+     * record. Inside an open transaction the records join it.
+     */
+    private void applyTransaction(List<String> arguments)
+            throws InvalidInputException, DataBaseCorruptException {
+        List<LogRecord> records = new ArrayList<>();
+        for (int i = 0; i < arguments.size(); ) {
+            Operation operation = Operation.fromCode(Byte.parseByte(arguments.get(i)));
+            int argumentCount = Integer.parseInt(arguments.get(i + 1));
+            records.add(new LogRecord(operation, arguments.subList(i + 2, i + 2 + argumentCount)));
+            i += 2 + argumentCount;
+        }
+        if (isInTransaction()) {
+            for (LogRecord record : records) {
+                apply(record);
+            }
+
+            return;
+        }
+        begin();
+        try {
+            for (LogRecord record : records) {
+                apply(record);
+            }
+        } catch (Throwable e) {
+            rollback();
+            throw e;
+        }
+        commit();
+    }
 
-            return true;
+    /*
+     * Inside a transaction the record waits for the commit.
+     */
+    private void appendToLog(@NonNull Operation operation, @NonNull String... arguments) {
+        Transaction transaction = transactions.get();
+        if (transaction != null) {
+            transaction.addLogRecord(operation, arguments);
+        } else if (writeAheadLog != null) {
+            try {
+                writeAheadLog.append(operation, arguments);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
         }
+    }
 
-        if (
-                table
-                        .stream()
-                        .anyMatch(row ->
-                                row.stream().anyMatch(Objects::isNull))
-        ) {
+    /*
+     * A single record is logged as it is; more are wrapped in one
+     * TRANSACTION record.
+     */
+    private void appendToLog(List<LogRecord> records) {
+        if (records.isEmpty()) {
+
+            return;
+        } else if (records.size() == 1) {
+            LogRecord record = records.getFirst();
+            appendToLog(record.operation(), record.arguments().toArray(String[]::new));
 
-            return true;
+            return;
         }
+        List<String> arguments = new ArrayList<>();
+        for (LogRecord record : records) {
+            arguments.add(String.valueOf(record.operation().getCode()));
+            arguments.add(String.valueOf(record.arguments().size()));
+            arguments.addAll(record.arguments());
+        }
+        appendToLog(Operation.TRANSACTION, arguments.toArray(String[]::new));
+    }
 
-        if (table.getFirst().isEmpty() && table.size() > 1) {
+    private void addUndo(Runnable undo) {
+        Transaction transaction = transactions.get();
+        if (transaction != null) {
+            transaction.addUndo(undo);
+        }
+    }
 
-            return true;
+    /*
+     * Keeps the IDs and cells of the rows about to be removed, and only
+     * inside a transaction.
+     */
+    private void addUndoOfRemoval(Table table, int[] rows) {
+        if (!isInTransaction()) {
+
+            return;
+        }
+        long[] ids = new long[rows.length];
+        List<List<String>> cells = new ArrayList<>(rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            ids[i] = table.getRowId(rows[i]);
+            cells.add(table.getRow(rows[i]));
         }
+        addUndo(() -> table.restoreRows(ids, cells));
+    }
+
+    private Transaction endTransaction() {
+        Transaction transaction = transactions.get();
+        if (transaction == null) {
+            throw new IllegalStateException("No transaction is open on this thread.");
+        }
+        transactions.remove();
+
+        return transaction;
+    }
+
+    private int getQueriedColumn(Table table, String tableName, String columnName)
+            throws InvalidInputException, DataBaseCorruptException {
+        if (table == null) {
+            String errorMessage = String.format("%s table is not exist", tableName);
+            throw new InvalidInputException(errorMessage);
+        } else if (isTableInvalid(table)) {
+            String errorMessage = String.format("%s table is corrupted.", tableName);
+            throw new DataBaseCorruptException(errorMessage);
+        } else if (!table.hasColumn(columnName)) {
+            String errorMessage = String.format(
+                    "%s column of %s table does not exist.",
+                    columnName,
+                    tableName);
+            throw new InvalidInputException(errorMessage);
+        }
+
+        return table.indexOfColumn(columnName);
+    }
 
-        return table
-                .stream()
-                .skip(1)
-                .anyMatch(row ->
-                        row.size() != table.getFirst().size());
+    private List<Integer> toRowNumbers(int[] rows) {
+        List<Integer> rowNumbers = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            rowNumbers.add(row + 1);
+        }
+
+        return rowNumbers;
+    }
+
+    private boolean isColumnNameValid(String name) {
+
+        return !name.isBlank() &&
+                !name.startsWith(" ") &&
+                !name.endsWith(" ") &&
+                !name.contains("  ");
+    }
+
+    private boolean isCellValueValid(String value) {
+
+        return !value.startsWith(" ") &&
+                !value.endsWith(" ") &&
+                !value.contains("  ");
+    }
+
+    private boolean isTableInvalid(@NonNull Table table) {
+
+        return table.isCorrupted();
+    }
+
+    /*
+     * Locks the table registered under the name, or returns null if there is
+     * none. A table can't be dropped while it is locked, so the name keeps
+     * resolving to the returned table until it is unlocked.
+     *
+     * A transaction keeps the write locks it takes until it ends.
+     */
+    private Table lockTable(@NonNull String tableName, boolean exclusive) {
+        while (true) {
+            Table table = Data.TABLES.get(tableName);
+            if (table == null) {
+
+                return null;
+            }
+            Lock lock = exclusive ? table.getLock().writeLock() : table.getLock().readLock();
+            lock.lock();
+            if (Data.TABLES.get(tableName) == table) {
+                Transaction transaction = transactions.get();
+                if (exclusive && transaction != null) {
+                    transaction.keepLocked(table);
+                }
+
+                return table;
+            }
+            lock.unlock();
+        }
+    }
+
+    private void lockCatalog() {
+        CATALOG_LOCK.lock();
+        Transaction transaction = transactions.get();
+        if (transaction != null) {
+            transaction.keepLocked(CATALOG_LOCK);
+        }
+    }
+
+    private void unlockTable(Table table, boolean exclusive) {
+        if (table != null) {
+            Lock lock = exclusive ? table.getLock().writeLock() : table.getLock().readLock();
+            lock.unlock();
+        }
     }
 
     private boolean isValidTableName(String tableName) {
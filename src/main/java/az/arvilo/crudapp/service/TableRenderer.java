@@ -0,0 +1,117 @@
+package az.arvilo.crudapp.service;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.IntFunction;
+
+class TableRenderer {
+
+    private final Appendable out;
+    private final List<Integer> lengths;
+    private final boolean verticalRuler;
+    private final int lengthOfLastNumber;
+    private final StringBuilder line;
+    private boolean firstLine;
+
+    TableRenderer(@NonNull Appendable out,
+                  @NonNull List<Integer> lengths,
+                  int lastNumber,
+                  boolean verticalRuler) {
+        this.out = out;
+        this.lengths = lengths;
+        this.verticalRuler = verticalRuler;
+        this.lengthOfLastNumber = String.valueOf(lastNumber).length();
+        this.line = new StringBuilder(getTableCharLength() + lengthOfLastNumber + 5);
+        this.firstLine = true;
+    }
+
+    void appendHeader(@NonNull List<String> header) throws IOException {
+        if (verticalRuler) {
+            line.append(" ".repeat(lengthOfLastNumber + 4));
+        }
+        line.append("|");
+        for (int i = 0; i < lengths.size(); i++) {
+            appendColumnText(header.get(i), lengths.get(i));
+            line.append("|");
+        }
+        flushLine();
+    }
+
+    void appendRow(int number, @NonNull IntFunction<String> cells) throws IOException {
+        if (verticalRuler) {
+            int lengthOfCurrentNumber = String.valueOf(number).length();
+            line.append(" ".repeat(lengthOfLastNumber - lengthOfCurrentNumber));
+            line.append(number);
+            line.append(" -> ");
+        }
+        line.append("|");
+        for (int i = 0; i < lengths.size(); i++) {
+            String value = cells.apply(i);
+            line.append(value);
+            line.append(" ".repeat(lengths.get(i) - value.length()));
+            line.append("|");
+        }
+        flushLine();
+    }
+
+    void appendLine() throws IOException {
+        if (verticalRuler) {
+            line.append(" ".repeat(lengthOfLastNumber + 4));
+        }
+        line.append("|");
+        lengths.forEach(length -> {
+            line.append("-".repeat(length));
+            line.append("+");
+        });
+        line.deleteCharAt(line.length() - 1);
+        line.append("|");
+        flushLine();
+    }
+
+    void appendHeavyLine() throws IOException {
+        if (verticalRuler) {
+            line.append(" ".repeat(lengthOfLastNumber + 4));
+        }
+        line.append("=".repeat(getTableCharLength()));
+        flushLine();
+    }
+
+    /*
+     * Lines are separated rather than terminated, so the output never ends
+     * with a line break.
+     */
+    private void flushLine() throws IOException {
+        if (!firstLine) {
+            out.append('\n');
+        }
+        out.append(line);
+        line.setLength(0);
+        firstLine = false;
+    }
+
+    private void appendColumnText(@NonNull String value, int length) {
+        int allSpaces = length - value.length();
+        int beforeSpaces;
+        int afterSpaces;
+        if (allSpaces % 2 == 0) {
+            beforeSpaces = allSpaces / 2;
+            afterSpaces = allSpaces / 2;
+        } else {
+            beforeSpaces = (allSpaces - 1) / 2;
+            afterSpaces = (allSpaces + 1) / 2;
+        }
+        line.append(" ".repeat(beforeSpaces));
+        line.append(value);
+        line.append(" ".repeat(afterSpaces));
+    }
+
+    private int getTableCharLength() {
+
+        return lengths
+                .stream()
+                .reduce(0, Integer::sum) + lengths.size() + 1;
+    }
+
+}
@@ -0,0 +1,89 @@
+package az.arvilo.crudapp.service;
+
+import az.arvilo.crudapp.persistence.LogRecord;
+import az.arvilo.crudapp.persistence.Operation;
+import az.arvilo.crudapp.storage.Table;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/*
+ * The changes of a transaction that is still open. Each change leaves an
+ * undo entry, holding only what it overwrote or removed, and its log record,
+ * which is written with the others on commit.
+ *
+ * The transaction keeps the write lock of every table it locks for a change,
+ * and the catalog lock once it creates or drops a table, until it ends. No
+ * other thread sees its changes before that, and none changes what it is
+ * about to undo.
+ */
+class Transaction {
+
+    private final List<Runnable> undoLog;
+    private final List<LogRecord> logRecords;
+    private final List<Table> lockedTables;
+    private Lock catalogLock;
+
+    Transaction() {
+        this.undoLog = new ArrayList<>();
+        this.logRecords = new ArrayList<>();
+        this.lockedTables = new ArrayList<>();
+    }
+
+    void addUndo(@NonNull Runnable undo) {
+        undoLog.add(undo);
+    }
+
+    void addLogRecord(@NonNull Operation operation, @NonNull String... arguments) {
+        logRecords.add(new LogRecord(operation, Arrays.asList(arguments)));
+    }
+
+    List<LogRecord> getLogRecords() {
+
+        return logRecords;
+    }
+
+    /*
+     * Takes one more hold of the table's write lock, the first time only.
+     * The caller holds it already, or the table is new and not registered
+     * yet, so this never waits.
+     */
+    void keepLocked(@NonNull Table table) {
+        if (lockedTables.stream().noneMatch(locked -> locked == table)) {
+            table.getLock().writeLock().lock();
+            lockedTables.add(table);
+        }
+    }
+
+    void keepLocked(@NonNull Lock lock) {
+        if (catalogLock == null) {
+            lock.lock();
+            catalogLock = lock;
+        }
+    }
+
+    /*
+     * Newest change first, so every entry finds the table as its change
+     * left it.
+     */
+    void rollback() {
+        for (int i = undoLog.size() - 1; i >= 0; i--) {
+            undoLog.get(i).run();
+        }
+        undoLog.clear();
+        logRecords.clear();
+    }
+
+    void unlock() {
+        lockedTables.forEach(table -> table.getLock().writeLock().unlock());
+        lockedTables.clear();
+        if (catalogLock != null) {
+            catalogLock.unlock();
+            catalogLock = null;
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package az.arvilo.crudapp.service;
+
+import az.arvilo.crudapp.exception.DataBaseCorruptException;
+import az.arvilo.crudapp.exception.InvalidInputException;
+
+/*
+ * The Service calls of an inTransaction batch.
+ */
+@FunctionalInterface
+public interface TransactionBody {
+
+    void run() throws InvalidInputException, DataBaseCorruptException;
+
+}
@@ -0,0 +1,573 @@
+package az.arvilo.crudapp.storage;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/*
+ * Cells are stored either as plain strings or, when the column repeats few
+ * distinct values, dictionary-encoded: each distinct value is kept once and
+ * rows hold its int code. Code 0 is always the empty string.
+ *
+ * A plain column of at least MIN_ENCODED_SIZE cells is encoded when it has
+ * at most one distinct value per ENCODE_RATIO cells. It is checked when it
+ * is built and each time its storage grows, so the check is amortized over
+ * the writes. An encoded column whose dictionary outgrows one value per
+ * DECODE_RATIO cells is decoded back, dropping unused values on the way.
+ *
+ * Readers can pin a Version, which shares the storage arrays instead of
+ * copying them. A write that would change a cell a pinned version can see
+ * copies the array first; appends, and writes once no version is pinned,
+ * change it in place. The dictionary is only ever appended to.
+ */
+public class Column {
+
+    private static final String[] EMPTY = new String[0];
+    private static final int MIN_ENCODED_SIZE = 1024;
+    private static final int ENCODE_RATIO = 4;
+    private static final int DECODE_RATIO = 2;
+
+    private String[] values;
+    private int[] codes;
+    private String[] dictionary;
+    private Map<String, Integer> codesByValue;
+    private int filled;
+    private int size;
+    private int width;
+    private boolean widthStale;
+    private HashIndex hashIndex;
+    private OrderedIndex orderedIndex;
+    private Sharing sharing;
+
+    public Column(int size) {
+        this.values = EMPTY;
+        this.filled = 0;
+        this.size = size;
+        this.width = 0;
+        this.widthStale = false;
+    }
+
+    Column(String[] values) {
+        this.values = values;
+        this.filled = values.length;
+        this.size = values.length;
+        this.widthStale = true;
+        encodeIfRepetitive();
+    }
+
+    public int size() {
+
+        return size;
+    }
+
+    public String get(int index) {
+        Objects.checkIndex(index, size);
+        if (index >= filled) {
+
+            return "";
+        }
+
+        return codes == null ? values[index] : dictionary[codes[index]];
+    }
+
+    public boolean isEncoded() {
+
+        return codes != null;
+    }
+
+    /*
+     * Length of the longest cell. A write can only widen it directly; when the
+     * longest cell shrinks or is removed, it is recomputed on the next call.
+     * Readers sharing a table may race on the recomputation, hence the lock.
+     */
+    public synchronized int width() {
+        if (widthStale) {
+            width = 0;
+            for (int i = 0; i < filled; i++) {
+                String value = get(i);
+                if (value != null) {
+                    width = Math.max(width, value.length());
+                }
+            }
+            widthStale = false;
+        }
+
+        return width;
+    }
+
+    /*
+     * The cells as they are now. Readers sharing the column under its table's
+     * read lock may pin at the same time, hence the lock.
+     */
+    public synchronized Version pin() {
+        if (sharing == null) {
+            sharing = new Sharing();
+        }
+        sharing.upTo = Math.max(sharing.upTo, filled);
+        sharing.readers.incrementAndGet();
+
+        return new Version(values, codes, dictionary, filled, size, width(), sharing);
+    }
+
+    public void set(int index, String value) {
+        Objects.checkIndex(index, size);
+        fill(index + 1);
+        String oldValue = get(index);
+        store(index, value);
+        if (hashIndex != null) {
+            hashIndex.remove(oldValue, index);
+            hashIndex.add(value, index);
+        }
+        if (orderedIndex != null) {
+            orderedIndex.remove(oldValue, index);
+            orderedIndex.add(value, index);
+        }
+        if (!widthStale) {
+            if (value.length() > width) {
+                width = value.length();
+            } else if (oldValue.length() == width && value.length() < width) {
+                widthStale = true;
+            }
+        }
+    }
+
+    public void addEmpty() {
+        addEmpty(1);
+    }
+
+    public void addEmpty(int count) {
+        if (hashIndex != null) {
+            hashIndex.addRange("", size, count);
+        }
+        if (orderedIndex != null) {
+            orderedIndex.addRange("", size, count);
+        }
+        size += count;
+    }
+
+    public void remove(int index) {
+        Objects.checkIndex(index, size);
+        if (hashIndex != null) {
+            hashIndex.remove(get(index), index);
+            hashIndex.shiftAfter(index);
+        }
+        if (orderedIndex != null) {
+            orderedIndex.remove(get(index), index);
+            orderedIndex.shiftAfter(index);
+        }
+        if (index < filled) {
+            if (!widthStale && get(index).length() == width && width > 0) {
+                widthStale = true;
+            }
+            unshare(index);
+            if (codes == null) {
+                System.arraycopy(values, index + 1, values, index, filled - index - 1);
+                values[--filled] = null;
+            } else {
+                System.arraycopy(codes, index + 1, codes, index, filled - index - 1);
+                codes[--filled] = 0;
+            }
+        }
+        size--;
+    }
+
+    /*
+     * Empties the cell and takes it out of the indexes, leaving the ordinals
+     * of the other cells as they are.
+     */
+    public void clear(int index) {
+        Objects.checkIndex(index, size);
+        String value = get(index);
+        if (hashIndex != null) {
+            hashIndex.remove(value, index);
+        }
+        if (orderedIndex != null) {
+            orderedIndex.remove(value, index);
+        }
+        if (index < filled && !value.isEmpty()) {
+            if (!widthStale && value.length() == width) {
+                widthStale = true;
+            }
+            store(index, "");
+        }
+    }
+
+    /*
+     * Removes the rows, given as ascending distinct ordinals, compacting the
+     * cells in one pass instead of shifting the tail once per row.
+     */
+    public void removeAll(int[] rows) {
+        if (rows.length == 0) {
+
+            return;
+        }
+        Objects.checkIndex(rows[rows.length - 1], size);
+        if (hashIndex != null) {
+            hashIndex.removeAll(rows);
+        }
+        if (orderedIndex != null) {
+            orderedIndex.removeAll(rows);
+        }
+        unshare(rows[0]);
+        int kept = 0;
+        int next = 0;
+        for (int i = 0; i < filled; i++) {
+            if (next < rows.length && rows[next] == i) {
+                next++;
+            } else if (codes == null) {
+                values[kept++] = values[i];
+            } else {
+                codes[kept++] = codes[i];
+            }
+        }
+        if (codes == null) {
+            Arrays.fill(values, kept, filled, null);
+        } else {
+            Arrays.fill(codes, kept, filled, 0);
+        }
+        if (kept < filled) {
+            widthStale = true;
+        }
+        filled = kept;
+        size -= rows.length;
+    }
+
+    public boolean isIndexed() {
+
+        return hashIndex != null;
+    }
+
+    public void createIndex() {
+        createIndex(null);
+    }
+
+    /*
+     * Indexes only the rows "live" accepts, e.g. leaving out the slots of
+     * removed rows; null accepts every row.
+     */
+    public void createIndex(IntPredicate live) {
+        if (hashIndex == null) {
+            hashIndex = new HashIndex(this, live);
+        }
+    }
+
+    public void dropIndex() {
+        hashIndex = null;
+    }
+
+    public boolean isOrdered() {
+
+        return orderedIndex != null;
+    }
+
+    public void createOrderedIndex() {
+        createOrderedIndex(null);
+    }
+
+    public void createOrderedIndex(IntPredicate live) {
+        if (orderedIndex == null) {
+            orderedIndex = new OrderedIndex(this, live);
+        }
+    }
+
+    public void dropOrderedIndex() {
+        orderedIndex = null;
+    }
+
+    /*
+     * Ascending ordinals of the rows holding the value. Without an index the
+     * whole column is scanned.
+     */
+    public int[] find(String value) {
+        if (hashIndex != null) {
+
+            return hashIndex.find(value);
+        }
+        if (orderedIndex != null) {
+
+            return orderedIndex.find(value);
+        }
+
+        return IntStream
+                .range(0, size)
+                .filter(i -> Objects.equals(get(i), value))
+                .toArray();
+    }
+
+    /*
+     * Ordinals of the rows whose value lies in the range, in value order.
+     * A null bound leaves that side open. Without an ordered index the
+     * matching rows are collected and sorted.
+     */
+    public int[] range(String from, boolean fromInclusive, String to, boolean toInclusive) {
+        if (orderedIndex != null) {
+
+            return orderedIndex.range(from, fromInclusive, to, toInclusive);
+        }
+
+        return sortedScan(IntStream
+                .range(0, size)
+                .filter(i -> {
+                    String value = get(i);
+                    int fromOrder = from == null ? 1 : value.compareTo(from);
+                    int toOrder = to == null ? -1 : value.compareTo(to);
+
+                    return (fromOrder > 0 || (fromInclusive && fromOrder == 0)) &&
+                            (toOrder < 0 || (toInclusive && toOrder == 0));
+                }), false, 0, Integer.MAX_VALUE);
+    }
+
+    public int[] withPrefix(@NonNull String prefix) {
+        if (orderedIndex != null) {
+
+            return orderedIndex.withPrefix(prefix);
+        }
+
+        return sortedScan(IntStream
+                .range(0, size)
+                .filter(i -> get(i).startsWith(prefix)), false, 0, Integer.MAX_VALUE);
+    }
+
+    /*
+     * A page of the rows in value order. With an ordered index only the page
+     * is visited; otherwise the whole column is sorted first.
+     */
+    public int[] sorted(boolean descending, int offset, int limit) {
+
+        return sorted(descending, offset, limit, null);
+    }
+
+    /*
+     * As above, counting only the rows accepted by "live" towards the page,
+     * or every row when it is null. Cleared cells are not in the indexes, so
+     * the filter only applies to the scan.
+     */
+    public int[] sorted(boolean descending, int offset, int limit, IntPredicate live) {
+        if (orderedIndex != null) {
+
+            return orderedIndex.sorted(descending, offset, limit);
+        }
+        IntStream rows = IntStream.range(0, size);
+
+        return sortedScan(live == null ? rows : rows.filter(live), descending, offset, limit);
+    }
+
+    /*
+     * Rows in value order, read lazily from the ordered index. Returns null
+     * when the column has no ordered index.
+     */
+    public PrimitiveIterator.OfInt sortedIterator(boolean descending) {
+
+        return orderedIndex == null ? null : orderedIndex.iterator(descending);
+    }
+
+    private int[] sortedScan(IntStream rows, boolean descending, int offset, int limit) {
+        Comparator<Integer> byValue = Comparator.comparing(this::get);
+
+        return rows
+                .boxed()
+                .sorted((descending ? byValue.reversed() : byValue).thenComparing(Comparator.naturalOrder()))
+                .skip(offset)
+                .limit(limit)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /*
+     * Cells past "filled" are implicitly empty strings, so a new column or
+     * a new row costs nothing until one of its cells is written.
+     */
+    private void fill(int count) {
+        if (count <= filled) {
+
+            return;
+        }
+        if (codes != null) {
+            if (count > codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(count, codes.length * 2));
+            }
+            filled = count;
+
+            return;
+        }
+        boolean grown = count > values.length;
+        if (grown) {
+            values = Arrays.copyOf(values, Math.max(count, values.length * 2));
+        }
+        Arrays.fill(values, filled, count, "");
+        filled = count;
+        if (grown) {
+            encodeIfRepetitive();
+        }
+    }
+
+    private void store(int index, String value) {
+        Integer code = codes == null ? null : codesByValue.get(value);
+        if (codes != null &&
+                code == null &&
+                (codesByValue.size() + 1) * DECODE_RATIO > Math.max(filled, MIN_ENCODED_SIZE)) {
+            decode();
+            encodeIfRepetitive();
+            code = codes == null ? null : codesByValue.get(value);
+        }
+        unshare(index);
+        if (codes == null) {
+            values[index] = value;
+
+            return;
+        }
+        if (code == null) {
+            code = codesByValue.size();
+            if (code == dictionary.length) {
+                dictionary = Arrays.copyOf(dictionary, code * 2);
+            }
+            dictionary[code] = value;
+            codesByValue.put(value, code);
+        }
+        codes[index] = code;
+    }
+
+    /*
+     * Gives up as soon as there are too many distinct values, so a column
+     * that stays plain costs a partial scan only. Null cells of an ingested
+     * corrupted table keep the column plain.
+     */
+    private void encodeIfRepetitive() {
+        if (codes != null || filled < MIN_ENCODED_SIZE) {
+
+            return;
+        }
+        int maxDistinct = filled / ENCODE_RATIO;
+        Map<String, Integer> newCodesByValue = new HashMap<>();
+        newCodesByValue.put("", 0);
+        int[] newCodes = new int[values.length];
+        for (int i = 0; i < filled; i++) {
+            String value = values[i];
+            if (value == null) {
+
+                return;
+            }
+            Integer code = newCodesByValue.get(value);
+            if (code == null) {
+                if (newCodesByValue.size() == maxDistinct) {
+
+                    return;
+                }
+                code = newCodesByValue.size();
+                newCodesByValue.put(value, code);
+            }
+            newCodes[i] = code;
+        }
+        dictionary = new String[Math.max(16, Integer.highestOneBit(newCodesByValue.size()) * 2)];
+        newCodesByValue.forEach((value, code) -> dictionary[code] = value);
+        codesByValue = newCodesByValue;
+        codes = newCodes;
+        values = null;
+        sharing = null;
+    }
+
+    private void decode() {
+        values = new String[codes.length];
+        for (int i = 0; i < filled; i++) {
+            values[i] = dictionary[codes[i]];
+        }
+        codes = null;
+        dictionary = null;
+        codesByValue = null;
+        sharing = null;
+    }
+
+    /*
+     * Called before the cells from "index" on are changed in place. Pinned
+     * versions see the cells before "upTo", so only then is the array copied;
+     * the copy, like an array no version is pinned to any more, is unshared.
+     */
+    private void unshare(int index) {
+        if (sharing == null) {
+
+            return;
+        }
+        boolean pinned = sharing.readers.get() > 0;
+        if (pinned && index >= sharing.upTo) {
+
+            return;
+        }
+        if (pinned && codes == null) {
+            values = values.clone();
+        } else if (pinned) {
+            codes = codes.clone();
+        }
+        sharing = null;
+    }
+
+    private static class Sharing {
+
+        private final AtomicInteger readers = new AtomicInteger();
+        private int upTo;
+
+    }
+
+    /*
+     * An immutable view of the column as it was pinned. Releasing it lets the
+     * column write in place again and the storage it alone holds be reclaimed.
+     */
+    public static class Version {
+
+        private final String[] values;
+        private final int[] codes;
+        private final String[] dictionary;
+        private final int filled;
+        private final int size;
+        private final int width;
+        private final Sharing sharing;
+        private boolean released;
+
+        private Version(String[] values,
+                        int[] codes,
+                        String[] dictionary,
+                        int filled,
+                        int size,
+                        int width,
+                        Sharing sharing) {
+            this.values = values;
+            this.codes = codes;
+            this.dictionary = dictionary;
+            this.filled = filled;
+            this.size = size;
+            this.width = width;
+            this.sharing = sharing;
+        }
+
+        public String get(int index) {
+            Objects.checkIndex(index, size);
+            if (index >= filled) {
+
+                return "";
+            }
+
+            return codes == null ? values[index] : dictionary[codes[index]];
+        }
+
+        public int width() {
+
+            return width;
+        }
+
+        public synchronized void release() {
+            if (!released) {
+                released = true;
+                sharing.readers.decrementAndGet();
+            }
+        }
+
+    }
+
+}
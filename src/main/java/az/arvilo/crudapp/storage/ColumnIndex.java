@@ -0,0 +1,68 @@
+package az.arvilo.crudapp.storage;
+
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/*
+ * Maps every value of a column to the ascending ordinals of the rows holding
+ * it. Rows are addressed by position, so removing a row renumbers the rows
+ * after it, the same way the column vectors shift their cells.
+ */
+abstract class ColumnIndex {
+
+    static final int[] NO_ROWS = new int[0];
+
+    final Map<String, RowSet> rowsByValue;
+
+    /*
+     * Indexes the rows "live" accepts, or all of them when it is null.
+     */
+    ColumnIndex(Map<String, RowSet> rowsByValue, Column column, IntPredicate live) {
+        this.rowsByValue = rowsByValue;
+        for (int i = 0; i < column.size(); i++) {
+            if (live == null || live.test(i)) {
+                add(column.get(i), i);
+            }
+        }
+    }
+
+    int[] find(String value) {
+        RowSet rows = rowsByValue.get(value);
+
+        return rows == null ? NO_ROWS : rows.toArray();
+    }
+
+    void add(String value, int row) {
+        rowsByValue.computeIfAbsent(value, key -> new RowSet()).add(row);
+    }
+
+    void addRange(String value, int from, int count) {
+        rowsByValue.computeIfAbsent(value, key -> new RowSet()).addRange(from, count);
+    }
+
+    void remove(String value, int row) {
+        RowSet rows = rowsByValue.get(value);
+        if (rows != null && rows.remove(row) && rows.size() == 0) {
+            rowsByValue.remove(value);
+        }
+    }
+
+    /*
+     * Called after "row" was removed from its value.
+     */
+    void shiftAfter(int row) {
+        rowsByValue.values().forEach(rows -> rows.shiftAfter(row));
+    }
+
+    /*
+     * Removes the rows, ascending, and renumbers the rest in one pass.
+     */
+    void removeAll(int[] rows) {
+        rowsByValue.values().removeIf(values -> {
+            values.removeAll(rows);
+
+            return values.size() == 0;
+        });
+    }
+
+}
@@ -0,0 +1,12 @@
+package az.arvilo.crudapp.storage;
+
+import java.util.HashMap;
+import java.util.function.IntPredicate;
+
+class HashIndex extends ColumnIndex {
+
+    HashIndex(Column column, IntPredicate live) {
+        super(new HashMap<>(), column, live);
+    }
+
+}
@@ -0,0 +1,141 @@
+package az.arvilo.crudapp.storage;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/*
+ * Values are kept in String order, so ranges and sorted pages are read off
+ * the tree without touching the rows outside them. Rows with equal values
+ * come in ascending order.
+ */
+class OrderedIndex extends ColumnIndex {
+
+    OrderedIndex(Column column, IntPredicate live) {
+        super(new TreeMap<>(), column, live);
+    }
+
+    /*
+     * A null bound leaves that side of the range open.
+     */
+    int[] range(String from, boolean fromInclusive, String to, boolean toInclusive) {
+        NavigableMap<String, RowSet> tree = tree();
+        if (from != null && to != null) {
+            int order = from.compareTo(to);
+            if (order > 0 || (order == 0 && !(fromInclusive && toInclusive))) {
+
+                return NO_ROWS;
+            }
+            tree = tree.subMap(from, fromInclusive, to, toInclusive);
+        } else if (from != null) {
+            tree = tree.tailMap(from, fromInclusive);
+        } else if (to != null) {
+            tree = tree.headMap(to, toInclusive);
+        }
+
+        return collect(tree.values(), 0, Integer.MAX_VALUE);
+    }
+
+    int[] withPrefix(String prefix) {
+        int[] rows = new int[16];
+        int count = 0;
+        for (Map.Entry<String, RowSet> entry : tree().tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            RowSet rowSet = entry.getValue();
+            if (count + rowSet.size() > rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(count + rowSet.size(), rows.length * 2));
+            }
+            for (int i = 0; i < rowSet.size(); i++) {
+                rows[count++] = rowSet.get(i);
+            }
+        }
+
+        return Arrays.copyOf(rows, count);
+    }
+
+    int[] sorted(boolean descending, int offset, int limit) {
+        NavigableMap<String, RowSet> tree = descending ? tree().descendingMap() : tree();
+
+        return collect(tree.values(), offset, limit);
+    }
+
+    /*
+     * Walks the rows in value order without collecting them, so a consumer
+     * that stops early never visits the rest of the tree.
+     */
+    PrimitiveIterator.OfInt iterator(boolean descending) {
+        Iterator<RowSet> values = (descending ? tree().descendingMap() : tree()).values().iterator();
+
+        return new PrimitiveIterator.OfInt() {
+
+            private RowSet current;
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                while (current == null || position == current.size()) {
+                    if (!values.hasNext()) {
+
+                        return false;
+                    }
+                    current = values.next();
+                    position = 0;
+                }
+
+                return true;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return current.get(position++);
+            }
+
+        };
+    }
+
+    private NavigableMap<String, RowSet> tree() {
+
+        return (NavigableMap<String, RowSet>) rowsByValue;
+    }
+
+    /*
+     * Stops as soon as the page is full, so a page near the start costs
+     * only the values it spans.
+     */
+    private static int[] collect(Collection<RowSet> values, int offset, int limit) {
+        int[] rows = new int[16];
+        int count = 0;
+        int skipped = 0;
+        for (RowSet rowSet : values) {
+            if (count == limit) {
+                break;
+            }
+            if (skipped + rowSet.size() <= offset) {
+                skipped += rowSet.size();
+                continue;
+            }
+            for (int i = Math.max(0, offset - skipped); i < rowSet.size() && count < limit; i++) {
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, rows.length * 2);
+                }
+                rows[count++] = rowSet.get(i);
+            }
+            skipped = offset;
+        }
+
+        return Arrays.copyOf(rows, count);
+    }
+
+}
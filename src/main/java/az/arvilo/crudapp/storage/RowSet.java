@@ -0,0 +1,99 @@
+package az.arvilo.crudapp.storage;
+
+import java.util.Arrays;
+
+/*
+ * Ascending row ordinals holding one value of an indexed column.
+ */
+class RowSet {
+
+    private int[] ordinals = new int[2];
+    private int size;
+
+    int size() {
+
+        return size;
+    }
+
+    int get(int position) {
+
+        return ordinals[position];
+    }
+
+    int[] toArray() {
+
+        return Arrays.copyOf(ordinals, size);
+    }
+
+    void add(int row) {
+        int position = search(row);
+        if (position >= 0) {
+
+            return;
+        }
+        position = -position - 1;
+        if (size == ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, size * 2);
+        }
+        System.arraycopy(ordinals, position, ordinals, position + 1, size - position);
+        ordinals[position] = row;
+        size++;
+    }
+
+    /*
+     * Appends rows [from, from + count), all after the rows already held.
+     */
+    void addRange(int from, int count) {
+        if (size + count > ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, Math.max(size + count, size * 2));
+        }
+        for (int i = 0; i < count; i++) {
+            ordinals[size++] = from + i;
+        }
+    }
+
+    boolean remove(int row) {
+        int position = search(row);
+        if (position < 0) {
+
+            return false;
+        }
+        System.arraycopy(ordinals, position + 1, ordinals, position, size - position - 1);
+        size--;
+
+        return true;
+    }
+
+    void shiftAfter(int row) {
+        int position = search(row);
+        for (int i = position >= 0 ? position + 1 : -position - 1; i < size; i++) {
+            ordinals[i]--;
+        }
+    }
+
+    /*
+     * Drops the removed rows and renumbers the rest in one pass; "removed"
+     * is ascending.
+     */
+    void removeAll(int[] removed) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int position = Arrays.binarySearch(removed, ordinals[i]);
+            if (position < 0) {
+                ordinals[kept++] = ordinals[i] - (-position - 1);
+            }
+        }
+        size = kept;
+    }
+
+    private int search(int row) {
+        // Appended rows are the common case, so the tail is checked first.
+        if (size == 0 || ordinals[size - 1] < row) {
+
+            return -size - 1;
+        }
+
+        return Arrays.binarySearch(ordinals, 0, size, row);
+    }
+
+}
@@ -0,0 +1,711 @@
+package az.arvilo.crudapp.storage;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/*
+ * Rows are addressed by their dense ordinal, 0 to getRowCount() - 1, and
+ * carry a stable 64-bit ID. Cells live in slots: a row keeps its slot, and
+ * its ID, until the table is compacted, so row IDs are ascending by slot.
+ *
+ * Removing a row leaves a tombstone in its slot instead of shifting the
+ * cells after it: the cells are cleared, the row leaves the indexes, and
+ * only the ordinal-to-slot map of the rows after it goes stale. That map is
+ * rebuilt lazily, up to the row being read, on the next access. compact()
+ * drops the tombstones and renumbers the slots in one pass.
+ */
+public class Table {
+
+    private static final int MIN_COMPACTED_TOMBSTONES = 1024;
+    private static final int COMPACTION_RATIO = 4;
+    private static final AtomicLong INSTANCES = new AtomicLong();
+
+    private List<String> header;
+    private List<Column> columns;
+    private Map<String, Integer> columnIndexes;
+    private int rowCount;
+    private int slotCount;
+    private long[] rowIds;
+    private long nextRowId;
+    private BitSet tombstones;
+    private int tombstoneCount;
+    private int[] rowSlots;
+    private volatile int freshRows;
+    private boolean corrupted;
+    private long modifications;
+    private volatile Supplier<Table> loader;
+    private final long instance;
+    private final ReentrantReadWriteLock lock;
+
+    public Table() {
+        this(new ArrayList<>(), new ArrayList<>(), 0);
+    }
+
+    private Table(List<String> header, List<Column> columns, int rowCount) {
+        this.header = header;
+        this.columns = columns;
+        this.columnIndexes = new HashMap<>();
+        this.rowCount = rowCount;
+        this.slotCount = rowCount;
+        this.rowIds = new long[Math.max(16, rowCount)];
+        for (int i = 0; i < rowCount; i++) {
+            rowIds[i] = i + 1;
+        }
+        this.nextRowId = rowCount + 1;
+        this.tombstones = new BitSet();
+        this.instance = INSTANCES.incrementAndGet();
+        this.lock = new ReentrantReadWriteLock();
+        indexColumns(0);
+        this.corrupted = !isConsistent();
+    }
+
+    private Table(Supplier<Table> loader) {
+        this.loader = loader;
+        this.instance = INSTANCES.incrementAndGet();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /*
+     * A table whose content is decoded on first access, e.g. from a snapshot.
+     */
+    public static Table lazy(@NonNull Supplier<Table> loader) {
+
+        return new Table(loader);
+    }
+
+    /*
+     * Builds a table from column vectors. Columns of different lengths or
+     * with null cells make the table corrupted.
+     */
+    public static Table fromColumns(@NonNull List<String> header, @NonNull List<String[]> columns) {
+        int rowCount = columns.isEmpty() ? 0 : columns.getFirst().length;
+        List<Column> vectors = new ArrayList<>(columns.size());
+        columns.forEach(values -> vectors.add(new Column(values)));
+
+        return new Table(new ArrayList<>(header), vectors, rowCount);
+    }
+
+    /*
+     * Builds a table from the row-major layout with the header as the first row.
+     * Malformed input is kept as it is (missing header, null or ragged rows)
+     * and the table is marked as corrupted instead of being repaired silently.
+     */
+    public static Table fromRows(@NonNull List<List<String>> rows) {
+        if (rows.isEmpty()) {
+
+            return new Table(null, new ArrayList<>(), 0);
+        }
+        List<String> header = rows.getFirst() == null ? null : new ArrayList<>(rows.getFirst());
+        int columnCount = rows
+                .stream()
+                .mapToInt(row -> row == null ? 0 : row.size())
+                .max()
+                .orElse(0);
+        int rowCount = rows.size() - 1;
+        List<Column> columns = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            String[] values = new String[rowCount];
+            for (int j = 0; j < rowCount; j++) {
+                List<String> row = rows.get(j + 1);
+                values[j] = row == null || i >= row.size() ? null : row.get(i);
+            }
+            columns.add(new Column(values));
+        }
+
+        return new Table(header, columns, rowCount);
+    }
+
+    /*
+     * Mutators keep the table rectangular and free of nulls, so corruption can
+     * only come from ingested data and is known without scanning the cells.
+     */
+    public boolean isCorrupted() {
+        load();
+
+        return corrupted;
+    }
+
+    /*
+     * Full consistency scan. The result replaces the tracked state.
+     */
+    public boolean verify() {
+        load();
+        corrupted = !isConsistent();
+
+        return !corrupted;
+    }
+
+    /*
+     * Reads the fields only, so that constructors can call it.
+     */
+    private boolean isConsistent() {
+
+        return header != null &&
+                !header.contains(null) &&
+                !(columns.isEmpty() && rowCount > 0) &&
+                header.size() == columns.size() &&
+                columns
+                        .stream()
+                        .noneMatch(column ->
+                                column.size() != slotCount ||
+                                        IntStream
+                                                .range(0, column.size())
+                                                .anyMatch(i -> column.get(i) == null));
+    }
+
+    public boolean hasHeader() {
+        load();
+
+        return header != null;
+    }
+
+    public List<String> getHeader() {
+        load();
+
+        return header == null ? List.of() : Collections.unmodifiableList(header);
+    }
+
+    public int getColumnCount() {
+        load();
+
+        return columns.size();
+    }
+
+    public int getRowCount() {
+        load();
+
+        return rowCount;
+    }
+
+    public Column getColumn(int column) {
+        load();
+
+        return columns.get(column);
+    }
+
+    public int getColumnWidth(int column) {
+        load();
+
+        return Math.max(header.get(column).length(), columns.get(column).width());
+    }
+
+    public int indexOfColumn(@NonNull String columnName) {
+        load();
+
+        return columnIndexes.getOrDefault(columnName, -1);
+    }
+
+    public boolean hasColumn(@NonNull String columnName) {
+        load();
+
+        return columnIndexes.containsKey(columnName);
+    }
+
+    public String getCell(int row, int column) {
+        load();
+
+        return columns.get(column).get(slotOf(row));
+    }
+
+    public void setCell(int row, int column, @NonNull String value) {
+        load();
+        columns.get(column).set(slotOf(row), value);
+        modifications++;
+    }
+
+    public List<String> getRow(int row) {
+        load();
+        int slot = slotOf(row);
+        List<String> values = new ArrayList<>(columns.size());
+        columns.forEach(column -> values.add(column.get(slot)));
+
+        return values;
+    }
+
+    public long getRowId(int row) {
+        load();
+
+        return rowIds[slotOf(row)];
+    }
+
+    /*
+     * Ordinal of the row with the ID, or -1 when there is no such row or it
+     * has been removed.
+     */
+    public int indexOfRowId(long rowId) {
+        load();
+        int slot = Arrays.binarySearch(rowIds, 0, slotCount, rowId);
+        if (slot < 0 || tombstones.get(slot)) {
+
+            return -1;
+        }
+
+        return rowOf(slot);
+    }
+
+    /*
+     * Changes with every change of the header, rows or cells, and is never
+     * shared by two tables, even under the same name. Equal versions of a
+     * table mean equal content within one run; the counters start over in
+     * the next one.
+     */
+    public String getVersion() {
+        load();
+
+        return instance + "." + modifications;
+    }
+
+    /*
+     * Takes a consistent version of the table, to be read without its lock
+     * and closed when done. The caller holds the read lock while taking it.
+     */
+    public TableSnapshot snapshot() {
+        load();
+        Column.Version[] versions = new Column.Version[columns.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = columns.get(i).pin();
+        }
+
+        return new TableSnapshot(
+                Collections.unmodifiableList(new ArrayList<>(getHeader())),
+                versions,
+                rowCount,
+                tombstoneCount == 0 ? new long[0] : tombstones.toLongArray(),
+                getVersion()
+        );
+    }
+
+    public void addRow() {
+        addRows(1);
+    }
+
+    public void addRows(int count) {
+        load();
+        columns.forEach(column -> column.addEmpty(count));
+        if (slotCount + count > rowIds.length) {
+            rowIds = Arrays.copyOf(rowIds, Math.max(slotCount + count, rowIds.length * 2));
+        }
+        for (int i = 0; i < count; i++) {
+            rowIds[slotCount++] = nextRowId++;
+        }
+        rowCount += count;
+        if (rowSlots != null && rowSlots.length < rowCount) {
+            rowSlots = Arrays.copyOf(rowSlots, Math.max(rowCount, rowSlots.length * 2));
+        }
+        modifications++;
+    }
+
+    /*
+     * Leaves a tombstone in the row's slot; the rows after it move up by one.
+     */
+    public void removeRow(int row) {
+        removeRows(new int[]{row});
+    }
+
+    /*
+     * Removes the rows given as ascending distinct ordinals.
+     */
+    public void removeRows(@NonNull int[] rows) {
+        load();
+        if (rows.length == 0) {
+
+            return;
+        }
+        int[] slots = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            slots[i] = slotOf(rows[i]);
+        }
+        for (int slot : slots) {
+            columns.forEach(column -> column.clear(slot));
+            tombstones.set(slot);
+        }
+        tombstoneCount += slots.length;
+        rowCount -= rows.length;
+        modifications++;
+        if (rowSlots == null) {
+            rowSlots = new int[Math.max(16, slotCount)];
+            freshRows = 0;
+        } else {
+            freshRows = Math.min(freshRows, rows[0]);
+        }
+    }
+
+    /*
+     * Undoes addRows(count): drops the last "count" rows, which must not have
+     * been removed, and hands their IDs out again.
+     */
+    public void removeLastRows(int count) {
+        load();
+        int from = slotCount - count;
+        if (count < 0 || from < 0 || tombstones.nextSetBit(from) >= 0) {
+            throw new IllegalArgumentException(String.format("The last %d rows can't be removed.", count));
+        }
+        int[] slots = IntStream.range(from, slotCount).toArray();
+        columns.forEach(column -> column.removeAll(slots));
+        slotCount = from;
+        rowCount -= count;
+        nextRowId -= count;
+        freshRows = Math.min(freshRows, rowCount);
+        modifications++;
+    }
+
+    /*
+     * Undoes removeRows: puts the rows with the IDs back into their slots
+     * with their cells, one list of values per row. The tombstones must not
+     * have been compacted since.
+     */
+    public void restoreRows(@NonNull long[] ids, @NonNull List<List<String>> rows) {
+        load();
+        for (int i = 0; i < ids.length; i++) {
+            int slot = Arrays.binarySearch(rowIds, 0, slotCount, ids[i]);
+            if (slot < 0 || !tombstones.get(slot)) {
+                throw new IllegalArgumentException(String.format("Row %d can't be restored.", ids[i]));
+            }
+            List<String> row = rows.get(i);
+            for (int j = 0; j < columns.size(); j++) {
+                columns.get(j).set(slot, row.get(j));
+            }
+            tombstones.clear(slot);
+        }
+        tombstoneCount -= ids.length;
+        rowCount += ids.length;
+        modifications++;
+        if (rowSlots != null && rowSlots.length < rowCount) {
+            rowSlots = Arrays.copyOf(rowSlots, Math.max(rowCount, rowSlots.length * 2));
+        }
+        freshRows = 0;
+    }
+
+    public int getTombstoneCount() {
+        load();
+
+        return tombstoneCount;
+    }
+
+    /*
+     * True once tombstones fill a quarter of the slots, but not for a few
+     * of them, whose cost is a few cleared cells.
+     */
+    public boolean needsCompaction() {
+        load();
+
+        return tombstoneCount >= MIN_COMPACTED_TOMBSTONES &&
+                tombstoneCount * COMPACTION_RATIO >= slotCount;
+    }
+
+    /*
+     * Drops the tombstones, moving the cells of the rows after them up in
+     * one pass per column. Row ordinals and IDs stay the same.
+     */
+    public void compact() {
+        load();
+        if (tombstoneCount == 0) {
+
+            return;
+        }
+        int[] slots = tombstones.stream().toArray();
+        columns.forEach(column -> column.removeAll(slots));
+        int kept = 0;
+        for (int i = 0; i < slotCount; i++) {
+            if (!tombstones.get(i)) {
+                rowIds[kept++] = rowIds[i];
+            }
+        }
+        slotCount = kept;
+        tombstones.clear();
+        tombstoneCount = 0;
+        rowSlots = null;
+    }
+
+    /*
+     * Replaces the IDs of the rows, e.g. with those read back from a
+     * snapshot. The IDs must be ascending and below "nextRowId".
+     */
+    public void setRowIds(@NonNull long[] ids, long nextRowId) {
+        load();
+        compact();
+        if (ids.length != rowCount) {
+            throw new IllegalArgumentException(String.format("%d row IDs for %d rows.", ids.length, rowCount));
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if ((i > 0 && ids[i] <= ids[i - 1]) || ids[i] >= nextRowId) {
+                throw new IllegalArgumentException("Row IDs must be ascending and below the next row ID.");
+            }
+        }
+        rowIds = Arrays.copyOf(ids, Math.max(16, ids.length));
+        this.nextRowId = nextRowId;
+    }
+
+    public long getNextRowId() {
+        load();
+
+        return nextRowId;
+    }
+
+    public void addColumn(@NonNull String columnName) {
+        load();
+        columnIndexes.putIfAbsent(columnName, header.size());
+        header.add(columnName);
+        columns.add(new Column(slotCount));
+        modifications++;
+    }
+
+    public void removeColumn(int column) {
+        load();
+        header.remove(column);
+        columns.remove(column);
+        indexColumns(column);
+        modifications++;
+    }
+
+    /*
+     * Undoes removeColumn with the removed column's cells.
+     */
+    public void insertColumn(int column, @NonNull String columnName, @NonNull Column cells) {
+        load();
+        if (cells.size() != slotCount) {
+            throw new IllegalArgumentException(String.format("%d cells for %d slots.", cells.size(), slotCount));
+        }
+        header.add(column, columnName);
+        columns.add(column, cells);
+        indexColumns(column);
+        modifications++;
+    }
+
+    public boolean isIndexed(int column) {
+        load();
+
+        return columns.get(column).isIndexed();
+    }
+
+    /*
+     * The index follows every later change of the column and is dropped with it.
+     * It leaves out the tombstones, as removing a row takes it out of the
+     * existing indexes, so building one doesn't move any cells.
+     */
+    public void createIndex(int column) {
+        load();
+        columns.get(column).createIndex(liveSlots());
+    }
+
+    public void dropIndex(int column) {
+        load();
+        columns.get(column).dropIndex();
+    }
+
+    public int[] findRows(int column, String value) {
+        load();
+
+        return toRows(columns.get(column).find(value));
+    }
+
+    public boolean isOrdered(int column) {
+        load();
+
+        return columns.get(column).isOrdered();
+    }
+
+    public void createOrderedIndex(int column) {
+        load();
+        columns.get(column).createOrderedIndex(liveSlots());
+    }
+
+    public void dropOrderedIndex(int column) {
+        load();
+        columns.get(column).dropOrderedIndex();
+    }
+
+    public int[] findRange(int column, String from, boolean fromInclusive, String to, boolean toInclusive) {
+        load();
+
+        return toRows(columns.get(column).range(from, fromInclusive, to, toInclusive));
+    }
+
+    public int[] findWithPrefix(int column, @NonNull String prefix) {
+        load();
+
+        return toRows(columns.get(column).withPrefix(prefix));
+    }
+
+    public int[] sortedRows(int column, boolean descending, int offset, int limit) {
+        load();
+
+        return toRows(columns.get(column).sorted(descending, offset, limit, liveSlots()));
+    }
+
+    public PrimitiveIterator.OfInt sortedIterator(int column, boolean descending) {
+        load();
+        PrimitiveIterator.OfInt slots = columns.get(column).sortedIterator(descending);
+        if (slots == null || tombstoneCount == 0) {
+
+            return slots;
+        }
+
+        return new PrimitiveIterator.OfInt() {
+
+            @Override
+            public boolean hasNext() {
+
+                return slots.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return rowOf(slots.nextInt());
+            }
+
+        };
+    }
+
+    /*
+     * Guards the table for callers that share it between threads. The table
+     * itself does not take the lock; readers hold the read lock and writers
+     * the write lock around every access.
+     */
+    public ReentrantReadWriteLock getLock() {
+
+        return lock;
+    }
+
+    public boolean isLoaded() {
+
+        return loader == null;
+    }
+
+    private void load() {
+        if (loader == null) {
+
+            return;
+        }
+        synchronized (this) {
+            Supplier<Table> pending = loader;
+            if (pending == null) {
+
+                return;
+            }
+            Table table = pending.get();
+            table.load();
+            header = table.header;
+            columns = table.columns;
+            columnIndexes = table.columnIndexes;
+            rowCount = table.rowCount;
+            slotCount = table.slotCount;
+            rowIds = table.rowIds;
+            nextRowId = table.nextRowId;
+            tombstones = table.tombstones;
+            tombstoneCount = table.tombstoneCount;
+            rowSlots = table.rowSlots;
+            freshRows = table.freshRows;
+            corrupted = table.corrupted;
+            loader = null;
+        }
+    }
+
+    /*
+     * Null when every slot holds a row.
+     */
+    private IntPredicate liveSlots() {
+
+        return tombstoneCount == 0 ? null : slot -> !tombstones.get(slot);
+    }
+
+    /*
+     * Without tombstones a row's slot is its ordinal.
+     */
+    private int slotOf(int row) {
+        if (tombstoneCount == 0) {
+
+            return row;
+        }
+        Objects.checkIndex(row, rowCount);
+        if (row >= freshRows) {
+            refreshRowSlots(row);
+        }
+
+        return rowSlots[row];
+    }
+
+    private int rowOf(int slot) {
+        if (tombstoneCount == 0) {
+
+            return slot;
+        }
+        if (rowCount > 0 && rowCount > freshRows) {
+            refreshRowSlots(rowCount - 1);
+        }
+
+        return Arrays.binarySearch(rowSlots, 0, rowCount, slot);
+    }
+
+    /*
+     * Slots of the rows, ascending, dropping the tombstones.
+     */
+    private int[] toRows(int[] slots) {
+        if (tombstoneCount == 0) {
+
+            return slots;
+        }
+
+        return Arrays
+                .stream(slots)
+                .filter(slot -> !tombstones.get(slot))
+                .map(this::rowOf)
+                .toArray();
+    }
+
+    /*
+     * Extends the fresh part of the ordinal-to-slot map up to the row. Readers
+     * sharing the table under its read lock may race on this, hence the lock;
+     * the volatile write of "freshRows" publishes the entries. The map itself
+     * is only resized by writers.
+     */
+    private synchronized void refreshRowSlots(int row) {
+        int fresh = freshRows;
+        if (row < fresh) {
+
+            return;
+        }
+        int slot = fresh == 0 ? 0 : rowSlots[fresh - 1] + 1;
+        for (; fresh <= row; fresh++) {
+            slot = tombstones.nextClearBit(slot);
+            rowSlots[fresh] = slot++;
+        }
+        freshRows = fresh;
+    }
+
+    /*
+     * Ordinals before "from" are unaffected by a change at "from", so only the
+     * tail of the header is indexed again. The first occurrence of a name wins,
+     * as with List.indexOf.
+     */
+    private void indexColumns(int from) {
+        if (header == null) {
+
+            return;
+        }
+        columnIndexes.values().removeIf(index -> index >= from);
+        for (int i = from; i < header.size(); i++) {
+            columnIndexes.putIfAbsent(header.get(i), i);
+        }
+    }
+
+}
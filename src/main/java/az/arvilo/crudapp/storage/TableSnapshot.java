@@ -0,0 +1,114 @@
+package az.arvilo.crudapp.storage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * A consistent, read-only version of a table. It is taken under the table's
+ * read lock and read without it, so a long reader never holds up writers;
+ * the writers copy only the column arrays they overwrite while it is open
+ * (see Column.Version). Closing it releases those versions.
+ *
+ * Rows are mapped to slots through the tombstones as they were: for every
+ * 64-slot word of them, the number of live slots before it.
+ */
+public class TableSnapshot implements AutoCloseable {
+
+    private final List<String> header;
+    private final Column.Version[] columns;
+    private final int rowCount;
+    private final long[] tombstoneWords;
+    private final int[] liveBefore;
+    private final String version;
+
+    TableSnapshot(List<String> header,
+                  Column.Version[] columns,
+                  int rowCount,
+                  long[] tombstoneWords,
+                  String version) {
+        this.header = header;
+        this.columns = columns;
+        this.rowCount = rowCount;
+        if (tombstoneWords.length == 0) {
+            this.tombstoneWords = null;
+            this.liveBefore = null;
+        } else {
+            this.tombstoneWords = tombstoneWords;
+            this.liveBefore = new int[tombstoneWords.length + 1];
+            for (int i = 0; i < tombstoneWords.length; i++) {
+                liveBefore[i + 1] = liveBefore[i] + Long.SIZE - Long.bitCount(tombstoneWords[i]);
+            }
+        }
+        this.version = version;
+    }
+
+    public List<String> getHeader() {
+
+        return header;
+    }
+
+    public int getColumnCount() {
+
+        return columns.length;
+    }
+
+    public int getRowCount() {
+
+        return rowCount;
+    }
+
+    /*
+     * The table's version when the snapshot was taken (see Table.getVersion).
+     */
+    public String getVersion() {
+
+        return version;
+    }
+
+    public int getColumnWidth(int column) {
+
+        return Math.max(header.get(column).length(), columns[column].width());
+    }
+
+    public String getCell(int row, int column) {
+
+        return columns[column].get(slotOf(row));
+    }
+
+    @Override
+    public void close() {
+        Arrays.stream(columns).forEach(Column.Version::release);
+    }
+
+    private int slotOf(int row) {
+        Objects.checkIndex(row, rowCount);
+        if (tombstoneWords == null) {
+
+            return row;
+        }
+        // The last word with at most "row" live slots before it holds the row.
+        int low = 0;
+        int high = tombstoneWords.length;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (liveBefore[middle] <= row) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        int rank = row - liveBefore[low];
+        if (low == tombstoneWords.length) {
+
+            return low * Long.SIZE + rank;
+        }
+        long live = ~tombstoneWords[low];
+        for (int i = 0; i < rank; i++) {
+            live &= live - 1;
+        }
+
+        return low * Long.SIZE + Long.numberOfTrailingZeros(live);
+    }
+
+}
@@ -0,0 +1,170 @@
+package az.arvilo.crudapp;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TerminalTest {
+
+    private static final String CSI = "\u001b[";
+
+    ByteArrayOutputStream bytes;
+    PrintStream out;
+
+    @BeforeEach
+    void createOutput() {
+        bytes = new ByteArrayOutputStream();
+        out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testRepaintsChangedLines() {
+        Terminal terminal = new Terminal(out, Terminal.Mode.ANSI, () -> new Terminal.WindowSize(20, 10));
+        terminal.clear();
+        terminal.append("Table: Users\nAlice\nBob\nChoice: ").flush();
+        assertEquals(CSI + "H" + CSI + "2J" + CSI + "3J" + "Table: Users\r\nAlice\r\nBob\r\nChoice: ", drain());
+
+        // Only the changed line and the prompt, which leaves the cursor in place.
+        terminal.clear();
+        terminal.append("Table: Users\nAlice\nCarol\nChoice: ").flush();
+        assertEquals(CSI + "3;1H" + CSI + "2K" + "Carol" + CSI + "4;1H" + CSI + "J" + "Choice: ", drain());
+
+        // The same screen again repaints the prompt alone.
+        terminal.clear();
+        terminal.append("Table: Users\nAlice\nCarol\nChoice: ").flush();
+        assertEquals(CSI + "4;1H" + CSI + "J" + "Choice: ", drain());
+
+        // A shorter screen erases what was below it.
+        terminal.clear();
+        terminal.append("Table: Users\nChoice: ").flush();
+        assertEquals(CSI + "2;1H" + CSI + "J" + "Choice: ", drain());
+    }
+
+    @Test
+    void testRepaintsBelowLinesThatWrapDifferently() {
+        Terminal terminal = new Terminal(out, Terminal.Mode.ANSI, () -> new Terminal.WindowSize(10, 10));
+        terminal.clear();
+        terminal.append("Title\nshort\nlast\nChoice: ").flush();
+        drain();
+        terminal.clear();
+        terminal.append("Title\nlonger than ten\nlast\nChoice: ").flush();
+        assertEquals(CSI + "2;1H" + CSI + "J" + "longer than ten\r\nlast\r\nChoice: ", drain());
+        // The wrapped line takes rows 2 and 3.
+        terminal.clear();
+        terminal.append("Title\nlonger than 10\nfirst\nChoice: ").flush();
+        assertEquals(
+                CSI + "3;1H" + CSI + "2K" + CSI + "2;1H" + CSI + "2K" + "longer than 10" +
+                        CSI + "4;1H" + CSI + "2K" + "first" +
+                        CSI + "5;1H" + CSI + "J" + "Choice: ",
+                drain());
+    }
+
+    @Test
+    void testFollowsInput() {
+        Terminal terminal = new Terminal(out, Terminal.Mode.ANSI, () -> new Terminal.WindowSize(20, 4));
+        terminal.clear();
+        terminal.append("Path: ").flush();
+        drain();
+        terminal.recordInput("a.csv");
+        // Without a clear the next prompt goes below the echoed input.
+        terminal.append("Table: ").flush();
+        assertEquals(CSI + "2;1H" + CSI + "J" + "Table: ", drain());
+        terminal.recordInput("Users");
+        terminal.clear();
+        terminal.append("Path: a.csv\nTable: Users\nDone").flush();
+        assertEquals(CSI + "3;1H" + CSI + "J" + "Done", drain());
+        // A line break on the last row scrolls the window, so the next screen
+        // is drawn whole.
+        terminal.append("\nB: ").flush();
+        drain();
+        terminal.recordInput("x");
+        terminal.clear();
+        terminal.append("C: ").flush();
+        assertTrue(drain().startsWith(CSI + "H" + CSI + "2J"));
+    }
+
+    @Test
+    void testDrawsWholeScreenWhenItDoesNotFit() {
+        Terminal terminal = new Terminal(out, Terminal.Mode.ANSI, () -> new Terminal.WindowSize(20, 2));
+        terminal.clear();
+        terminal.append("1\n2\n3").flush();
+        drain();
+        // A screen taller than the window is drawn whole every time.
+        terminal.clear();
+        terminal.append("1\n2\n3").flush();
+        assertEquals(CSI + "H" + CSI + "2J" + CSI + "3J" + "1\r\n2\r\n3", drain());
+        // Nor when the window size is unknown.
+        terminal = new Terminal(out, Terminal.Mode.ANSI, () -> null);
+        terminal.append("1").flush();
+        drain();
+        terminal.clear();
+        terminal.append("1").flush();
+        assertEquals(CSI + "H" + CSI + "2J" + CSI + "3J" + "1", drain());
+    }
+
+    @Test
+    void testDrawsWholeScreenAfterResize() {
+        Terminal.WindowSize[] size = {new Terminal.WindowSize(20, 10)};
+        Terminal terminal = new Terminal(out, Terminal.Mode.ANSI, () -> size[0]);
+        terminal.clear();
+        terminal.append("Title\nChoice: ").flush();
+        drain();
+        size[0] = new Terminal.WindowSize(40, 10);
+        terminal.windowResized();
+        terminal.clear();
+        terminal.append("Title\nChoice: ").flush();
+        assertEquals(CSI + "H" + CSI + "2J" + CSI + "3J" + "Title\r\nChoice: ", drain());
+        // At the same size again only the changes are painted.
+        terminal.clear();
+        terminal.append("Title\nChoice: ").flush();
+        assertEquals(CSI + "2;1H" + CSI + "J" + "Choice: ", drain());
+    }
+
+    @Test
+    void testReadsWindowSizeOnlyAfterResize() {
+        int[] reads = {0};
+        Terminal terminal = new Terminal(out, Terminal.Mode.ANSI, () -> {
+            reads[0]++;
+
+            return new Terminal.WindowSize(20, 10);
+        });
+        for (int i = 0; i < 5; i++) {
+            terminal.clear();
+            terminal.append("Screen " + i + "\nChoice: ").flush();
+        }
+        assertEquals(1, reads[0]);
+        terminal.windowResized();
+        terminal.clear();
+        terminal.append("Screen\nChoice: ").flush();
+        terminal.append("More").flush();
+        assertEquals(2, reads[0]);
+    }
+
+    @Test
+    void testPlainText() {
+        Terminal terminal = new Terminal(out, Terminal.Mode.PLAIN, () -> null);
+        terminal.clear();
+        terminal.append("Welcome").flush();
+        terminal.clear();
+        terminal.append("Menu\nChoice: ").flush();
+        terminal.recordInput("1");
+        terminal.append("Name: ").flush();
+        terminal.recordInput("Users");
+        terminal.clear();
+        terminal.append("Done").flush();
+        assertEquals("Welcome\nMenu\nChoice: Name: Done", drain());
+    }
+
+    private String drain() {
+        String text = bytes.toString(StandardCharsets.UTF_8);
+        bytes.reset();
+
+        return text;
+    }
+
+}
@@ -0,0 +1,297 @@
+package az.arvilo.crudapp.http;
+
+import az.arvilo.crudapp.Data;
+import az.arvilo.crudapp.service.Service;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpApiTest {
+
+    Service service;
+    HttpApi api;
+    HttpClient client;
+
+    @BeforeAll
+    static void disableNagle() {
+        // As Main does.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @BeforeEach
+    void startApi() throws IOException {
+        Data.TABLES.clear();
+        service = new Service();
+        api = new HttpApi(service, 0);
+        api.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void stopApi() {
+        client.close();
+        api.close();
+    }
+
+    @Test
+    void testTablesAndRows() throws Exception {
+        HttpResponse<String> created = send("POST", "/tables", "{\"name\": \"Users\", \"columns\": [\"Name\", \"Note\"]}");
+        assertEquals(201, created.statusCode());
+        assertEquals("/tables/Users", created.headers().firstValue("Location").orElseThrow());
+        assertEquals("[\"Users\"]", send("GET", "/tables", null).body());
+
+        HttpResponse<String> added = send(
+                "POST",
+                "/tables/Users/rows",
+                "[{\"Name\": \"Alice\", \"Note\": \"a \\\"quoted\\\"\\nline\"}, {\"Name\": \"Bob\"}]");
+        assertEquals(201, added.statusCode());
+        assertEquals("{\"firstRow\":1,\"rowCount\":2}", added.body());
+        assertEquals("/tables/Users/rows/1", added.headers().firstValue("Location").orElseThrow());
+        assertEquals(List.of("Bob", ""), service.getRow("Users", "2"));
+
+        assertEquals("{\"Name\":\"Alice\",\"Note\":\"a \\\"quoted\\\"\\nline\"}", send("GET", "/tables/Users/rows/1", null).body());
+        assertEquals(204, send("PATCH", "/tables/Users/rows/2", "{\"Note\": \"second\"}").statusCode());
+        assertEquals(204, send("PUT", "/tables/Users/rows/1/Name", "\"Alicia\"").statusCode());
+        HttpResponse<String> table = send("GET", "/tables/Users", null);
+        assertEquals(200, table.statusCode());
+        assertEquals("application/json; charset=utf-8", table.headers().firstValue("Content-Type").orElseThrow());
+        assertEquals(
+                Map.of("columns", List.of("Name", "Note"),
+                        "rows", List.of(List.of("Alicia", "a \"quoted\"\nline"), List.of("Bob", "second"))),
+                Json.parse(table.body()));
+
+        assertEquals(204, send("DELETE", "/tables/Users/rows/1", null).statusCode());
+        assertEquals(List.of("Bob", "second"), service.getRow("Users", "1"));
+        assertEquals(204, send("DELETE", "/tables/Users", null).statusCode());
+        assertEquals(List.of(), service.getTableNames());
+    }
+
+    @Test
+    void testStatusCodes() throws Exception {
+        service.createTable("Users");
+        service.addNewColumn("Users", "Name");
+        service.addNewRow("Users");
+        // Missing tables, rows and routes.
+        assertEquals(404, send("GET", "/tables/Orders", null).statusCode());
+        assertEquals(404, send("GET", "/tables/Users/rows/2", null).statusCode());
+        assertEquals(404, send("GET", "/tables/Users/rows/x", null).statusCode());
+        assertEquals(404, send("DELETE", "/tables/Users/rows/0", null).statusCode());
+        assertEquals(404, send("GET", "/tables/Users/cells", null).statusCode());
+        assertEquals(404, send("GET", "/tablesX", null).statusCode());
+        // Rejected input.
+        HttpResponse<String> duplicate = send("POST", "/tables", "{\"name\": \"Users\"}");
+        assertEquals(400, duplicate.statusCode());
+        assertTrue(duplicate.body().startsWith("{\"error\":"), duplicate.body());
+        assertEquals(400, send("POST", "/tables", "{\"name\": ").statusCode());
+        assertEquals(400, send("POST", "/tables/Users/rows", "{\"Age\": \"3\"}").statusCode());
+        assertEquals(400, send("POST", "/tables/Users/rows", "{\"Name\": true}").statusCode());
+        assertEquals(400, send("PUT", "/tables/Users/rows/1/Name", "[]").statusCode());
+        assertEquals(400, send("PUT", "/tables/Users/rows/1/Age", "\"3\"").statusCode());
+        assertEquals("HTTP/1.1 400 Bad Request", sendRaw("GET /tables/Users%zz HTTP/1.1\r\nHost: localhost\r\n\r\n"));
+        assertEquals(400, send("POST", "/tables/Users/rows", "[".repeat(1 << 20)).statusCode());
+        assertEquals(1, service.getRowCount("Users"));
+        // Methods a resource doesn't take.
+        HttpResponse<String> notAllowed = send("PUT", "/tables", "{}");
+        assertEquals(405, notAllowed.statusCode());
+        assertEquals("GET, POST", notAllowed.headers().firstValue("Allow").orElseThrow());
+    }
+
+    @Test
+    void testUnexpectedErrors() throws Exception {
+        api.close();
+        api = new HttpApi(new Service() {
+            @Override
+            public List<String> getTableNames() {
+                throw new IllegalStateException("Broken.");
+            }
+        }, 0);
+        api.start();
+        HttpResponse<String> response = send("GET", "/tables", null);
+        assertEquals(500, response.statusCode());
+        assertEquals("{\"error\":\"Internal error.\"}", response.body());
+    }
+
+    @Test
+    void testEncodedNames() throws Exception {
+        assertEquals(201, send("POST", "/tables", "{\"name\": \"My Table+1\", \"columns\": [\"Full Name\"]}").statusCode());
+        assertEquals(201, send("POST", "/tables/My%20Table+1/rows", "{\"Full Name\": \"Alice\"}").statusCode());
+        assertEquals(204, send("PUT", "/tables/My%20Table+1/rows/1/Full%20Name", "\"Bob\"").statusCode());
+        assertEquals(List.of("Bob"), service.getRow("My Table+1", "1"));
+    }
+
+    /*
+     * A poll with the ETag of the last read gets 304 until the table changes.
+     */
+    @Test
+    void testConditionalReads() throws Exception {
+        service.createTable("Users");
+        service.addNewColumn("Users", "Name");
+        service.addNewRow("Users");
+        HttpResponse<String> first = send("GET", "/tables/Users", null);
+        String tag = first.headers().firstValue("ETag").orElseThrow();
+        HttpResponse<String> unchanged = get("/tables/Users", tag);
+        assertEquals(304, unchanged.statusCode());
+        assertEquals("", unchanged.body());
+        assertEquals(304, get("/tables/Users/rows/1", tag).statusCode());
+
+        service.updateCell("Users", "1", "Name", "Alice");
+        HttpResponse<String> changed = get("/tables/Users", tag);
+        assertEquals(200, changed.statusCode());
+        assertNotEquals(tag, changed.headers().firstValue("ETag").orElseThrow());
+
+        // A table of the same name created later doesn't share versions.
+        service.dropTable("Users");
+        service.createTable("Users");
+        assertNotEquals(tag, send("GET", "/tables/Users", null).headers().firstValue("ETag").orElseThrow());
+    }
+
+    /*
+     * Table versions start over when tables are reloaded, so a tag from an
+     * earlier server must not match one of a later server.
+     */
+    @Test
+    void testTagsDifferAcrossServers() throws Exception {
+        service.createTable("Users");
+        service.addNewColumn("Users", "Name");
+        String tag = send("GET", "/tables/Users", null).headers().firstValue("ETag").orElseThrow();
+        api.close();
+        service = new Service();
+        api = new HttpApi(service, 0);
+        api.start();
+        HttpResponse<String> response = get("/tables/Users", tag);
+        assertEquals(200, response.statusCode());
+        assertNotEquals(tag, response.headers().firstValue("ETag").orElseThrow());
+    }
+
+    @Test
+    void testStreamsLargeTables() throws Exception {
+        int rowCount = 200_000;
+        service.createTable("Numbers");
+        service.addNewColumns("Numbers", List.of("Value", "Square"));
+        List<List<String>> rows = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            rows.add(List.of(String.valueOf(i), String.valueOf((long) i * i)));
+        }
+        service.addRows("Numbers", rows);
+        HttpResponse<InputStream> response = client.send(
+                request("/tables/Numbers").GET().build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Length").isEmpty());
+        String body;
+        try (InputStream in = response.body()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        List<?> parsed = (List<?>) ((Map<?, ?>) Json.parse(body)).get("rows");
+        assertEquals(rowCount, parsed.size());
+        assertEquals(List.of("199999", "39999600001"), parsed.getLast());
+    }
+
+    /*
+     * Many dashboards poll while rows are added; every poll is answered with
+     * the whole table or 304.
+     */
+    @Test
+    void testConcurrentPolling() throws Exception {
+        service.createTable("Events");
+        service.addNewColumn("Events", "Name");
+        int pollers = 100;
+        int polls = 10;
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> writer = threads.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    assertEquals(201, send("POST", "/tables/Events/rows", "{\"Name\": \"e" + i + "\"}").statusCode());
+                }
+                return null;
+            });
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < pollers; i++) {
+                futures.add(threads.submit(() -> {
+                    String tag = null;
+                    for (int j = 0; j < polls; j++) {
+                        long start = System.nanoTime();
+                        HttpResponse<String> response = get("/tables/Events", tag);
+                        latencies.add(System.nanoTime() - start);
+                        if (response.statusCode() == 200) {
+                            tag = response.headers().firstValue("ETag").orElseThrow();
+                            assertInstanceOf(Map.class, Json.parse(response.body()));
+                        } else {
+                            assertEquals(304, response.statusCode());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            writer.get(60, TimeUnit.SECONDS);
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }
+        assertEquals(100, service.getRowCount("Events"));
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99Millis = TimeUnit.NANOSECONDS.toMillis(sorted.get(sorted.size() * 99 / 100));
+        // A loose bound, as in LineServerTest.
+        assertTrue(p99Millis < 10_000, () -> String.format("p99 latency %d ms", p99Millis));
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest.BodyPublisher publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body);
+
+        return client.send(request(path).method(method, publisher).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path, String tag) throws Exception {
+        HttpRequest.Builder builder = request(path).GET();
+        if (tag != null) {
+            builder.header("If-None-Match", tag);
+        }
+
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /*
+     * The status line of the answer to a request the client won't send.
+     */
+    private String sendRaw(String request) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), api.getPort())) {
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+
+            return in.readLine();
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + api.getPort() + path));
+    }
+
+}
@@ -0,0 +1,98 @@
+package az.arvilo.crudapp.io;
+
+import az.arvilo.crudapp.Data;
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.service.Service;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordWriterTest {
+
+    Service service;
+
+    public RecordWriterTest() {
+        service = new Service();
+    }
+
+    @BeforeEach
+    void clearTables() {
+        Data.TABLES.clear();
+    }
+
+    @Test
+    void testExportTable(@TempDir Path directory) throws Exception {
+        service.createTable("Users");
+        service.addNewColumns("Users", List.of("Name", "Note \"quoted\""));
+        service.addRows("Users", List.of(
+                List.of("Anar", "a, b"),
+                List.of("Leyla", "line\nbreak \"x\" \\ \t\u0001"),
+                List.of("Kamal", "")
+        ));
+        Path csv = directory.resolve("users.csv");
+        assertEquals(3, service.exportTable("Users", csv, ExportFormat.of(csv)));
+        assertEquals("""
+                        Name,"Note ""quoted\"\""
+                        Anar,"a, b"
+                        Leyla,"line
+                        break ""x"" \\ \t\u0001"
+                        Kamal,
+                        """,
+                Files.readString(csv));
+        Path jsonLines = directory.resolve("users.jsonl");
+        assertEquals(3, service.exportTable("Users", jsonLines, ExportFormat.of(jsonLines)));
+        assertEquals("""
+                        {"Name":"Anar","Note \\"quoted\\"":"a, b"}
+                        {"Name":"Leyla","Note \\"quoted\\"":"line\\nbreak \\"x\\" \\\\ \\t\\u0001"}
+                        {"Name":"Kamal","Note \\"quoted\\"":""}
+                        """,
+                Files.readString(jsonLines));
+        // The CSV reads back into the same rows.
+        TableImporter.importFile(service, "Copy", csv);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Data.TABLES.get("Users").getRow(i), Data.TABLES.get("Copy").getRow(i));
+        }
+        assertThrows(InvalidInputException.class, () -> service.exportTable("Orders", csv, ExportFormat.CSV));
+    }
+
+    @Test
+    void testProgressAndLargeOutput(@TempDir Path directory) throws Exception {
+        service.createTable("Numbers");
+        service.addNewColumns("Numbers", List.of("Value"));
+        List<List<String>> rows = new ArrayList<>();
+        for (int i = 0; i < 150_000; i++) {
+            // Every tenth row is empty, and multi-byte text spans buffer ends.
+            rows.add(List.of(i % 10 == 0 ? "" : "ş" + i));
+        }
+        service.addRows("Numbers", rows);
+        List<Long> progress = new ArrayList<>();
+        Path csv = directory.resolve("numbers.csv");
+        assertEquals(150_000, service.exportTable("Numbers", csv, ExportFormat.CSV, progress::add));
+        assertEquals(List.of(65_536L, 131_072L, 150_000L), progress);
+        List<String> lines = Files.readAllLines(csv);
+        assertEquals(150_001, lines.size());
+        assertEquals("\"\"", lines.get(1));
+        assertEquals("ş149999", lines.get(150_000));
+        TableImporter.importFile(service, "Copy", csv);
+        assertEquals(150_000, service.getRowCount("Copy"));
+        assertEquals("", Data.TABLES.get("Copy").getCell(149_990, 0));
+        assertEquals("ş149999", Data.TABLES.get("Copy").getCell(149_999, 0));
+        // A query result is exported the same way.
+        Path jsonLines = directory.resolve("top.jsonl");
+        service.exportQueryResult(
+                service.query("SELECT Value FROM Numbers WHERE Value ^= ş1499 ORDER BY Value DESC LIMIT 2"),
+                jsonLines,
+                ExportFormat.JSON_LINES,
+                rowCount -> {
+                });
+        assertEquals("{\"Value\":\"ş149999\"}\n{\"Value\":\"ş149998\"}\n", Files.readString(jsonLines));
+    }
+
+}
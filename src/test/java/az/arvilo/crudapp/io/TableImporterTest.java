@@ -0,0 +1,139 @@
+package az.arvilo.crudapp.io;
+
+import az.arvilo.crudapp.Data;
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.service.Service;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableImporterTest {
+
+    Service service;
+
+    public TableImporterTest() {
+        service = new Service();
+    }
+
+    @BeforeEach
+    void clearTables() {
+        Data.TABLES.clear();
+    }
+
+    @Test
+    void testImportCsv(@TempDir Path directory) throws Exception {
+        Path path = directory.resolve("users.csv");
+        Files.writeString(path, """
+                Name,City,Note\r
+                Anar,Baku,"says ""hi"", then\r
+                leaves"\r
+                \r
+                Leyla,,\r
+                Kamal,Ganja,\"\"\"\"""");
+        assertEquals(3, TableImporter.importFile(service, "Users", path));
+        assertEquals(List.of("Name", "City", "Note"), service.getColumnNames("Users"));
+        assertEquals(3, service.getRowCount("Users"));
+        assertEquals(
+                "Anar | Baku | says \"hi\", then\r\nleaves",
+                String.join(" | ", Data.TABLES.get("Users").getRow(0)));
+        assertEquals("Leyla |  | ", String.join(" | ", Data.TABLES.get("Users").getRow(1)));
+        assertEquals("Kamal | Ganja | \"", String.join(" | ", Data.TABLES.get("Users").getRow(2)));
+        // An existing table with the same header is appended to.
+        Path more = directory.resolve("more.tsv");
+        Files.writeString(more, "Name\tCity\tNote\nRauf\tSumqayit\t\"as is\"\n");
+        assertEquals(1, TableImporter.importFile(service, "Users", more));
+        assertEquals("\"as is\"", Data.TABLES.get("Users").getCell(3, 2));
+        Files.writeString(more, "Name\tTown\tNote\nRauf\tSumqayit\t\n");
+        assertThrows(InvalidInputException.class, () -> TableImporter.importFile(service, "Users", more));
+        assertEquals(4, service.getRowCount("Users"));
+    }
+
+    @Test
+    void testChunksInParallel() throws Exception {
+        StringBuilder text = new StringBuilder("ID,Text\n");
+        for (int i = 0; i < 2000; i++) {
+            text.append(i).append(i % 7 == 0 ? ",\"multi\nline, quoted\"\n" : ",plain\n");
+        }
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            // Chunks far smaller than the text cut it at many record boundaries.
+            assertEquals(2000, TableImporter.importRecords(
+                    service, "Sequential", new StringReader(text.toString()), TextFormat.CSV, null, 64));
+            assertEquals(2000, TableImporter.importRecords(
+                    service, "Parallel", new StringReader(text.toString()), TextFormat.CSV, pool, 64));
+        } finally {
+            pool.shutdown();
+        }
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(String.valueOf(i), Data.TABLES.get("Parallel").getCell(i, 0));
+            assertEquals(Data.TABLES.get("Sequential").getRow(i), Data.TABLES.get("Parallel").getRow(i));
+        }
+        assertEquals("multi\nline, quoted", Data.TABLES.get("Parallel").getCell(1995, 1));
+    }
+
+    /*
+     * A quote inside an unquoted field is text, for the chunking as for the
+     * parser, so the result doesn't depend on where chunks are cut.
+     */
+    @Test
+    void testStrayQuotes() throws Exception {
+        StringBuilder text = new StringBuilder("Name,Height\n");
+        for (int i = 0; i < 200; i++) {
+            text.append(i % 5 == 0 ? "a,5'11\"\n" : i % 5 == 1 ? "x,\"quoted\nfield\"\n" : "plain,1\n");
+        }
+        for (int chunkSize : new int[]{16, 64, 1 << 20}) {
+            String tableName = "Chunks" + chunkSize;
+            assertEquals(200, TableImporter.importRecords(
+                    service, tableName, new StringReader(text.toString()), TextFormat.CSV, null, chunkSize));
+            assertEquals(List.of("a", "5'11\""), Data.TABLES.get(tableName).getRow(0));
+            assertEquals(List.of("x", "quoted\nfield"), Data.TABLES.get(tableName).getRow(196));
+        }
+    }
+
+    @Test
+    void testInvalidInput() throws Exception {
+        // An invalid header leaves no table behind.
+        assertThrows(InvalidInputException.class, () -> TableImporter.importRecords(
+                service, "Users", new StringReader("Name,Name\na,b\n"), TextFormat.CSV, null, 64));
+        assertFalse(service.getTableNames().contains("Users"));
+        assertThrows(InvalidInputException.class, () -> TableImporter.importRecords(
+                service, "Users", new StringReader(""), TextFormat.CSV, null, 64));
+        try {
+            TableImporter.importRecords(
+                    service, "Users", new StringReader("Name,City\na,b\nc\n"), TextFormat.CSV, null, 64);
+            fail();
+        } catch (InvalidInputException e) {
+            assertEquals("Line 3 has 1 fields, 2 expected.", e.getMessage());
+        }
+        Data.TABLES.clear();
+        try {
+            TableImporter.importRecords(
+                    service, "Users", new StringReader("Name\n\"a\"b\n"), TextFormat.CSV, null, 64);
+            fail();
+        } catch (InvalidInputException e) {
+            assertEquals("Line 2: unexpected b after a closing quote.", e.getMessage());
+        }
+        Data.TABLES.clear();
+        try {
+            TableImporter.importRecords(
+                    service, "Users", new StringReader("Name\n\"a\n"), TextFormat.CSV, null, 64);
+            fail();
+        } catch (InvalidInputException e) {
+            assertEquals("Line 2: unclosed quote.", e.getMessage());
+        }
+        // Values are validated like updateCell, once per batch.
+        Data.TABLES.clear();
+        assertThrows(InvalidInputException.class, () -> TableImporter.importRecords(
+                service, "Users", new StringReader("Name\nok\n bad\n"), TextFormat.CSV, null, 64));
+        assertEquals(0, service.getRowCount("Users"));
+    }
+
+}
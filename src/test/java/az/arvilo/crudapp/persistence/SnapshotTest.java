@@ -0,0 +1,104 @@
+package az.arvilo.crudapp.persistence;
+
+import az.arvilo.crudapp.Data;
+import az.arvilo.crudapp.exception.DataBaseCorruptException;
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.service.Service;
+import az.arvilo.crudapp.storage.Table;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    Service service = new Service();
+
+    @BeforeEach
+    void clearTables() {
+        Data.TABLES.clear();
+    }
+
+    @Test
+    void testWriteAndLoad() throws Exception {
+        service.createTable("Users");
+        service.addNewColumn("Users", "ID");
+        service.addNewColumn("Users", "Name");
+        service.addNewRow("Users");
+        service.addNewRow("Users");
+        service.updateCell("Users", "1", "ID", "1");
+        service.updateCell("Users", "1", "Name", "Əli Ünal");
+        service.updateCell("Users", "2", "Name", "x".repeat(100_000));
+        service.createIndex("Users", "Name");
+        service.createOrderedIndex("Users", "ID");
+        service.createTable("Empty");
+        List<List<String>> corrupted = new ArrayList<>();
+        corrupted.add(new ArrayList<>(List.of("A")));
+        corrupted.add(new ArrayList<>(List.of("1", "2")));
+        Data.TABLES.put("Corrupted", Table.fromRows(corrupted));
+        String users = service.renderTable("Users", true);
+        Path path = directory.resolve("crudapp.snapshot");
+        Snapshot.write(path, Data.TABLES, 7);
+        assertFalse(Files.exists(directory.resolve("crudapp.snapshot.tmp")));
+        clearTables();
+        assertEquals(7, Snapshot.load(path, Data.TABLES));
+        assertEquals(3, service.getTableNames().size());
+        // Tables are decoded on first access only.
+        assertFalse(Data.TABLES.get("Users").isLoaded());
+        assertFalse(Data.TABLES.get("Empty").isLoaded());
+        assertEquals(users, service.renderTable("Users", true));
+        assertTrue(Data.TABLES.get("Users").isLoaded());
+        assertFalse(Data.TABLES.get("Empty").isLoaded());
+        assertEquals("Empty table.", service.renderTable("Empty", false));
+        assertThrows(DataBaseCorruptException.class, () -> service.renderTable("Corrupted", false));
+        assertTrue(Data.TABLES.get("Users").isIndexed(1));
+        assertFalse(Data.TABLES.get("Users").isIndexed(0));
+        assertTrue(Data.TABLES.get("Users").isOrdered(0));
+        assertEquals(List.of(2, 1), service.getSortedRows("Users", "ID", false, 0, 2));
+        assertEquals(List.of(1), service.findRows("Users", "Name", "Əli Ünal"));
+        // Loaded tables stay writable.
+        service.addNewRow("Users");
+        service.updateCell("Users", "3", "ID", "3");
+        assertEquals("3", Data.TABLES.get("Users").getCell(2, 0));
+    }
+
+    @Test
+    void testRowIds() throws Exception {
+        service.createTable("Users");
+        service.addNewColumn("Users", "Name");
+        service.addRows("Users", List.of(List.of("Alice"), List.of("Bob"), List.of("Carol")));
+        service.deleteRow("Users", "3");
+        service.deleteRow("Users", "1");
+        long bob = service.getRowId("Users", "1");
+        Path path = directory.resolve("ids.snapshot");
+        Snapshot.write(path, Data.TABLES, 0);
+        clearTables();
+        Snapshot.load(path, Data.TABLES);
+        // Removed rows are not written, and the IDs come back with the rows.
+        assertEquals(0, Data.TABLES.get("Users").getTombstoneCount());
+        assertEquals(1, service.getRowNumber("Users", bob));
+        // IDs of removed rows are not reused after a reload.
+        service.addNewRow("Users");
+        assertEquals(4, service.getRowId("Users", "2"));
+    }
+
+    @Test
+    void testInvalidFile() throws Exception {
+        Path path = directory.resolve("invalid.snapshot");
+        Files.write(path, new byte[]{1, 2, 3});
+        assertThrows(java.io.IOException.class, () -> Snapshot.load(path, Data.TABLES));
+        Files.write(path, new byte[64]);
+        assertThrows(java.io.IOException.class, () -> Snapshot.load(path, Data.TABLES));
+        assertTrue(Data.TABLES.isEmpty());
+    }
+
+}
@@ -0,0 +1,211 @@
+package az.arvilo.crudapp.persistence;
+
+import az.arvilo.crudapp.Data;
+import az.arvilo.crudapp.exception.DataBaseCorruptException;
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.service.CellUpdate;
+import az.arvilo.crudapp.service.Service;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void clearTables() {
+        Data.TABLES.clear();
+    }
+
+    @Test
+    void testReplay() throws Exception {
+        for (FsyncPolicy fsyncPolicy : FsyncPolicy.values()) {
+            Path path = directory.resolve(fsyncPolicy + ".wal");
+            String rendered;
+            try (WriteAheadLog writeAheadLog = new WriteAheadLog(path, fsyncPolicy, 5, 0)) {
+                Service service = new Service(writeAheadLog);
+                fillTables(service);
+                // Rejected operations are not logged.
+                assertThrows(InvalidInputException.class, () -> service.createTable("Users"));
+                assertThrows(InvalidInputException.class, () -> service.deleteRow("Users", "9"));
+                rendered = service.renderTable("Users", true);
+            }
+            clearTables();
+            Service service = new Service();
+            List<LogRecord> records = replay(path, service);
+            assertEquals(12, records.size());
+            assertEquals(Operation.CREATE_TABLE, records.getFirst().operation());
+            assertEquals(List.of("Users", "2", "Name", "Bob"), records.get(7).arguments());
+            assertEquals(rendered, service.renderTable("Users", true));
+            assertEquals(2, service.getTableNames().size());
+            clearTables();
+        }
+    }
+
+    @Test
+    void testBulkReplay() throws Exception {
+        Path path = directory.resolve("bulk.wal");
+        String rendered;
+        try (WriteAheadLog writeAheadLog = new WriteAheadLog(path, FsyncPolicy.EVERY_OPERATION, 0, 0)) {
+            Service service = new Service(writeAheadLog);
+            service.createTable("Users");
+            service.addNewColumn("Users", "ID");
+            service.addNewColumn("Users", "Name");
+            service.addRows("Users", 2);
+            service.addRows("Users", List.of(List.of("3", "Carol"), List.of("4", "")));
+            service.updateCells("Users", List.of(
+                    new CellUpdate(1, "Name", "Alice"),
+                    new CellUpdate(2, "Name", "Bob")
+            ));
+            service.deleteRows("Users", List.of(2, 4));
+            rendered = service.renderTable("Users", true);
+        }
+        clearTables();
+        Service service = new Service();
+        List<LogRecord> records = replay(path, service);
+        // Each batch is a single record.
+        assertEquals(7, records.size());
+        assertEquals(List.of("Users", "2", "3", "Carol", "4", ""), records.get(4).arguments());
+        assertEquals(List.of("Users", "2", "4"), records.get(6).arguments());
+        assertEquals(rendered, service.renderTable("Users", true));
+        assertEquals(2, service.getRowCount("Users"));
+    }
+
+    @Test
+    void testTransactionReplay() throws Exception {
+        Path path = directory.resolve("transaction.wal");
+        String rendered;
+        try (WriteAheadLog writeAheadLog = new WriteAheadLog(path, FsyncPolicy.EVERY_OPERATION, 0, 0)) {
+            Service service = new Service(writeAheadLog);
+            service.createTable("Users");
+            service.inTransaction(List.of("Users"), () -> {
+                service.addNewColumns("Users", List.of("ID", "Name"));
+                service.addRows("Users", List.of(List.of("1", "Alice"), List.of("2", "Bob")));
+                service.deleteRow("Users", "1");
+            });
+            // Rolled back changes are not logged.
+            service.begin();
+            service.dropTable("Users");
+            service.rollback();
+            rendered = service.renderTable("Users", true);
+        }
+        clearTables();
+        Service service = new Service();
+        List<LogRecord> records = replay(path, service);
+        // The committed transaction is a single record.
+        assertEquals(2, records.size());
+        assertEquals(Operation.TRANSACTION, records.get(1).operation());
+        assertEquals(
+                List.of("6", "2", "Users", "ID",
+                        "6", "2", "Users", "Name",
+                        "12", "6", "Users", "2", "1", "Alice", "2", "Bob",
+                        "5", "2", "Users", "1"),
+                records.get(1).arguments());
+        assertEquals(rendered, service.renderTable("Users", true));
+        assertFalse(service.isInTransaction());
+    }
+
+    @Test
+    void testTornTailIsTruncated() throws Exception {
+        Path path = directory.resolve("torn.wal");
+        try (WriteAheadLog writeAheadLog = new WriteAheadLog(path, FsyncPolicy.OS_MANAGED, 0, 0)) {
+            fillTables(new Service(writeAheadLog));
+        }
+        long validLength = Files.size(path);
+        // A crash in the middle of an append leaves a partial record behind.
+        Files.write(path, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+        clearTables();
+        assertEquals(12, replay(path, new Service()).size());
+        assertEquals(validLength, Files.size(path));
+        // New records follow the last valid one.
+        try (WriteAheadLog writeAheadLog = new WriteAheadLog(path, FsyncPolicy.EVERY_OPERATION, 0, 0)) {
+            new Service(writeAheadLog).dropTable("Orders");
+        }
+        clearTables();
+        Service service = new Service();
+        assertEquals(13, replay(path, service).size());
+        assertEquals(List.of("Users"), service.getTableNames());
+        // A record with a bad checksum ends the log as well.
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(path, bytes);
+        clearTables();
+        assertEquals(12, replay(path, new Service()).size());
+        // A log of another epoch is discarded when it is opened.
+        assertEquals(0, WriteAheadLog.readEpoch(path));
+        new WriteAheadLog(path, FsyncPolicy.EVERY_OPERATION, 0, 1).close();
+        assertEquals(1, WriteAheadLog.readEpoch(path));
+        assertEquals(0, replay(path, new Service()).size());
+    }
+
+    /*
+     * After a checkpoint the log continues the new snapshot; started without
+     * that snapshot, the log is neither replayed nor wiped.
+     */
+    @Test
+    void testLogWithoutItsSnapshot() throws Exception {
+        Path path = directory.resolve("checkpointed.wal");
+        try (WriteAheadLog writeAheadLog = new WriteAheadLog(path, FsyncPolicy.EVERY_OPERATION, 0, 1)) {
+            fillTables(new Service(writeAheadLog));
+        }
+        long length = Files.size(path);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> WriteAheadLog.continues(path, 0));
+        assertTrue(e.getMessage().contains("epoch 1") && e.getMessage().contains("epoch 0"), e.getMessage());
+        assertThrows(
+                IllegalStateException.class,
+                () -> new WriteAheadLog(path, FsyncPolicy.EVERY_OPERATION, 0, 0));
+        assertThrows(
+                IllegalStateException.class,
+                () -> new WriteAheadLog(path, FsyncPolicy.EVERY_OPERATION, 0, 3));
+        assertEquals(length, Files.size(path));
+        // With its snapshot it is replayed; with the next one it is known to be
+        // folded in, and discarded.
+        assertTrue(WriteAheadLog.continues(path, 1));
+        assertFalse(WriteAheadLog.continues(path, 2));
+        assertFalse(WriteAheadLog.continues(directory.resolve("missing.wal"), 0));
+        new WriteAheadLog(path, FsyncPolicy.EVERY_OPERATION, 0, 2).close();
+        assertEquals(0, replay(path, new Service()).size());
+    }
+
+    private void fillTables(Service service)
+            throws InvalidInputException, DataBaseCorruptException {
+        service.createTable("Users");
+        service.addNewColumn("Users", "ID");
+        service.addNewColumn("Users", "Name");
+        service.addNewRow("Users");
+        service.addNewRow("Users");
+        service.updateCell("Users", "1", "Name", "Alice");
+        service.updateCell("Users", "2", "ID", "2");
+        service.updateCell("Users", "2", "Name", "Bob");
+        service.deleteRow("Users", "1");
+        service.addNewColumn("Users", "Note");
+        service.deleteColumn("Users", "Note");
+        service.createTable("Orders");
+    }
+
+    private List<LogRecord> replay(Path path, Service service) throws IOException {
+        List<LogRecord> records = new ArrayList<>();
+        WriteAheadLog.replay(path, record -> {
+            records.add(record);
+            try {
+                service.apply(record);
+            } catch (InvalidInputException | DataBaseCorruptException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        return records;
+    }
+
+}
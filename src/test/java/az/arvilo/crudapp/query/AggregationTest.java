@@ -0,0 +1,156 @@
+package az.arvilo.crudapp.query;
+
+import az.arvilo.crudapp.Data;
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.service.Service;
+import az.arvilo.crudapp.storage.Table;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AggregationTest {
+
+    Service service = new Service();
+
+    @BeforeEach
+    void fillTables() throws Exception {
+        Data.TABLES.clear();
+        service.createTable("Orders");
+        service.addNewColumn("Orders", "City");
+        service.addNewColumn("Orders", "Product");
+        service.addNewColumn("Orders", "Amount");
+        List<List<String>> rows = List.of(
+                List.of("Baku", "Tea", "10"),
+                List.of("Ganja", "Tea", "4.5"),
+                List.of("Baku", "Coffee", "7"),
+                List.of("Baku", "Tea", "n/a"),
+                List.of("Quba", "Coffee", "-2"),
+                List.of("Ganja", "Tea", "1e1"),
+                List.of("Baku", "", "3")
+        );
+        for (int i = 0; i < rows.size(); i++) {
+            service.addNewRow("Orders");
+            service.updateCell("Orders", String.valueOf(i + 1), "City", rows.get(i).get(0));
+            if (!rows.get(i).get(1).isEmpty()) {
+                service.updateCell("Orders", String.valueOf(i + 1), "Product", rows.get(i).get(1));
+            }
+            service.updateCell("Orders", String.valueOf(i + 1), "Amount", rows.get(i).get(2));
+        }
+    }
+
+    @Test
+    void testAggregatesWithoutGroups() throws Exception {
+        QueryResult result = service.query(
+                "SELECT COUNT(*), COUNT(Product), COUNT(DISTINCT Product), MIN(Amount), MAX(Amount), " +
+                        "SUM(Amount), AVG(Amount) FROM Orders"
+        );
+        assertEquals(List.of(
+                "COUNT(*)",
+                "COUNT(Product)",
+                "COUNT(DISTINCT Product)",
+                "MIN(Amount)",
+                "MAX(Amount)",
+                "SUM(Amount)",
+                "AVG(Amount)"
+        ), result.header());
+        assertEquals(List.of(List.of("7", "6", "2", "-2", "10", "32.5", "5.416666666666667")), result.rows());
+        // One group even when no row matches.
+        result = service.query("SELECT COUNT(*), SUM(Amount) FROM Orders WHERE City = Shaki");
+        assertEquals(List.of(List.of("0", "")), result.rows());
+    }
+
+    @Test
+    void testGroupBy() throws Exception {
+        QueryResult result = service.query(
+                "SELECT City, COUNT(*), SUM(Amount) FROM Orders GROUP BY City ORDER BY COUNT(*) DESC"
+        );
+        assertEquals(List.of("City", "COUNT(*)", "SUM(Amount)"), result.header());
+        assertEquals(List.of(
+                List.of("Baku", "4", "20"),
+                List.of("Ganja", "2", "14.5"),
+                List.of("Quba", "1", "-2")
+        ), result.rows());
+        assertEquals(List.of(1, 2, 3), result.rowNumbers());
+        result = service.query(
+                "SELECT Product, City, MAX(Amount) FROM Orders WHERE Product != '' " +
+                        "GROUP BY City, Product ORDER BY 'MAX(Amount)' LIMIT 2"
+        );
+        assertEquals(List.of(
+                List.of("Coffee", "Quba", "-2"),
+                List.of("Coffee", "Baku", "7")
+        ), result.rows());
+        // Grouping columns only.
+        result = service.query("SELECT * FROM Orders GROUP BY Product ORDER BY Product");
+        assertEquals(List.of(List.of(""), List.of("Coffee"), List.of("Tea")), result.rows());
+        String expected = String.join("\n",
+                "     ==================",
+                "     |Product|COUNT(*)|",
+                "     ==================",
+                "1 -> |Tea    |4       |",
+                "     |-------+--------|",
+                "2 -> |Coffee |2       |",
+                "     |-------+--------|",
+                "3 -> |       |1       |",
+                "     =================="
+        );
+        result = service.query("SELECT Product, COUNT(*) FROM Orders GROUP BY Product");
+        assertEquals(expected, service.renderQueryResult(result, true));
+    }
+
+    @Test
+    void testManyGroups() throws Exception {
+        Table table = new Table();
+        table.addColumn("A");
+        table.addColumn("B");
+        table.addColumn("Value");
+        int rowCount = 200_000;
+        for (int i = 0; i < rowCount; i++) {
+            table.addRow();
+            table.setCell(i, 0, String.valueOf(i % 500));
+            table.setCell(i, 1, String.valueOf(i % 7));
+            table.setCell(i, 2, "1");
+        }
+        Query query = new Query("Big")
+                .select("A", "B")
+                .aggregate(AggregateFunction.SUM, "Value")
+                .groupBy("A", "B");
+        QueryResult result = QueryPipeline.execute(query, table);
+        assertEquals(3500, result.rows().size());
+        long total = result
+                .rows()
+                .stream()
+                .mapToLong(row -> Long.parseLong(row.get(2)))
+                .sum();
+        assertEquals(rowCount, total);
+        assertEquals(List.of("0", "0", String.valueOf(rowCount / 3500 + 1)), result.rows().getFirst());
+    }
+
+    @Test
+    void testInvalidAggregates() {
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT City, COUNT(*) FROM Orders"));
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT SUM(*) FROM Orders"));
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT MEDIAN(Amount) FROM Orders"));
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT SUM(Price) FROM Orders"));
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT COUNT(City FROM Orders"));
+        assertThrows(InvalidInputException.class,
+                () -> service.query("SELECT COUNT(*) FROM Orders ORDER BY City"));
+    }
+
+    @Test
+    void testParseNumber() {
+        assertEquals(12, Aggregation.parseNumber("12"));
+        assertEquals(-3.5, Aggregation.parseNumber("-3.5"));
+        assertEquals(1e6, Aggregation.parseNumber("1e6"));
+        assertEquals(0.5, Aggregation.parseNumber(".5"));
+        assertTrue(Double.isNaN(Aggregation.parseNumber("")));
+        assertTrue(Double.isNaN(Aggregation.parseNumber("-")));
+        assertTrue(Double.isNaN(Aggregation.parseNumber("1.2.3")));
+        assertTrue(Double.isNaN(Aggregation.parseNumber("1e")));
+        assertTrue(Double.isNaN(Aggregation.parseNumber("NaN")));
+        assertTrue(Double.isNaN(Aggregation.parseNumber("12abc")));
+    }
+
+}
@@ -0,0 +1,188 @@
+package az.arvilo.crudapp.query;
+
+import az.arvilo.crudapp.Data;
+import az.arvilo.crudapp.exception.DataBaseCorruptException;
+import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.service.Service;
+import az.arvilo.crudapp.storage.Table;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryPipelineTest {
+
+    Service service = new Service();
+
+    @BeforeEach
+    void fillTables() throws Exception {
+        Data.TABLES.clear();
+        service.createTable("Users");
+        service.addNewColumn("Users", "Name");
+        service.addNewColumn("Users", "City");
+        service.addNewColumn("Users", "Age");
+        List<List<String>> rows = List.of(
+                List.of("Alice", "Baku", "31"),
+                List.of("Bob", "Ganja", "25"),
+                List.of("Carol", "Baku", "42"),
+                List.of("Dave", "Baku", "25"),
+                List.of("Eve", "Quba", "38")
+        );
+        for (int i = 0; i < rows.size(); i++) {
+            service.addNewRow("Users");
+            service.updateCell("Users", String.valueOf(i + 1), "Name", rows.get(i).get(0));
+            service.updateCell("Users", String.valueOf(i + 1), "City", rows.get(i).get(1));
+            service.updateCell("Users", String.valueOf(i + 1), "Age", rows.get(i).get(2));
+        }
+    }
+
+    @Test
+    void testQuery() throws Exception {
+        QueryResult result = service.query("SELECT Name, Age FROM Users WHERE City = Baku");
+        assertEquals(List.of("Name", "Age"), result.header());
+        assertEquals(List.of(1, 3, 4), result.rowNumbers());
+        assertEquals(List.of("Carol", "42"), result.rows().get(1));
+        result = service.query("select * from Users where Age >= 30 and Name != Carol order by Age desc");
+        assertEquals(List.of(5, 1), result.rowNumbers());
+        assertEquals(List.of("Name", "City", "Age"), result.header());
+        result = service.query("SELECT Name FROM Users ORDER BY Age LIMIT 3");
+        assertEquals(List.of(2, 4, 1), result.rowNumbers());
+        result = service.query("SELECT Name FROM Users WHERE Name ^= 'C' LIMIT 1");
+        assertEquals(List.of(List.of("Carol")), result.rows());
+        assertEquals(List.of(), service.query("SELECT Name FROM Users LIMIT 0").rows());
+        // The same query through the API.
+        Query query = new Query("Users")
+                .select("Name")
+                .where("City", Comparison.EQUAL, "Baku")
+                .orderBy("Name", true)
+                .limit(2);
+        assertEquals(List.of(4, 3), service.query(query).rowNumbers());
+    }
+
+    @Test
+    void testHugeLimit() throws Exception {
+        QueryResult result = service.query("SELECT Name FROM Users ORDER BY Age DESC LIMIT 2000000000");
+        assertEquals(List.of(3, 5, 1, 2, 4), result.rowNumbers());
+    }
+
+    @Test
+    void testIndexedQuery() throws Exception {
+        List<String> queries = List.of(
+                "SELECT Name FROM Users WHERE City = Baku AND Age < 40",
+                "SELECT Name FROM Users ORDER BY Age DESC LIMIT 4",
+                "SELECT Name FROM Users WHERE City = Baku ORDER BY Age",
+                "SELECT Name FROM Users WHERE Age > 25 ORDER BY Age DESC"
+        );
+        List<QueryResult> scanned = new ArrayList<>();
+        for (String query : queries) {
+            scanned.add(service.query(query));
+        }
+        service.createIndex("Users", "City");
+        service.createOrderedIndex("Users", "Age");
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(scanned.get(i), service.query(queries.get(i)));
+        }
+    }
+
+    @Test
+    void testLimitStopsEarly() throws Exception {
+        CountingTable table = new CountingTable();
+        table.addColumn("Name");
+        for (int i = 0; i < 10_000; i++) {
+            table.addRow();
+            table.setCell(i, 0, "Name" + i);
+        }
+        table.reads = 0;
+        QueryResult result = QueryPipeline.execute(
+                QueryParser.parse("SELECT Name FROM Big WHERE Name ^= Name LIMIT 20"),
+                table
+        );
+        assertEquals(20, result.rows().size());
+        // One read for the condition and one for the projection per row.
+        assertEquals(40, table.reads);
+    }
+
+    @Test
+    void testParallelScan() throws Exception {
+        int rowCount = ParallelScan.THRESHOLD * 3 + 17;
+        Table table = new Table();
+        table.addColumn("Value");
+        for (int i = 0; i < rowCount; i++) {
+            table.addRow();
+            table.setCell(i, 0, String.valueOf(i % 1000));
+        }
+        Query query = new Query("Big").where("Value", Comparison.PREFIX, "12");
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            if (String.valueOf(i % 1000).startsWith("12")) {
+                expected.add(i + 1);
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(expected, QueryPipeline.execute(query, table, pool).rowNumbers());
+            assertEquals(expected.size(), QueryPipeline.count(query, table, pool));
+            // Sorted with a limit, the scan still runs in parallel.
+            query.orderBy("Value", true).limit(5);
+            QueryResult result = QueryPipeline.execute(query, table, pool);
+            assertEquals(List.of(List.of("129"), List.of("129"), List.of("129")), result.rows().subList(0, 3));
+            assertEquals(List.of(130, 1130, 2130, 3130, 4130), result.rowNumbers());
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(expected.size(), QueryPipeline.count(query, table));
+        assertEquals(rowCount, QueryPipeline.count(new Query("Big"), table));
+    }
+
+    @Test
+    void testInvalidQuery() {
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT FROM Users"));
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT * FROM Orders"));
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT Phone FROM Users"));
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT * FROM Users WHERE Age ~ 3"));
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT * FROM Users WHERE Age = '3"));
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT * FROM Users LIMIT x"));
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT * FROM Users LIMIT -2"));
+        assertThrows(InvalidInputException.class, () -> service.query("SELECT * FROM Users Users"));
+        Data.TABLES.put("Corrupted", Table.fromRows(new ArrayList<>()));
+        assertThrows(DataBaseCorruptException.class, () -> service.query("SELECT * FROM Corrupted"));
+    }
+
+    @Test
+    void testQuotedNames() throws Exception {
+        service.createTable("Order Items");
+        service.addNewColumn("Order Items", "Item Name");
+        service.addNewRow("Order Items");
+        service.updateCell("Order Items", "1", "Item Name", "Tea's cup");
+        QueryResult result = service.query(
+                "SELECT 'Item Name' FROM 'Order Items' WHERE 'Item Name' = 'Tea''s cup'"
+        );
+        assertEquals(List.of(1), result.rowNumbers());
+        String expected = String.join("\n",
+                "     ===========",
+                "     |Item Name|",
+                "     ===========",
+                "1 -> |Tea's cup|",
+                "     ==========="
+        );
+        assertEquals(expected, service.renderQueryResult(result, true));
+    }
+
+    private static class CountingTable extends Table {
+
+        int reads;
+
+        @Override
+        public String getCell(int row, int column) {
+            reads++;
+
+            return super.getCell(row, column);
+        }
+
+    }
+
+}
@@ -0,0 +1,253 @@
+package az.arvilo.crudapp.server;
+
+import az.arvilo.crudapp.Data;
+import az.arvilo.crudapp.service.Service;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LineServerTest {
+
+    private static final int CONNECTIONS = 2000;
+    private static final int PIPELINED_REQUESTS = 20;
+
+    Service service;
+    LineServer server;
+    Thread acceptor;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        Data.TABLES.clear();
+        service = new Service();
+        start(new LineServer(service, 0));
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.close();
+        acceptor.join(10_000);
+        assertFalse(acceptor.isAlive());
+    }
+
+    @Test
+    void testCommands() throws Exception {
+        try (Client client = new Client(server.getPort())) {
+            assertEquals(List.of("OK"), client.request("ping"));
+            assertEquals(List.of("OK"), client.request("CREATE_TABLE", "Users"));
+            assertEquals(List.of("OK"), client.request("ADD_COLUMNS", "Users", "Name", "Note"));
+            // Tabs, line breaks and backslashes travel escaped.
+            assertEquals(List.of("OK"), client.request("ADD_ROW", "Users", "Alice", "a\tb\nc\\"));
+            assertEquals(List.of("OK"), client.request("ADD_ROW", "Users"));
+            assertEquals(List.of("OK"), client.request("UPDATE", "Users", "2", "Name", "Bob"));
+            assertEquals(List.of("OK", "Alice", "a\tb\nc\\"), client.request("ROW", "Users", "1"));
+            assertEquals(List.of("OK", "Name", "Note"), client.request("COLUMNS", "Users"));
+            assertEquals(List.of("OK", "Users"), client.request("TABLES"));
+            assertEquals(
+                    List.of("OK", "1", "Name", "Bob", "Alice"),
+                    client.request("QUERY", "SELECT Name FROM Users ORDER BY Name DESC"));
+            assertEquals(service.renderTable("Users", true), client.request("RENDER", "Users").get(1));
+            // Rejected requests are answered, and the connection stays usable.
+            assertEquals(List.of("ERROR", "Empty request."), client.request(""));
+            assertEquals(List.of("ERROR", "Unknown command SELECT."), client.request("SELECT"));
+            assertEquals(
+                    List.of("ERROR", "Usage: UPDATE <table> <row> <column> <value>"),
+                    client.request("UPDATE", "Users", "1"));
+            assertEquals(List.of("ERROR", "Row numbers must be whole numbers."), client.request("ROW", "Users", "x"));
+            assertEquals("ERROR", client.request("ROW", "Orders", "1").getFirst());
+            assertEquals("ERROR", client.request("COMMIT").getFirst());
+            assertEquals(List.of("OK"), client.request("DELETE_ROW", "Users", "1"));
+            assertEquals(List.of("OK", "1"), client.request("ROW_COUNT", "Users"));
+            assertEquals(List.of("OK"), client.request("QUIT"));
+            assertNull(client.in.readLine());
+        }
+    }
+
+    @Test
+    void testPipelining() throws Exception {
+        service.createTable("Numbers");
+        service.addNewColumn("Numbers", "Value");
+        try (Client client = new Client(server.getPort())) {
+            // All requests go out before any response is read.
+            for (int i = 1; i <= 1000; i++) {
+                client.send("ADD_ROW", "Numbers", String.valueOf(i));
+                client.send("ROW_COUNT", "Numbers");
+            }
+            client.out.flush();
+            for (int i = 1; i <= 1000; i++) {
+                assertEquals(List.of("OK"), client.receive());
+                assertEquals(List.of("OK", String.valueOf(i)), client.receive());
+            }
+        }
+    }
+
+    @Test
+    void testTransactionsPerConnection() throws Exception {
+        service.createTable("Users");
+        service.addNewColumn("Users", "Name");
+        try (Client first = new Client(server.getPort());
+             Client second = new Client(server.getPort())) {
+            assertEquals(List.of("OK"), first.request("BEGIN"));
+            assertEquals(List.of("OK"), first.request("ADD_ROW", "Users", "Alice"));
+            assertEquals(List.of("OK"), first.request("ROLLBACK"));
+            assertEquals(List.of("OK", "0"), second.request("ROW_COUNT", "Users"));
+            assertEquals(List.of("OK"), second.request("BEGIN"));
+            assertEquals(List.of("OK"), second.request("ADD_ROW", "Users", "Bob"));
+            // The other connection waits for the transaction to end; closing
+            // the connection rolls it back.
+            first.send("ROW_COUNT", "Users");
+            first.out.flush();
+            second.close();
+            assertEquals(List.of("OK", "0"), first.receive());
+        }
+    }
+
+    /*
+     * A client that goes quiet inside a transaction doesn't hold the others
+     * up for longer than the idle time.
+     */
+    @Test
+    void testIdleTransactionIsRolledBack() throws Exception {
+        stopServer();
+        start(new LineServer(service, 0, 300));
+        service.createTable("Users");
+        service.addNewColumn("Users", "Name");
+        try (Client stalled = new Client(server.getPort());
+             Client other = new Client(server.getPort())) {
+            assertEquals(List.of("OK"), stalled.request("BEGIN"));
+            assertEquals(List.of("OK"), stalled.request("ADD_ROW", "Users", "Alice"));
+            long start = System.nanoTime();
+            assertEquals(List.of("OK"), other.request("ADD_ROW", "Users", "Bob"));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+            assertEquals(List.of("OK", "Bob"), other.request("ROW", "Users", "1"));
+            assertEquals(
+                    List.of("ERROR", "Transaction idle for too long; it was rolled back."),
+                    stalled.receive());
+            assertNull(stalled.in.readLine());
+        }
+        // Outside a transaction a quiet connection stays open.
+        try (Client quiet = new Client(server.getPort())) {
+            Thread.sleep(600);
+            assertEquals(List.of("OK"), quiet.request("PING"));
+        }
+    }
+
+    /*
+     * Every client connects first, so all connections are open at once, then
+     * pipelines its requests and waits for the responses.
+     */
+    @Test
+    void testManyConnections() throws Exception {
+        service.createTable("Load");
+        service.addNewColumns("Load", List.of("Client", "Request"));
+        CountDownLatch connected = new CountDownLatch(CONNECTIONS);
+        long[] latencies = new long[CONNECTIONS];
+        long started;
+        long finished;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < CONNECTIONS; i++) {
+                int id = i;
+                futures.add(clients.submit(() -> {
+                    try (Client client = new Client(server.getPort())) {
+                        assertEquals(List.of("OK"), client.request("PING"));
+                        connected.countDown();
+                        assertTrue(connected.await(60, TimeUnit.SECONDS));
+                        long start = System.nanoTime();
+                        for (int j = 0; j < PIPELINED_REQUESTS; j++) {
+                            client.send("ADD_ROW", "Load", String.valueOf(id), String.valueOf(j));
+                        }
+                        client.out.flush();
+                        for (int j = 0; j < PIPELINED_REQUESTS; j++) {
+                            assertEquals(List.of("OK"), client.receive());
+                        }
+                        latencies[id] = System.nanoTime() - start;
+                    }
+                    return null;
+                }));
+            }
+            assertTrue(connected.await(60, TimeUnit.SECONDS));
+            started = System.nanoTime();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            finished = System.nanoTime();
+        }
+        assertEquals(CONNECTIONS * PIPELINED_REQUESTS, service.getRowCount("Load"));
+        Arrays.sort(latencies);
+        long p99Millis = TimeUnit.NANOSECONDS.toMillis(latencies[CONNECTIONS * 99 / 100]);
+        double requestsPerSecond = CONNECTIONS * PIPELINED_REQUESTS / ((finished - started) / 1e9);
+        // Loose bounds: the point is that thousands of connections are served
+        // side by side, not the speed of the machine running the test.
+        assertTrue(p99Millis < 10_000, () -> String.format("p99 latency %d ms", p99Millis));
+        assertTrue(requestsPerSecond > 1_000, () -> String.format("%.0f requests/s", requestsPerSecond));
+    }
+
+    private void start(LineServer lineServer) {
+        server = lineServer;
+        acceptor = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        acceptor.start();
+    }
+
+    private static class Client implements AutoCloseable {
+
+        final Socket socket;
+        final BufferedReader in;
+        final Writer out;
+
+        Client(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        List<String> request(String... fields) throws IOException {
+            send(fields);
+            out.flush();
+
+            return receive();
+        }
+
+        void send(String... fields) throws IOException {
+            LineProtocol.write(out, List.of(fields));
+        }
+
+        List<String> receive() throws IOException {
+            String line = in.readLine();
+            assertNotNull(line);
+
+            return LineProtocol.decode(line);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+
+    }
+
+}
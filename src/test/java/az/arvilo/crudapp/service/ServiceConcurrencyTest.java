@@ -0,0 +1,225 @@
+package az.arvilo.crudapp.service;
+
+import az.arvilo.crudapp.Data;
+import az.arvilo.crudapp.exception.InvalidInputException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 2000;
+
+    Service service;
+
+    public ServiceConcurrencyTest() {
+        service = new Service();
+    }
+
+    @BeforeEach
+    void clearTables() {
+        Data.TABLES.clear();
+    }
+
+    @Test
+    void testConcurrentOperations() throws Exception {
+        service.createTable("Users");
+        service.addNewColumn("Users", "Name");
+        service.addNewColumn("Users", "Email");
+        AtomicInteger addedRows = new AtomicInteger();
+        AtomicInteger deletedRows = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int worker = i;
+            workers.add(() -> {
+                start.await();
+                for (int j = 0; j < ITERATIONS; j++) {
+                    try {
+                        switch ((worker + j) % 5) {
+                            case 0 -> {
+                                service.addNewRow("Users");
+                                addedRows.incrementAndGet();
+                            }
+                            case 1 -> service.updateCell("Users", "1", "Name", "User" + j);
+                            case 2 -> {
+                                service.deleteRow("Users", "1");
+                                deletedRows.incrementAndGet();
+                            }
+                            case 3 -> service.renderTable("Users", worker % 2 == 0);
+                            default -> {
+                                // Tables appear and disappear under the other workers.
+                                String tableName = "Scratch" + worker % 2;
+                                service.createTable(tableName);
+                                service.addNewColumn(tableName, "Value");
+                                service.addNewRow(tableName);
+                                service.renderTable(tableName, true);
+                                service.dropTable(tableName);
+                            }
+                        }
+                    } catch (InvalidInputException e) {
+                        // Lost a race, e.g. the row or the table was deleted meanwhile.
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            workers.forEach(worker -> futures.add(executor.submit(worker)));
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertDoesNotThrow(() -> service.verifyTable("Users"));
+        assertEquals(addedRows.get() - deletedRows.get(), service.getRowCount("Users"));
+        assertEquals(2, service.getColumnCount("Users"));
+        for (String tableName : service.getTableNames()) {
+            assertDoesNotThrow(() -> service.verifyTable(tableName));
+        }
+    }
+
+    @Test
+    void testRenderDoesNotBlockWriters() throws Exception {
+        service.createTable("Users");
+        service.addNewColumn("Users", "Name");
+        service.addNewRow("Users");
+        service.updateCell("Users", "1", "Name", "Before");
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        StringBuilder text = new StringBuilder();
+        // Stalls the render on its first line until the update went through.
+        Appendable slowOutput = new Appendable() {
+
+            @Override
+            public Appendable append(CharSequence csq) {
+                if (rendering.getCount() > 0) {
+                    rendering.countDown();
+                    try {
+                        assertTrue(written.await(10, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                text.append(csq);
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                return append(csq.subSequence(start, end));
+            }
+
+            @Override
+            public Appendable append(char c) {
+                return append(String.valueOf(c));
+            }
+
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Void> render = executor.submit(() -> {
+                service.renderTable("Users", false, slowOutput);
+                return null;
+            });
+            assertTrue(rendering.await(10, TimeUnit.SECONDS));
+            service.updateCell("Users", "1", "Name", "After");
+            written.countDown();
+            render.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(text.toString().contains("Before"));
+        assertFalse(text.toString().contains("After"));
+        assertEquals("After", Data.TABLES.get("Users").getCell(0, 0));
+    }
+
+    @Test
+    void testTransactionsAreIsolated() throws Exception {
+        service.createTable("Users");
+        service.addNewColumn("Users", "Name");
+        service.addNewRow("Users");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            service.begin();
+            service.updateCell("Users", "1", "Name", "Alice");
+            service.addNewRow("Users");
+            // Other threads wait for the transaction instead of seeing half of it.
+            Future<Integer> reader = executor.submit(() -> service.getRowCount("Users"));
+            assertThrows(TimeoutException.class, () -> reader.get(200, TimeUnit.MILLISECONDS));
+            service.commit();
+            assertEquals(2, reader.get(10, TimeUnit.SECONDS));
+            assertTrue(executor.submit(() -> service.renderTable("Users", false)).get().contains("Alice"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testConcurrentTransactions() throws Exception {
+        service.createTable("Left");
+        service.addNewColumn("Left", "Value");
+        service.createTable("Right");
+        service.addNewColumn("Right", "Value");
+        AtomicInteger committed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int worker = i;
+            workers.add(() -> {
+                start.await();
+                // The tables are named, and changed, in either order.
+                List<String> tableNames = worker % 2 == 0 ? List.of("Left", "Right") : List.of("Right", "Left");
+                for (int j = 0; j < ITERATIONS / 10; j++) {
+                    boolean fail = j % 3 == 0;
+                    try {
+                        service.inTransaction(tableNames, () -> {
+                            service.addNewRow(tableNames.get(0));
+                            service.addNewRow(tableNames.get(1));
+                            if (fail) {
+                                service.addNewColumn(tableNames.get(0), "Value");
+                            }
+                            // Both tables always hold the same number of rows.
+                            assertEquals(service.getRowCount("Left"), service.getRowCount("Right"));
+                        });
+                        committed.incrementAndGet();
+                    } catch (InvalidInputException e) {
+                        assertTrue(fail);
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            workers.forEach(worker -> futures.add(executor.submit(worker)));
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(committed.get(), service.getRowCount("Left"));
+        assertEquals(committed.get(), service.getRowCount("Right"));
+    }
+
+}
@@ -3,11 +3,17 @@ package az.arvilo.crudapp.service;
 import az.arvilo.crudapp.Data;
 import az.arvilo.crudapp.exception.DataBaseCorruptException;
 import az.arvilo.crudapp.exception.InvalidInputException;
+import az.arvilo.crudapp.storage.Table;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -29,8 +35,8 @@ public class ServiceTest {
         //Any table does not exist.
         assertTrue(service.getTableNames().isEmpty());
         //Tables exist.
-        Data.TABLES.put("Users", List.of(List.of("ID", "Name")));
-        Data.TABLES.put("Orders", List.of(List.of("OrderID", "Amount")));
+        Data.TABLES.put("Users", Table.fromRows(List.of(List.of("ID", "Name"))));
+        Data.TABLES.put("Orders", Table.fromRows(List.of(List.of("OrderID", "Amount"))));
         assertEquals(2, service.getTableNames().size());
         assertTrue(service.getTableNames().contains("Users"));
         assertTrue(service.getTableNames().contains("Orders"));
@@ -80,7 +86,7 @@ public class ServiceTest {
         String tableName = "Users";
         List<List<String>> table = new ArrayList<>();
         table.add(new ArrayList<>());
-        Data.TABLES.put(tableName, table);
+        Data.TABLES.put(tableName, Table.fromRows(table));
         try {
             assertEquals("Empty table.", service.renderTable(tableName, false));
             assertEquals("Empty table.", service.renderTable(tableName, true));
@@ -102,7 +108,7 @@ public class ServiceTest {
         table.getLast().add("2");
         table.getLast().add("Name     2");
         table.getLast().add("Surname 2");
-        Data.TABLES.put(tableName, table);
+        Data.TABLES.put(tableName, Table.fromRows(table));
         String exceptedValueWithoutRuler = """
                 =========================
                 |ID|   Name   | Surname |
@@ -125,62 +131,146 @@ public class ServiceTest {
         } catch (DataBaseCorruptException | InvalidInputException e) {
             throw new RuntimeException(e);
         }
+        // The table is streamed to a writer or an output stream.
+        try {
+            StringWriter writer = new StringWriter();
+            service.renderTable(tableName, true, writer);
+            assertEquals(exceptedValueWithRuler, writer.toString());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            service.writeTable(tableName, false, out);
+            assertEquals(exceptedValueWithoutRuler, out.toString(StandardCharsets.UTF_8));
+        } catch (DataBaseCorruptException | InvalidInputException | IOException e) {
+            throw new RuntimeException(e);
+        }
+        // Column widths follow updates and deletes.
+        String shrunkValue = """
+                ====================
+                |ID|Name | Surname |
+                ====================
+                |1 |Name1|Surname1 |
+                |--+-----+---------|
+                |2 |N2   |Surname 2|
+                ====================""";
+        String narrowedValue = """
+                ==================
+                |ID|Name |Surname|
+                ==================
+                |1 |Name1|Sur1   |
+                ==================""";
+        try {
+            service.updateCell(tableName, "2", "Name", "N2");
+            assertEquals(shrunkValue, service.renderTable(tableName, false));
+            service.deleteRow(tableName, "2");
+            service.updateCell(tableName, "1", "Surname", "Sur1");
+            assertEquals(narrowedValue, service.renderTable(tableName, false));
+        } catch (DataBaseCorruptException | InvalidInputException e) {
+            throw new RuntimeException(e);
+        }
         // The table is corrupted.
         String tableName2 = "Employees";
-        Data.TABLES.put(tableName2, new ArrayList<>());
-        table = Data.TABLES.get(tableName2);
+        table = new ArrayList<>();
+        Data.TABLES.put(tableName2, Table.fromRows(table));
         assertThrows(DataBaseCorruptException.class, () -> service.renderTable(tableName2, false));
         table.add(new ArrayList<>());
         table.add(new ArrayList<>());
+        Data.TABLES.put(tableName2, Table.fromRows(table));
         assertThrows(DataBaseCorruptException.class, () -> service.renderTable(tableName2, false));
         table.getFirst().add("Column1");
         table.getFirst().add("Column2");
         table.getLast().add("Value11");
         table.getLast().add("Value12");
         table.add(null);
+        Data.TABLES.put(tableName2, Table.fromRows(table));
         assertThrows(DataBaseCorruptException.class, () -> service.renderTable(tableName2, false));
         table.set(2, new ArrayList<>());
         table.getLast().add(null);
         table.getLast().add("Value22");
+        Data.TABLES.put(tableName2, Table.fromRows(table));
         assertThrows(DataBaseCorruptException.class, () -> service.renderTable(tableName2, false));
         table.get(2).set(0, "Value21");
         table.get(1).add("Value13");
+        Data.TABLES.put(tableName2, Table.fromRows(table));
         assertThrows(DataBaseCorruptException.class, () -> service.renderTable(tableName2, false));
         // The table does not exist.
         String tableName3 = "Cars";
         assertThrows(InvalidInputException.class, () -> service.renderTable(tableName3, false));
     }
 
+    @Test
+    void testRenderViewport() {
+        // The table does not exist.
+        String tableName = "Users";
+        assertThrows(
+                InvalidInputException.class,
+                () -> service.renderViewport(tableName, 0, 10, 0, 10, false)
+        );
+        List<List<String>> table = new ArrayList<>();
+        table.add(new ArrayList<>(List.of("ID", "Name", "Surname")));
+        table.add(new ArrayList<>(List.of("1", "Name1", "Surname1")));
+        table.add(new ArrayList<>(List.of("2", "A long name", "Surname2")));
+        table.add(new ArrayList<>(List.of("3", "Name3", "Surname3")));
+        Data.TABLES.put(tableName, Table.fromRows(table));
+        // Invalid windows.
+        assertThrows(
+                InvalidInputException.class,
+                () -> service.renderViewport(tableName, 0, 0, 0, 10, false)
+        );
+        assertThrows(
+                InvalidInputException.class,
+                () -> service.renderViewport(tableName, 3, 10, 0, 10, false)
+        );
+        assertThrows(
+                InvalidInputException.class,
+                () -> service.renderViewport(tableName, 0, 10, -1, 10, false)
+        );
+        // Widths are computed for the visible window only.
+        String exceptedValue = """
+                     ================
+                     |Name |Surname |
+                     ================
+                3 -> |Name3|Surname3|
+                     ================""";
+        try {
+            assertEquals(exceptedValue, service.renderViewport(tableName, 2, 5, 1, 2, true));
+        } catch (InvalidInputException | DataBaseCorruptException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Test
     void testAddNewRow() {
         // The table does not exist.
         String tableName = "Users";
         assertThrows(InvalidInputException.class, () -> service.addNewRow(tableName));
         // Structure of the table is not correct.
-        Data.TABLES.put(tableName, new ArrayList<>());
-        List<List<String>> table = Data.TABLES.get(tableName);
+        List<List<String>> table = new ArrayList<>();
+        Data.TABLES.put(tableName, Table.fromRows(table));
         assertThrows(DataBaseCorruptException.class, () -> service.addNewRow(tableName));
         table.add(new ArrayList<>());
         table.add(new ArrayList<>());
+        Data.TABLES.put(tableName, Table.fromRows(table));
         assertThrows(DataBaseCorruptException.class, () -> service.addNewRow(tableName));
         table.getFirst().add("Column1");
         table.getFirst().add("Column2");
         table.getLast().add("Value11");
         table.getLast().add("Value12");
         table.add(null);
+        Data.TABLES.put(tableName, Table.fromRows(table));
         assertThrows(DataBaseCorruptException.class, () -> service.addNewRow(tableName));
         table.set(2, new ArrayList<>());
         table.getLast().add(null);
         table.getLast().add("Value22");
+        Data.TABLES.put(tableName, Table.fromRows(table));
         assertThrows(DataBaseCorruptException.class, () -> service.addNewRow(tableName));
         table.get(2).set(0, "Value21");
         table.get(1).add("Value13");
+        Data.TABLES.put(tableName, Table.fromRows(table));
         assertThrows(DataBaseCorruptException.class, () -> service.addNewRow(tableName));
         // The table has no columns.
         clearTables();
         table = new ArrayList<>();
         table.add(new ArrayList<>());
-        Data.TABLES.put(tableName, table);
+        Data.TABLES.put(tableName, Table.fromRows(table));
         assertThrows(InvalidInputException.class, () -> service.addNewRow(tableName));
         // Structure of the table is correct.
         table = new ArrayList<>();
@@ -196,7 +286,7 @@ public class ServiceTest {
         table.getLast().add("2");
         table.getLast().add("Name     2");
         table.getLast().add("Surname 2");
-        Data.TABLES.put(tableName, table);
+        Data.TABLES.put(tableName, Table.fromRows(table));
         assertDoesNotThrow(() -> service.addNewRow(tableName));
     }
 
@@ -218,12 +308,13 @@ public class ServiceTest {
         table.add(header);
         table.add(row1);
         table.add(row2);
-        Data.TABLES.put("Users", table);
+        Data.TABLES.put("Users", Table.fromRows(table));
         assertThrows(DataBaseCorruptException.class,
                 () -> service.renderRow("Users", "1")
         );
         // The row is not exist.
-        Data.TABLES.get("Users").get(2).set(0, "value2");
+        table.get(2).set(0, "value2");
+        Data.TABLES.put("Users", Table.fromRows(table));
         assertThrows(
                 InvalidInputException.class,
                 () -> service.renderRow("Users", "5")
@@ -256,25 +347,27 @@ public class ServiceTest {
         String tableName = "Users";
         assertThrows(InvalidInputException.class, () -> service.updateCell(tableName, "1", "Name", "NewName"));
         // Structure of the table is not correct.
-        Data.TABLES.put(tableName, new ArrayList<>());
+        Data.TABLES.put(tableName, Table.fromRows(new ArrayList<>()));
         assertThrows(DataBaseCorruptException.class, () -> service.updateCell(tableName, "1", "Name", "NewName"));
         // Create valid structure for the table.
-        List<List<String>> table = Data.TABLES.get(tableName);
-        table.add(new ArrayList<>());
-        table.getFirst().add("ID");
-        table.getFirst().add("Name");
-        table.add(new ArrayList<>());
-        table.get(1).add("1");
-        table.get(1).add("OldName");
+        List<List<String>> rows = new ArrayList<>();
+        rows.add(new ArrayList<>());
+        rows.getFirst().add("ID");
+        rows.getFirst().add("Name");
+        rows.add(new ArrayList<>());
+        rows.get(1).add("1");
+        rows.get(1).add("OldName");
+        Table table = Table.fromRows(rows);
+        Data.TABLES.put(tableName, table);
         // The row does not exist.
         assertThrows(InvalidInputException.class, () -> service.updateCell(tableName, "2", "Name", "NewName"));
         // The column does not exist.
         assertThrows(InvalidInputException.class, () -> service.updateCell(tableName, "1", "NonExistentColumn", "NewName"));
         // Successfully update a cell.
         assertDoesNotThrow(() -> service.updateCell(tableName, "1", "Name", "NewName"));
-        assertEquals("NewName", table.get(1).get(1));
+        assertEquals("NewName", table.getCell(0, 1));
         // Ensure the original value is replaced.
-        assertNotEquals("OldName", table.get(1).get(1));
+        assertNotEquals("OldName", table.getCell(0, 1));
     }
 
     @Test
@@ -283,7 +376,7 @@ public class ServiceTest {
         // The table does not exist.
         assertThrows(InvalidInputException.class, () -> service.deleteRow(tableName, "1"));
         // The table is corrupted.
-        Data.TABLES.put(tableName, new ArrayList<>());
+        Data.TABLES.put(tableName, Table.fromRows(new ArrayList<>()));
         assertThrows(DataBaseCorruptException.class, () -> service.deleteRow(tableName, "1"));
         // Create valid structure for the table.
         List<List<String>> table = new ArrayList<>();
@@ -296,15 +389,218 @@ public class ServiceTest {
         table.add(new ArrayList<>());
         table.get(2).add("2");
         table.get(2).add("Bob");
-        Data.TABLES.put(tableName, table);
+        Data.TABLES.put(tableName, Table.fromRows(table));
         // Invalid row numbers.
         assertThrows(InvalidInputException.class, () -> service.deleteRow(tableName, "0"));
         assertThrows(InvalidInputException.class, () -> service.deleteRow(tableName, "-1"));
         assertThrows(InvalidInputException.class, () -> service.deleteRow(tableName, "10"));
         // Successfully delete a row.
         assertDoesNotThrow(() -> service.deleteRow(tableName, "1"));
-        assertEquals(2, Data.TABLES.get(tableName).size());
-        assertEquals("2", Data.TABLES.get(tableName).get(1).getFirst());
+        assertEquals(1, Data.TABLES.get(tableName).getRowCount());
+        assertEquals("2", Data.TABLES.get(tableName).getCell(0, 0));
+    }
+
+    @Test
+    void testBulkOperations() throws Exception {
+        String tableName = "Users";
+        // The table does not exist.
+        assertThrows(InvalidInputException.class, () -> service.addRows(tableName, 2));
+        assertThrows(InvalidInputException.class, () -> service.deleteRows(tableName, List.of(1)));
+        assertThrows(InvalidInputException.class, () -> service.updateCells(tableName, List.of()));
+        service.createTable(tableName);
+        assertThrows(InvalidInputException.class, () -> service.addRows(tableName, 2));
+        service.addNewColumn(tableName, "ID");
+        service.addNewColumn(tableName, "Name");
+        service.createIndex(tableName, "Name");
+        assertThrows(InvalidInputException.class, () -> service.addRows(tableName, 0));
+        assertDoesNotThrow(() -> service.addRows(tableName, 2));
+        assertDoesNotThrow(() -> service.addRows(tableName, List.of(
+                List.of("3", "Carol"),
+                List.of("4", "Dave"),
+                List.of("5", "")
+        )));
+        assertEquals(5, service.getRowCount(tableName));
+        assertEquals(List.of("4", "Dave"), Data.TABLES.get(tableName).getRow(3));
+        // Invalid batches change nothing.
+        assertThrows(InvalidInputException.class, () -> service.addRows(tableName, List.of(List.of("6"))));
+        assertThrows(InvalidInputException.class, () -> service.addRows(tableName, List.of(
+                List.of("6", "Eve"),
+                List.of("7", " Frank")
+        )));
+        assertThrows(InvalidInputException.class, () -> service.updateCells(tableName, List.of(
+                new CellUpdate(1, "ID", "1"),
+                new CellUpdate(6, "ID", "6")
+        )));
+        assertThrows(InvalidInputException.class, () -> service.updateCells(tableName, List.of(
+                new CellUpdate(1, "Age", "30")
+        )));
+        assertThrows(InvalidInputException.class, () -> service.deleteRows(tableName, List.of(1, 6)));
+        assertEquals(5, service.getRowCount(tableName));
+        assertEquals("", Data.TABLES.get(tableName).getCell(0, 0));
+        // Later updates of a cell win.
+        service.updateCells(tableName, List.of(
+                new CellUpdate(1, "ID", "1"),
+                new CellUpdate(1, "Name", "Alice"),
+                new CellUpdate(2, "ID", "2"),
+                new CellUpdate(2, "Name", "Bob"),
+                new CellUpdate(2, "Name", "Dave")
+        ));
+        assertEquals(List.of(2, 4), service.findRows(tableName, "Name", "Dave"));
+        // Row numbers refer to the table before the deletion.
+        service.deleteRows(tableName, service.findRows(tableName, "Name", "Dave"));
+        service.deleteRows(tableName, List.of());
+        assertEquals(3, service.getRowCount(tableName));
+        assertEquals(List.of("3", "Carol"), Data.TABLES.get(tableName).getRow(1));
+        assertEquals(List.of(3), service.findRows(tableName, "Name", ""));
+        assertEquals(List.of(2), service.findRows(tableName, "Name", "Carol"));
+        service.deleteRows(tableName, List.of(3, 1, 3));
+        assertEquals(List.of(List.of("3", "Carol")), List.of(Data.TABLES.get(tableName).getRow(0)));
+        assertEquals(List.of(1), service.findRows(tableName, "Name", "Carol"));
+        // Corrupted tables are rejected.
+        Data.TABLES.put(tableName, Table.fromRows(new ArrayList<>()));
+        assertThrows(DataBaseCorruptException.class, () -> service.deleteRows(tableName, List.of(1)));
+    }
+
+    @Test
+    void testRowIds() throws Exception {
+        String tableName = "Users";
+        assertThrows(InvalidInputException.class, () -> service.getRowId(tableName, "1"));
+        service.createTable(tableName);
+        service.addNewColumn(tableName, "Name");
+        List<List<String>> rows = new ArrayList<>();
+        for (int i = 1; i <= 4000; i++) {
+            rows.add(List.of("User" + i));
+        }
+        service.addRows(tableName, rows);
+        long id = service.getRowId(tableName, "3000");
+        assertThrows(InvalidInputException.class, () -> service.getRowId(tableName, "4001"));
+        // The row keeps its ID while the rows before it are deleted.
+        service.deleteRow(tableName, "1");
+        assertEquals(2999, service.getRowNumber(tableName, id));
+        List<Integer> rowNumbers = new ArrayList<>();
+        for (int i = 1; i <= 1100; i++) {
+            rowNumbers.add(i);
+        }
+        service.deleteRows(tableName, rowNumbers);
+        assertEquals(1899, service.getRowNumber(tableName, id));
+        assertEquals(List.of(1899), service.findRows(tableName, "Name", "User3000"));
+        service.deleteRowById(tableName, id);
+        assertThrows(InvalidInputException.class, () -> service.getRowNumber(tableName, id));
+        assertThrows(InvalidInputException.class, () -> service.deleteRowById(tableName, id));
+        assertEquals(2898, service.getRowCount(tableName));
+        assertEquals("User1102", Data.TABLES.get(tableName).getCell(0, 0));
+        // A quarter of the slots are tombstones now, so the table is compacted
+        // in the background. The compaction may run before the row above was
+        // deleted, which then stays a tombstone.
+        Table table = Data.TABLES.get(tableName);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            table.getLock().readLock().lock();
+            try {
+                if (table.getTombstoneCount() <= 1 || System.currentTimeMillis() > deadline) {
+                    break;
+                }
+            } finally {
+                table.getLock().readLock().unlock();
+            }
+            Thread.sleep(10);
+        }
+        assertTrue(table.getTombstoneCount() <= 1);
+        assertEquals(2898, service.getRowCount(tableName));
+        assertEquals(2898, service.getRowNumber(tableName, 4000));
+        assertEquals(List.of(1898), service.findRows(tableName, "Name", "User2999"));
+    }
+
+    @Test
+    void testTransactions() throws Exception {
+        service.createTable("Users");
+        service.addNewColumns("Users", List.of("Name", "City"));
+        service.addRows("Users", List.of(
+                List.of("Alice", "Baku"),
+                List.of("Bob", "Ganja"),
+                List.of("Carol", "Baku")
+        ));
+        service.createIndex("Users", "City");
+        service.deleteRow("Users", "2");
+        String rendered = service.renderTable("Users", true);
+        long carol = service.getRowId("Users", "2");
+        // Every kind of change is undone, newest first.
+        service.begin();
+        service.updateCell("Users", "1", "Name", "Anar");
+        service.addRows("Users", List.of(List.of("Dave", "Baku")));
+        service.updateCells("Users", List.of(
+                new CellUpdate(2, "City", "Quba"),
+                new CellUpdate(2, "City", "Sheki")
+        ));
+        service.deleteRows("Users", List.of(1, 3));
+        service.createOrderedIndex("Users", "Name");
+        service.dropIndex("Users", "City");
+        service.addNewColumn("Users", "Email");
+        service.deleteColumn("Users", "Name");
+        service.createTable("Orders");
+        service.dropTable("Users");
+        assertTrue(service.isInTransaction());
+        assertEquals(List.of("Orders"), service.getTableNames());
+        service.rollback();
+        assertFalse(service.isInTransaction());
+        assertEquals(List.of("Users"), service.getTableNames());
+        assertEquals(rendered, service.renderTable("Users", true));
+        assertEquals(2, service.getRowNumber("Users", carol));
+        assertEquals(List.of(1, 2), service.findRows("Users", "City", "Baku"));
+        assertTrue(Data.TABLES.get("Users").isIndexed(1));
+        assertFalse(Data.TABLES.get("Users").isOrdered(0));
+        // The IDs of rolled back rows are handed out again.
+        service.addNewRow("Users");
+        assertEquals(4, service.getRowId("Users", "3"));
+        // A rejected call changes nothing and leaves the transaction open.
+        service.begin();
+        service.updateCell("Users", "3", "Name", "Dave");
+        assertThrows(InvalidInputException.class, () -> service.deleteRow("Users", "9"));
+        service.commit();
+        assertEquals("Dave", Data.TABLES.get("Users").getCell(2, 0));
+        assertThrows(IllegalStateException.class, service::commit);
+        assertThrows(IllegalStateException.class, service::rollback);
+        // A batch is rolled back as a whole when any of its calls fails.
+        assertThrows(InvalidInputException.class, () -> service.inTransaction(List.of("Users"), () -> {
+            service.addNewRow("Users");
+            service.updateCell("Users", "4", "Name", "Eve");
+            service.addNewColumn("Users", "City");
+        }));
+        assertFalse(service.isInTransaction());
+        assertEquals(3, service.getRowCount("Users"));
+        service.inTransaction(List.of("Users", "Orders"), () -> {
+            service.createTable("Orders");
+            service.addNewColumn("Orders", "Amount");
+            service.deleteRow("Users", "1");
+        });
+        assertEquals(2, service.getRowCount("Users"));
+        assertEquals(List.of("Amount"), service.getColumnNames("Orders"));
+    }
+
+    @Test
+    void testVerifyTable() {
+        // The table does not exist.
+        String tableName = "Users";
+        assertThrows(InvalidInputException.class, () -> service.verifyTable(tableName));
+        // The table is consistent.
+        List<List<String>> table = new ArrayList<>();
+        table.add(new ArrayList<>());
+        table.getFirst().add("ID");
+        table.add(new ArrayList<>());
+        table.get(1).add("1");
+        Data.TABLES.put(tableName, Table.fromRows(table));
+        assertDoesNotThrow(() -> service.verifyTable(tableName));
+        // Mutations keep the table consistent.
+        assertDoesNotThrow(() -> service.addNewColumn(tableName, "Name"));
+        assertDoesNotThrow(() -> service.addNewRow(tableName));
+        assertDoesNotThrow(() -> service.updateCell(tableName, "2", "Name", "Bob"));
+        assertDoesNotThrow(() -> service.deleteRow(tableName, "1"));
+        assertDoesNotThrow(() -> service.deleteColumn(tableName, "ID"));
+        assertDoesNotThrow(() -> service.verifyTable(tableName));
+        // The table is corrupted.
+        table.get(1).add("Value");
+        Data.TABLES.put(tableName, Table.fromRows(table));
+        assertThrows(DataBaseCorruptException.class, () -> service.verifyTable(tableName));
     }
 
     @Test
@@ -313,7 +609,7 @@ public class ServiceTest {
         String tableName = "Users";
         assertThrows(InvalidInputException.class, () -> service.addNewColumn(tableName, "Age"));
         // The table is corrupted.
-        Data.TABLES.put(tableName, new ArrayList<>());
+        Data.TABLES.put(tableName, Table.fromRows(new ArrayList<>()));
         assertThrows(DataBaseCorruptException.class, () -> service.addNewColumn(tableName, "Age"));
         List<List<String>> table = new ArrayList<>();
         table.add(new ArrayList<>());
@@ -325,7 +621,7 @@ public class ServiceTest {
         table.add(new ArrayList<>());
         table.get(2).add("2");
         table.get(2).add("Bob");
-        Data.TABLES.put(tableName, table);
+        Data.TABLES.put(tableName, Table.fromRows(table));
         // The column already exists.
         assertThrows(InvalidInputException.class, () -> service.addNewColumn(tableName, "Name"));
         // Invalid column names.
@@ -337,14 +633,12 @@ public class ServiceTest {
         // Successfully add a new column.
         assertDoesNotThrow(() -> service.addNewColumn(tableName, "Age"));
         // Verify that the column has been added.
-        assertTrue(Data.TABLES.get(tableName).getFirst().contains("Age"));
+        assertTrue(Data.TABLES.get(tableName).getHeader().contains("Age"));
         // Ensure new column values are initialized to empty strings.
-        Data
-                .TABLES
-                .get(tableName)
-                .stream()
-                .skip(1)
-                .forEach(row -> assertEquals("", row.getLast()));
+        Table updatedTable = Data.TABLES.get(tableName);
+        IntStream
+                .range(0, updatedTable.getRowCount())
+                .forEach(i -> assertEquals("", updatedTable.getCell(i, 2)));
     }
 
     @Test
@@ -353,7 +647,7 @@ public class ServiceTest {
         String tableName = "Users";
         assertThrows(InvalidInputException.class, () -> service.deleteColumn(tableName, "Age"));
         // The table is corrupted.
-        Data.TABLES.put(tableName, new ArrayList<>());
+        Data.TABLES.put(tableName, Table.fromRows(new ArrayList<>()));
         assertThrows(DataBaseCorruptException.class, () -> service.deleteColumn(tableName, "Age"));
         // Initialize a valid table structure.
         List<List<String>> table = new ArrayList<>();
@@ -369,18 +663,118 @@ public class ServiceTest {
         table.get(2).add("2");
         table.get(2).add("Bob");
         table.get(2).add("30");
-        Data.TABLES.put(tableName, table);
+        Data.TABLES.put(tableName, Table.fromRows(table));
         // The column does not exist.
         assertThrows(InvalidInputException.class,
                 () -> service.deleteColumn(tableName, "NonExistentColumn")
         );
         // Successfully delete an existing column.
         assertDoesNotThrow(() -> service.deleteColumn(tableName, "Age"));
-        assertFalse(Data.TABLES.get(tableName).getFirst().contains("Age"));
-        Data
-                .TABLES
-                .get(tableName)
-                .forEach(row -> assertEquals(2, row.size()));
+        assertFalse(Data.TABLES.get(tableName).getHeader().contains("Age"));
+        Table updatedTable = Data.TABLES.get(tableName);
+        assertEquals(2, updatedTable.getColumnCount());
+        IntStream
+                .range(0, updatedTable.getColumnCount())
+                .forEach(i -> assertEquals(
+                        updatedTable.getRowCount(),
+                        updatedTable.getColumn(i).size()
+                ));
+        // Columns after the deleted one are still resolved by name.
+        assertDoesNotThrow(() -> service.deleteColumn(tableName, "ID"));
+        assertFalse(service.doesColumnOfTableExist("ID", tableName));
+        assertDoesNotThrow(() -> service.updateCell(tableName, "1", "Name", "Carol"));
+        assertEquals("Carol", updatedTable.getCell(0, 0));
+    }
+
+    @Test
+    void testFindRows() throws Exception {
+        String tableName = "Users";
+        // The table does not exist.
+        assertThrows(InvalidInputException.class, () -> service.createIndex(tableName, "Name"));
+        assertThrows(InvalidInputException.class, () -> service.findRows(tableName, "Name", "Bob"));
+        service.createTable(tableName);
+        service.addNewColumn(tableName, "ID");
+        service.addNewColumn(tableName, "Name");
+        for (int i = 1; i <= 5; i++) {
+            service.addNewRow(tableName);
+            service.updateCell(tableName, String.valueOf(i), "ID", String.valueOf(i));
+            service.updateCell(tableName, String.valueOf(i), "Name", i % 2 == 0 ? "Bob" : "Alice");
+        }
+        // Without an index the column is scanned.
+        assertEquals(List.of(2, 4), service.findRows(tableName, "Name", "Bob"));
+        // The column does not exist, or the index does (not).
+        assertThrows(InvalidInputException.class, () -> service.createIndex(tableName, "Age"));
+        assertThrows(InvalidInputException.class, () -> service.dropIndex(tableName, "Name"));
+        assertDoesNotThrow(() -> service.createIndex(tableName, "Name"));
+        assertThrows(InvalidInputException.class, () -> service.createIndex(tableName, "Name"));
+        assertEquals(List.of(2, 4), service.findRows(tableName, "Name", "Bob"));
+        assertEquals(List.of(), service.findRows(tableName, "Name", "Carol"));
+        // The index follows every change of the table.
+        service.updateCell(tableName, "1", "Name", "Bob");
+        service.deleteRow(tableName, "2");
+        service.addNewRow(tableName);
+        assertEquals(List.of(1, 3), service.findRows(tableName, "Name", "Bob"));
+        assertEquals(List.of(2, 4), service.findRows(tableName, "Name", "Alice"));
+        assertEquals(List.of(5), service.findRows(tableName, "Name", ""));
+        service.deleteColumn(tableName, "ID");
+        assertEquals(List.of(1, 3), service.findRows(tableName, "Name", "Bob"));
+        service.addNewColumn(tableName, "ID");
+        assertEquals(List.of(1, 2, 3, 4, 5), service.findRows(tableName, "ID", ""));
+        assertDoesNotThrow(() -> service.dropIndex(tableName, "Name"));
+        assertEquals(List.of(1, 3), service.findRows(tableName, "Name", "Bob"));
+        // Corrupted tables are rejected.
+        Data.TABLES.put(tableName, Table.fromRows(new ArrayList<>()));
+        assertThrows(DataBaseCorruptException.class, () -> service.findRows(tableName, "Name", "Bob"));
+    }
+
+    @Test
+    void testOrderedQueries() throws Exception {
+        String tableName = "Users";
+        service.createTable(tableName);
+        service.addNewColumn(tableName, "Name");
+        List<String> names = List.of("Dave", "Alice", "Carol", "Bob", "Alex", "Carol");
+        for (int i = 0; i < names.size(); i++) {
+            service.addNewRow(tableName);
+            service.updateCell(tableName, String.valueOf(i + 1), "Name", names.get(i));
+        }
+        // Results are the same with and without the ordered index.
+        for (boolean ordered : new boolean[]{false, true}) {
+            if (ordered) {
+                assertDoesNotThrow(() -> service.createOrderedIndex(tableName, "Name"));
+                assertThrows(InvalidInputException.class,
+                        () -> service.createOrderedIndex(tableName, "Name"));
+            }
+            assertEquals(List.of(4, 3, 6), service.findRowsBetween(tableName, "Name", "B", "Carol"));
+            assertEquals(List.of(), service.findRowsBetween(tableName, "Name", "Carol", "B"));
+            assertEquals(List.of(3, 6, 1), service.findRowsGreaterThan(tableName, "Name", "Bob"));
+            assertEquals(List.of(5, 2), service.findRowsWithPrefix(tableName, "Name", "Al"));
+            assertEquals(List.of(5, 2, 4, 3, 6, 1), service.getSortedRows(tableName, "Name", false, 0, 10));
+            assertEquals(List.of(3, 6), service.getSortedRows(tableName, "Name", false, 3, 2));
+            assertEquals(List.of(1, 3, 6), service.findTopRows(tableName, "Name", 3));
+            assertEquals(List.of(3, 6), service.findRows(tableName, "Name", "Carol"));
+        }
+        // The ordered index follows every change of the table.
+        service.updateCell(tableName, "1", "Name", "Aaron");
+        service.deleteRow(tableName, "2");
+        service.addNewRow(tableName);
+        assertEquals(List.of(6, 1, 4, 3, 2, 5), service.getSortedRows(tableName, "Name", false, 0, 10));
+        assertEquals(List.of(1, 4), service.findRowsWithPrefix(tableName, "Name", "A"));
+        assertThrows(InvalidInputException.class, () -> service.getSortedRows(tableName, "Name", false, -1, 1));
+        assertThrows(InvalidInputException.class, () -> service.findTopRows(tableName, "Age", 1));
+        // Sorted rows are rendered in their order, with their own numbers.
+        String expected = String.join("\n",
+                "     =======",
+                "     |Name |",
+                "     =======",
+                "2 -> |Carol|",
+                "     |-----|",
+                "5 -> |Carol|",
+                "     ======="
+        );
+        assertEquals(expected, service.renderRows(tableName, service.findTopRows(tableName, "Name", 2), true));
+        assertThrows(InvalidInputException.class, () -> service.renderRows(tableName, List.of(7), true));
+        assertDoesNotThrow(() -> service.dropOrderedIndex(tableName, "Name"));
+        assertThrows(InvalidInputException.class, () -> service.dropOrderedIndex(tableName, "Name"));
     }
 
 }
@@ -0,0 +1,72 @@
+package az.arvilo.crudapp.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnTest {
+
+    @Test
+    void testEncodingOnWrite() {
+        Column column = new Column(0);
+        String[] statuses = {"new", "paid", "shipped"};
+        for (int i = 0; i < 4000; i++) {
+            column.addEmpty();
+            if (i % 10 != 0) {
+                column.set(i, statuses[i % statuses.length]);
+            }
+        }
+        assertTrue(column.isEncoded());
+        assertEquals("", column.get(0));
+        assertEquals("paid", column.get(1));
+        assertEquals("shipped", column.get(3998));
+        assertEquals(7, column.width());
+        column.createIndex();
+        column.remove(1);
+        assertEquals("shipped", column.get(1));
+        assertEquals(3999, column.size());
+        column.set(0, "returned");
+        assertEquals("returned", column.get(0));
+        assertEquals(8, column.width());
+        assertArrayEquals(new int[]{0}, column.find("returned"));
+        column.removeAll(new int[]{0, 2, 3});
+        assertEquals(3996, column.size());
+        assertEquals("shipped", column.get(0));
+        assertEquals("shipped", column.get(1));
+        assertEquals(7, column.width());
+        assertArrayEquals(new int[0], column.find("returned"));
+        assertEquals(2, column.find("new")[0]);
+        assertTrue(column.isEncoded());
+        // Distinct values past the ratio decode the column.
+        for (int i = 0; i < 2000; i++) {
+            column.set(i, "Order" + i);
+        }
+        assertFalse(column.isEncoded());
+        assertEquals("Order1999", column.get(1999));
+        assertEquals("new", column.get(3995));
+    }
+
+    @Test
+    void testEncodingOnLoad() {
+        String[] countries = new String[3000];
+        String[] names = new String[3000];
+        for (int i = 0; i < countries.length; i++) {
+            countries[i] = i % 2 == 0 ? "Azerbaijan" : "Georgia";
+            names[i] = "User" + i;
+        }
+        Table table = Table.fromColumns(List.of("Country", "Name"), List.of(countries, names));
+        assertTrue(table.getColumn(0).isEncoded());
+        assertFalse(table.getColumn(1).isEncoded());
+        assertEquals("Georgia", table.getCell(2999, 0));
+        assertEquals(List.of("Azerbaijan", "User2998"), table.getRow(2998));
+        assertEquals(1500, table.findRange(0, "G", true, "H", false).length);
+        // Columns with null cells are kept as they are.
+        countries[0] = null;
+        Table corrupted = Table.fromColumns(List.of("Country", "Name"), List.of(countries, names));
+        assertFalse(corrupted.getColumn(0).isEncoded());
+        assertTrue(corrupted.isCorrupted());
+    }
+
+}
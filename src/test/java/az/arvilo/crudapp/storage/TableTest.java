@@ -0,0 +1,139 @@
+package az.arvilo.crudapp.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableTest {
+
+    @Test
+    void testTombstones() {
+        Table table = new Table();
+        table.addColumn("Name");
+        table.addColumn("Score");
+        table.createIndex(0);
+        String[] names = {"Alice", "Bob", "Carol", "Dave", "Eve"};
+        for (int i = 0; i < names.length; i++) {
+            table.addRow();
+            table.setCell(i, 0, names[i]);
+            table.setCell(i, 1, String.valueOf(50 - i));
+        }
+        long dave = table.getRowId(3);
+        table.removeRow(1);
+        table.removeRows(new int[]{0, 2});
+        // Ordinals stay dense; IDs stay with their rows.
+        assertEquals(2, table.getRowCount());
+        assertEquals(3, table.getTombstoneCount());
+        assertEquals(List.of("Carol", "48"), table.getRow(0));
+        assertEquals(List.of("Eve", "46"), table.getRow(1));
+        assertEquals(-1, table.indexOfRowId(1));
+        assertEquals(-1, table.indexOfRowId(dave));
+        assertEquals(1, table.indexOfRowId(5));
+        // Removed rows are gone from indexes and scans alike.
+        assertArrayEquals(new int[]{1}, table.findRows(0, "Eve"));
+        assertArrayEquals(new int[0], table.findRows(0, "Bob"));
+        assertArrayEquals(new int[0], table.findRows(1, ""));
+        assertArrayEquals(new int[]{1, 0}, table.sortedRows(1, false, 0, 5));
+        assertArrayEquals(new int[]{0}, table.sortedRows(1, true, 0, 1));
+        table.createOrderedIndex(1);
+        PrimitiveIterator.OfInt sorted = table.sortedIterator(1, false);
+        assertEquals(1, sorted.nextInt());
+        assertEquals(0, sorted.nextInt());
+        assertFalse(sorted.hasNext());
+        // New rows go after the tombstones and get new IDs.
+        table.addRow();
+        table.setCell(2, 0, "Frank");
+        assertEquals(6, table.getRowId(2));
+        assertEquals(List.of("Frank", ""), table.getRow(2));
+        table.compact();
+        assertEquals(0, table.getTombstoneCount());
+        assertEquals(List.of("Carol", "Eve", "Frank"), List.of(
+                table.getCell(0, 0),
+                table.getCell(1, 0),
+                table.getCell(2, 0)
+        ));
+        assertEquals(5, table.getRowId(1));
+        assertEquals(2, table.indexOfRowId(6));
+        assertArrayEquals(new int[]{2}, table.findRows(0, "Frank"));
+        assertArrayEquals(new int[]{2, 1, 0}, table.sortedRows(1, false, 0, 5));
+        assertTrue(table.verify());
+    }
+
+    @Test
+    void testCompactionThreshold() {
+        List<String[]> columns = new ArrayList<>();
+        String[] values = new String[8000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "Value" + i;
+        }
+        columns.add(values);
+        Table table = Table.fromColumns(List.of("Value"), columns);
+        int[] rows = new int[1999];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i * 4;
+        }
+        table.removeRows(rows);
+        assertFalse(table.needsCompaction());
+        table.removeRow(0);
+        assertTrue(table.needsCompaction());
+        assertEquals("Value2", table.getCell(0, 0));
+        assertEquals("Value7999", table.getCell(5999, 0));
+        table.compact();
+        assertFalse(table.needsCompaction());
+        assertEquals("Value7999", table.getCell(5999, 0));
+        assertEquals(8000, table.getRowId(5999));
+    }
+
+    @Test
+    void testSnapshot() {
+        Table table = new Table();
+        table.addColumn("Name");
+        table.addColumn("Status");
+        String[] statuses = {"new", "paid", "shipped"};
+        table.addRows(3000);
+        for (int i = 0; i < 3000; i++) {
+            table.setCell(i, 0, "User" + i);
+            table.setCell(i, 1, statuses[i % 3]);
+        }
+        assertTrue(table.getColumn(1).isEncoded());
+        table.removeRows(new int[]{0, 100, 2999});
+        List<List<String>> expected = new ArrayList<>();
+        for (int i = 0; i < table.getRowCount(); i++) {
+            expected.add(table.getRow(i));
+        }
+        TableSnapshot snapshot = table.snapshot();
+        // Writers change, move and drop the rows under the snapshot.
+        table.setCell(0, 0, "Changed");
+        table.setCell(1, 1, "returned");
+        table.addRows(10);
+        table.setCell(table.getRowCount() - 1, 0, "New");
+        table.removeRows(new int[]{5, 6, 7});
+        table.compact();
+        table.addColumn("Note");
+        table.removeColumn(0);
+        assertEquals(List.of("Name", "Status"), snapshot.getHeader());
+        assertEquals(2997, snapshot.getRowCount());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), List.of(snapshot.getCell(i, 0), snapshot.getCell(i, 1)));
+        }
+        assertEquals("User1", snapshot.getCell(0, 0));
+        assertEquals("User2998", snapshot.getCell(2996, 0));
+        assertEquals(8, snapshot.getColumnWidth(0));
+        snapshot.close();
+        // A later snapshot sees the writes.
+        try (TableSnapshot later = table.snapshot()) {
+            assertEquals(List.of("Status", "Note"), later.getHeader());
+            assertEquals(3004, later.getRowCount());
+            assertEquals("returned", later.getCell(1, 0));
+            assertEquals("new", later.getCell(5, 0));
+        }
+        table.setCell(1, 0, "new");
+        assertEquals("new", table.getCell(1, 0));
+        assertTrue(table.verify());
+    }
+
+}